@@ -0,0 +1,9 @@
+@echo on
+rem Usage: benchmark.bat ["rows,rows,..."] [filter], e.g. benchmark.bat "1000,100000" dao.find
+if not exist benchmark\classes mkdir benchmark\classes
+dir /s /b src\*.java benchmark\src\*.java > benchmark\sources.txt
+javac -d benchmark\classes @benchmark\sources.txt
+set ROWS=%~1
+if "%ROWS%"=="" set ROWS=1000,100000
+for %%r in (%ROWS%) do java -Xmx4g %JAVA_OPTS% -cp benchmark\classes org.insurancedb.benchmark.BenchmarkRunner -rows %%r %2
+pause
\ No newline at end of file
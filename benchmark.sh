@@ -0,0 +1,8 @@
+#! /bin/bash
+# Usage: ./benchmark.sh [rows,rows,...] [filter]
+# Runs the benchmarks for every number of rows, e.g. ./benchmark.sh 1000,100000,10000000 dao.find
+mkdir -p benchmark/classes
+javac -d benchmark/classes $(find src benchmark/src -name "*.java") || exit 1
+for rows in $(echo ${1:-1000,100000} | tr "," " "); do
+	java -Xmx4g $JAVA_OPTS -cp benchmark/classes org.insurancedb.benchmark.BenchmarkRunner -rows $rows $2
+done
@@ -0,0 +1,27 @@
+package org.insurancedb.benchmark;
+
+import org.insurancedb.data.*;
+
+/**
+ * Measures adding new records with DAO.addRecord()
+ */
+public class AddRecordBenchmark extends Benchmark {
+
+	private BenchmarkDatabase database;
+	private InsuranceCompanyDAO dao;
+	private int added;
+
+	public AddRecordBenchmark() {
+		super("dao.addRecord");
+	}
+
+	public void setup(BenchmarkDatabase database) throws Exception {
+		this.database = database;
+		dao = database.open();
+	}
+
+	public Object run(int operation) throws Exception {
+		return dao.addRecord(database.createRecord(++added));
+	}
+
+}
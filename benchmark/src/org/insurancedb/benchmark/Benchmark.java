@@ -0,0 +1,75 @@
+package org.insurancedb.benchmark;
+
+/**
+ * Benchmark is the base class of all benchmarks run by the BenchmarkRunner.
+ * A benchmark measures the average time of a single operation. The runner
+ * calls setup() once, then runs warmup and measurement iterations, each of
+ * which calls run() repeatedly for a fixed amount of time.
+ * <p>
+ * The result of run() is consumed by the runner, so the JIT compiler
+ * can't eliminate the measured code.
+ *
+ * @see BenchmarkRunner
+ */
+public abstract class Benchmark {
+
+	private String name;
+
+	/**
+	 * Sets the benchmark's name
+	 *
+	 * @param name name shown in the report, e.g. dao.readRecord
+	 */
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the benchmark's name
+	 *
+	 * @return benchmark name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Prepares the benchmark, not measured
+	 *
+	 * @param database synthetic database to run the benchmark on
+	 */
+	public void setup(BenchmarkDatabase database) throws Exception {}
+
+	/**
+	 * Runs before every iteration, not measured
+	 */
+	public void beforeIteration() throws Exception {}
+
+	/**
+	 * Runs a single measured operation
+	 *
+	 * @param operation number of the operation within the iteration, starting at 0
+	 * @return result of the operation
+	 */
+	public abstract Object run(int operation) throws Exception;
+
+	/**
+	 * Runs after every iteration, not measured
+	 */
+	public void afterIteration() throws Exception {}
+
+	/**
+	 * Gets the maximum number of operations of a single iteration
+	 *
+	 * @return maximum number of operations
+	 */
+	public int getMaxOperations() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Releases all resources of the benchmark, not measured
+	 */
+	public void teardown() throws Exception {}
+
+}
@@ -0,0 +1,118 @@
+package org.insurancedb.benchmark;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.insurancedb.data.*;
+
+/**
+ * BenchmarkDatabase provides a synthetic database of a given size. The database
+ * is generated once and kept as template. Every benchmark opens a fresh copy of
+ * the template, so benchmarks which change the database don't affect each other.
+ *
+ * @see InsuranceDatabaseGenerator
+ */
+public class BenchmarkDatabase {
+
+	private static final String DB_FILE = "insurance.db";
+
+	private int rows;
+	private File template;
+	private File workDir;
+	private InsuranceCompanyDAO dao;
+
+	/**
+	 * Sets up the database, the template is generated if it doesn't exist yet
+	 *
+	 * @param rows number of records
+	 * @param dataDir folder of the templates
+	 * @param workDir folder the DAO works on
+	 */
+	public BenchmarkDatabase(int rows, File dataDir, File workDir) throws IOException {
+		this.rows = rows;
+		this.workDir = workDir;
+		template = new File(dataDir, rows + ".db");
+		if(!template.exists()){
+			dataDir.mkdirs();
+			InsuranceDatabaseGenerator.generate(template, rows, InsuranceDatabaseGenerator.DELETED_RATIO, InsuranceDatabaseGenerator.SEED);
+		}
+	}
+
+	/**
+	 * Gets the number of records of the database
+	 *
+	 * @return number of records, including deleted ones
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Opens a fresh copy of the database
+	 *
+	 * @return initialized DAO of the copy
+	 */
+	public InsuranceCompanyDAO open() throws Exception {
+		close();
+		delete(workDir); // Remove the indexes, journal and columns of the previous copy
+		workDir.mkdirs();
+		Files.copy(template.toPath(), new File(workDir, DB_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		dao = new InsuranceCompanyDAO();
+		dao.initialize();
+		return dao;
+	}
+
+	/**
+	 * Deletes a folder with all its files and folders
+	 *
+	 * @param dir folder to delete
+	 */
+	private static void delete(File dir) {
+		File[] files = dir.listFiles();
+		if(files != null){
+			for(File file : files){
+				delete(file);
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Closes the DAO of the current copy
+	 */
+	public void close() {
+		if(dao != null){
+			dao.close();
+			dao = null;
+		}
+	}
+
+	/**
+	 * Gets the record numbers of all live records
+	 *
+	 * @param dao DAO of the database
+	 * @return array with the record numbers
+	 */
+	public static int[] liveRecords(InsuranceCompanyDAO dao) {
+		List<String[]> records = dao.readAllRecords();
+		int[] ids = new int[records.size()];
+		int n = 0;
+		for(int i = 0; i < records.size(); i++){
+			if(records.get(i) != null){
+				ids[n++] = i + 1;
+			}
+		}
+		return Arrays.copyOf(ids, n);
+	}
+
+	/**
+	 * Creates a new record, which is not part of the database yet
+	 *
+	 * @param i unique number of the record
+	 * @return String array with the record's fields
+	 */
+	public String[] createRecord(int i) {
+		return InsuranceDatabaseGenerator.createRecord(new Random(i), rows + i);
+	}
+
+}
@@ -0,0 +1,177 @@
+package org.insurancedb.benchmark;
+
+import java.io.*;
+import java.util.*;
+import org.insurancedb.data.DAO;
+import org.insurancedb.model.*;
+import org.insurancedb.view.gui.TableModelUpdateBenchmark;
+
+/**
+ * BenchmarkRunner runs the benchmarks of the data and model layer on a
+ * synthetic database and prints the average time per operation.
+ * <p>
+ * The DAO reads the folder of its database once, so every database size
+ * must be benchmarked in its own VM, which benchmark.sh and benchmark.bat do.
+ * <p>
+ * Usage:
+ * <pre>
+ * java org.insurancedb.benchmark.BenchmarkRunner [-rows n] [-warmup n] [-iterations n] [-time ms] [filter]
+ * </pre>
+ * Only benchmarks whose name contains the filter are run.
+ */
+public class BenchmarkRunner {
+
+	static final long SEED = 42;
+
+	private static final String DATA_DIR = "benchmark" + File.separator + "data";
+	private static final String WORK_DIR = DATA_DIR + File.separator + "work";
+
+	private int rows = 1000;
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationTime = 1000; // Milliseconds
+	private String filter = "";
+
+	private PrintStream console = System.out;
+	private int sink; // Consumes all results
+
+	/**
+	 * Runs the benchmarks
+	 *
+	 * @param args command line options
+	 */
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		for(int i = 0; i < args.length; i++){
+			if(args[i].equals("-rows")){
+				runner.rows = Integer.parseInt(args[++i]);
+			} else if(args[i].equals("-warmup")){
+				runner.warmupIterations = Integer.parseInt(args[++i]);
+			} else if(args[i].equals("-iterations")){
+				runner.iterations = Integer.parseInt(args[++i]);
+			} else if(args[i].equals("-time")){
+				runner.iterationTime = Long.parseLong(args[++i]);
+			} else {
+				runner.filter = args[i];
+			}
+		}
+
+		// Must be set before the DAO is loaded
+		System.setProperty("insurancedb.data", new File(WORK_DIR).getAbsolutePath());
+		runner.run(benchmarks());
+	}
+
+	/**
+	 * Creates all benchmarks
+	 *
+	 * @return List with all benchmarks
+	 */
+	private static List<Benchmark> benchmarks() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new ReadAllRecordsBenchmark());
+		benchmarks.add(new ReadRecordBenchmark());
+		benchmarks.add(new FindRecordsBenchmark(DAO.AND));
+		benchmarks.add(new FindRecordsBenchmark(DAO.OR));
+		benchmarks.add(new UpdateRecordBenchmark());
+		benchmarks.add(new DeleteRecordBenchmark());
+		benchmarks.add(new AddRecordBenchmark());
+		benchmarks.add(new ModelInitializeBenchmark());
+		benchmarks.add(new TableModelUpdateBenchmark("id", null));
+		benchmarks.add(new TableModelUpdateBenchmark("name", new InsuranceCompanyNameComparator()));
+		benchmarks.add(new TableModelUpdateBenchmark("percentage", new InsuranceCompanyPercentageComparator()));
+		return benchmarks;
+	}
+
+	/**
+	 * Runs all benchmarks matching the filter
+	 *
+	 * @param benchmarks List with all benchmarks
+	 */
+	private void run(List<Benchmark> benchmarks) throws Exception {
+		console.println("Generating database with " + rows + " rows...");
+		BenchmarkDatabase database = new BenchmarkDatabase(rows, new File(DATA_DIR), new File(WORK_DIR));
+
+		console.println(String.format("%-28s %8s %10s %14s %12s  %s", "Benchmark (" + rows + " rows)", "Iter", "Ops", "Score", "Error", "Units"));
+		for(Benchmark benchmark : benchmarks){
+			if(!benchmark.getName().contains(filter)){
+				continue;
+			}
+			System.setOut(new PrintStream(new OutputStream() { // The DAO reports every change on System.out
+				public void write(int b) {}
+			}));
+			try {
+				benchmark.setup(database);
+				for(int i = 0; i < warmupIterations; i++){
+					iteration(benchmark);
+				}
+				double[] scores = new double[iterations];
+				long operations = 0;
+				for(int i = 0; i < iterations; i++){
+					long[] result = iteration(benchmark);
+					operations += result[0];
+					scores[i] = (double)result[1] / result[0];
+				}
+				benchmark.teardown();
+				report(benchmark.getName(), scores, operations);
+			} catch (Exception e) {
+				console.println(benchmark.getName() + " failed: " + e);
+			} finally {
+				database.close();
+				System.setOut(console);
+			}
+		}
+		console.println("(" + sink + ")");
+	}
+
+	/**
+	 * Runs one iteration of a benchmark
+	 *
+	 * @param benchmark benchmark to run
+	 * @return number of operations and their total time in nanoseconds
+	 */
+	private long[] iteration(Benchmark benchmark) throws Exception {
+		benchmark.beforeIteration();
+		long deadline = iterationTime * 1000000;
+		int maxOperations = benchmark.getMaxOperations();
+		int operations = 0;
+		long start = System.nanoTime();
+		long time;
+		do {
+			Object result = benchmark.run(operations++);
+			sink ^= System.identityHashCode(result);
+			time = System.nanoTime() - start;
+		} while(time < deadline && operations < maxOperations);
+		benchmark.afterIteration();
+		return new long[] { operations, time };
+	}
+
+	/**
+	 * Prints the mean time per operation and its 99.9% confidence interval
+	 *
+	 * @param name benchmark name
+	 * @param scores nanoseconds per operation of each iteration
+	 * @param operations number of measured operations
+	 */
+	private void report(String name, double[] scores, long operations) {
+		double mean = 0;
+		for(double score : scores){
+			mean += score / scores.length;
+		}
+		double variance = 0;
+		for(double score : scores){
+			variance += (score - mean) * (score - mean) / Math.max(1, scores.length - 1);
+		}
+		double error = 3.291 * Math.sqrt(variance / scores.length); // z-value of 99.9%
+
+		// Choose a readable unit
+		String[] units = {"ns/op", "us/op", "ms/op", "s/op"};
+		int unit = 0;
+		while(unit < units.length - 1 && mean >= 10000){
+			mean /= 1000;
+			error /= 1000;
+			unit++;
+		}
+		console.println(String.format("%-28s %8d %10d %14.3f %12.3f  %s", name, scores.length, operations, mean, error, units[unit]));
+	}
+
+}
@@ -0,0 +1,57 @@
+package org.insurancedb.benchmark;
+
+import java.util.*;
+import org.insurancedb.data.*;
+
+/**
+ * Measures deleting random live records with DAO.deleteRecord().
+ * The deleted records are restored after every iteration.
+ */
+public class DeleteRecordBenchmark extends Benchmark {
+
+	private InsuranceCompanyDAO dao;
+	private int[] recNos;
+	private String[][] records;
+	private int deleted;
+
+	public DeleteRecordBenchmark() {
+		super("dao.deleteRecord");
+	}
+
+	public void setup(BenchmarkDatabase database) throws Exception {
+		dao = database.open();
+		int[] ids = BenchmarkDatabase.liveRecords(dao);
+
+		// Shuffle the records, so every record is deleted at most once per iteration
+		Random random = new Random(BenchmarkRunner.SEED);
+		for(int i = ids.length - 1; i > 0; i--){
+			int j = random.nextInt(i + 1);
+			int id = ids[i];
+			ids[i] = ids[j];
+			ids[j] = id;
+		}
+		recNos = Arrays.copyOf(ids, Math.min(ids.length, 1 << 12));
+		records = new String[recNos.length][];
+		for(int i = 0; i < recNos.length; i++){
+			records[i] = dao.readRecord(recNos[i]);
+		}
+	}
+
+	public Object run(int operation) throws Exception {
+		dao.deleteRecord(recNos[operation]);
+		deleted = operation + 1;
+		return null;
+	}
+
+	public void afterIteration() throws Exception {
+		for(int i = 0; i < deleted; i++){
+			dao.updateRecord(recNos[i], records[i]);
+		}
+		deleted = 0;
+	}
+
+	public int getMaxOperations() {
+		return recNos.length;
+	}
+
+}
@@ -0,0 +1,33 @@
+package org.insurancedb.benchmark;
+
+import org.insurancedb.data.*;
+
+/**
+ * Measures searching insurance types with DAO.findRecords()
+ */
+public class FindRecordsBenchmark extends Benchmark {
+
+	private static final String[] CRITERIA = {"travel", "pet"};
+
+	private InsuranceCompanyDAO dao;
+	private int bool;
+
+	/**
+	 * Sets the boolean search argument
+	 *
+	 * @param bool int either 0(AND) or 1(OR)
+	 */
+	public FindRecordsBenchmark(int bool) {
+		super("dao.findRecords." + (bool == DAO.AND ? "and" : "or"));
+		this.bool = bool;
+	}
+
+	public void setup(BenchmarkDatabase database) throws Exception {
+		dao = database.open();
+	}
+
+	public Object run(int operation) {
+		return dao.findRecords(CRITERIA, bool);
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.insurancedb.benchmark;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * InsuranceDatabaseGenerator writes a synthetic text database in the format
+ * of data/insurance.db. Records are generated from a fixed seed, so the
+ * same number of rows always results in the same database.
+ * <p>
+ * Usage:
+ * <pre>
+ * java org.insurancedb.benchmark.InsuranceDatabaseGenerator &lt;rows&gt; &lt;file&gt; [seed]
+ * </pre>
+ */
+public class InsuranceDatabaseGenerator {
+
+	static final double DELETED_RATIO = 0.05; // Share of deleted records
+	static final long SEED = 42;
+
+	private static final String LINE_SEPARATOR = "\r\n"; // Like data/insurance.db
+
+	private static final String[] NAMES = {"Umbrella", "GoStudent", "CompareThem", "Sure", "Direct", "Shield", "Harbour", "Summit", "Castle", "Beacon", "Meadow", "Anchor"};
+	private static final String[] SUFFIXES = {"Insurance", "Insure", "Cover", "Brokers", "Direct", "Group"};
+	private static final String[] TYPES = {"Motorcar", "Buildings", "Contents", "Travel", "Boiler", "Motorcycle", "Pet", "Bicycle", "Student", "Emergency", "Life", "Accidental", "Van", "Legal"};
+	private static final String[] DESCRIPTIONS = {"Legal cover on application.", "Budget deals including student discounts.", "General buildings and household.", "Cover for the whole family.", "Discounts for online applications."};
+
+	/**
+	 * Generates a database file
+	 *
+	 * @param file file to write
+	 * @param rows number of records, including deleted ones
+	 * @param deletedRatio share of deleted records
+	 * @param seed seed of the random generator
+	 */
+	public static void generate(File file, int rows, double deletedRatio, long seed) throws IOException {
+		Random random = new Random(seed);
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1024 * 1024);
+		try {
+			for(int i = 1; i <= rows; i++){
+				if(random.nextDouble() < deletedRatio){
+					out.write("empty");
+				} else {
+					String[] record = createRecord(random, i);
+					out.write(record[0]+":"+record[1]+":"+record[2]+":"+record[3]+":"+record[4]+":"+record[5]);
+				}
+				out.write(LINE_SEPARATOR);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Creates a random record
+	 *
+	 * @param random random generator
+	 * @param i unique number of the record
+	 * @return String array with the record's fields
+	 */
+	public static String[] createRecord(Random random, int i) {
+		String name = NAMES[random.nextInt(NAMES.length)] + " " + SUFFIXES[random.nextInt(SUFFIXES.length)] + " " + i;
+
+		// Pick 2 to 6 different insurance types
+		List<String> types = new ArrayList<String>(Arrays.asList(TYPES));
+		Collections.shuffle(types, random);
+		StringBuilder insuranceTypes = new StringBuilder();
+		for(int j = 2 + random.nextInt(5); j > 0; j--){
+			insuranceTypes.append(types.get(j));
+			if(j > 1){
+				insuranceTypes.append(", ");
+			}
+		}
+
+		return new String[] {
+			name,
+			"0" + (800 + random.nextInt(100)) + " " + (100000 + random.nextInt(900000)),
+			"www.company" + i + ".com",
+			insuranceTypes.toString(),
+			String.valueOf(random.nextInt(200) / 10.0f),
+			DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]
+		};
+	}
+
+	/**
+	 * Generates a database file from the command line
+	 *
+	 * @param args number of rows, file and optional seed
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2){
+			System.out.println("Usage: InsuranceDatabaseGenerator <rows> <file> [seed]");
+			return;
+		}
+		generate(new File(args[1]), Integer.parseInt(args[0]), DELETED_RATIO, args.length > 2 ? Long.parseLong(args[2]) : SEED);
+	}
+
+}
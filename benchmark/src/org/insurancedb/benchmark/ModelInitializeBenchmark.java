@@ -0,0 +1,25 @@
+package org.insurancedb.benchmark;
+
+import org.insurancedb.data.*;
+import org.insurancedb.model.*;
+
+/**
+ * Measures the initialization of the InsuranceCompanyModel
+ */
+public class ModelInitializeBenchmark extends Benchmark {
+
+	private InsuranceCompanyDAO dao;
+
+	public ModelInitializeBenchmark() {
+		super("model.initialize");
+	}
+
+	public void setup(BenchmarkDatabase database) throws Exception {
+		dao = database.open();
+	}
+
+	public Object run(int operation) {
+		return new InsuranceCompanyModel(dao);
+	}
+
+}
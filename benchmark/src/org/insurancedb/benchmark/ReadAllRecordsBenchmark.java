@@ -0,0 +1,24 @@
+package org.insurancedb.benchmark;
+
+import org.insurancedb.data.*;
+
+/**
+ * Measures reading all records with DAO.readAllRecords()
+ */
+public class ReadAllRecordsBenchmark extends Benchmark {
+
+	private InsuranceCompanyDAO dao;
+
+	public ReadAllRecordsBenchmark() {
+		super("dao.readAllRecords");
+	}
+
+	public void setup(BenchmarkDatabase database) throws Exception {
+		dao = database.open();
+	}
+
+	public Object run(int operation) {
+		return dao.readAllRecords();
+	}
+
+}
@@ -0,0 +1,34 @@
+package org.insurancedb.benchmark;
+
+import java.util.*;
+import org.insurancedb.data.*;
+
+/**
+ * Measures reading random live records with DAO.readRecord()
+ */
+public class ReadRecordBenchmark extends Benchmark {
+
+	private InsuranceCompanyDAO dao;
+	private int[] recNos;
+
+	public ReadRecordBenchmark() {
+		super("dao.readRecord");
+	}
+
+	public void setup(BenchmarkDatabase database) throws Exception {
+		dao = database.open();
+		int[] ids = BenchmarkDatabase.liveRecords(dao);
+
+		// Draw the records in advance, so the random generator isn't measured
+		Random random = new Random(BenchmarkRunner.SEED);
+		recNos = new int[1 << 16];
+		for(int i = 0; i < recNos.length; i++){
+			recNos[i] = ids[random.nextInt(ids.length)];
+		}
+	}
+
+	public Object run(int operation) throws Exception {
+		return dao.readRecord(recNos[operation & (recNos.length - 1)]);
+	}
+
+}
@@ -0,0 +1,42 @@
+package org.insurancedb.benchmark;
+
+import java.util.*;
+import org.insurancedb.data.*;
+
+/**
+ * Measures updating random live records with DAO.updateRecord().
+ * The new data has the same length as the old data.
+ */
+public class UpdateRecordBenchmark extends Benchmark {
+
+	private InsuranceCompanyDAO dao;
+	private int[] recNos;
+	private String[][] records;
+
+	public UpdateRecordBenchmark() {
+		super("dao.updateRecord");
+	}
+
+	public void setup(BenchmarkDatabase database) throws Exception {
+		dao = database.open();
+		int[] ids = BenchmarkDatabase.liveRecords(dao);
+		Random random = new Random(BenchmarkRunner.SEED);
+		recNos = new int[1 << 12];
+		records = new String[recNos.length][];
+		for(int i = 0; i < recNos.length; i++){
+			recNos[i] = ids[random.nextInt(ids.length)];
+			records[i] = dao.readRecord(recNos[i]);
+		}
+	}
+
+	public Object run(int operation) throws Exception {
+		int i = operation & (recNos.length - 1);
+		String[] data = records[i].clone();
+		if(operation % 2 == 0){
+			data[5] = data[5].toUpperCase(); // Changes the description without changing its length
+		}
+		dao.updateRecord(recNos[i], data);
+		return data;
+	}
+
+}
@@ -0,0 +1,38 @@
+package org.insurancedb.view.gui;
+
+import java.util.*;
+import org.insurancedb.benchmark.*;
+import org.insurancedb.model.*;
+
+/**
+ * Measures InsuranceCompanyTableModel.update() with a sorting strategy.
+ * It lives in the package of the table model, which isn't public.
+ */
+public class TableModelUpdateBenchmark extends Benchmark {
+
+	private Comparator<InsuranceCompany> comparator;
+	private Map<Integer, InsuranceCompany> data;
+	private InsuranceCompanyTableModel tableModel;
+
+	/**
+	 * Sets the sorting strategy
+	 *
+	 * @param name name of the sorting strategy
+	 * @param comparator InsuranceCompany Comparator, or null for the natural order
+	 */
+	public TableModelUpdateBenchmark(String name, Comparator<InsuranceCompany> comparator) {
+		super("table.update." + name);
+		this.comparator = comparator;
+	}
+
+	public void setup(BenchmarkDatabase database) throws Exception {
+		data = new InsuranceCompanyModel(database.open()).getInsuranceCompanies();
+		tableModel = new InsuranceCompanyTableModel(data);
+	}
+
+	public Object run(int operation) {
+		tableModel.update(data, comparator);
+		return tableModel;
+	}
+
+}
@@ -30,7 +30,7 @@ public class InsuranceCompanyApplication {
 		}
 		
 		// Create new data access object
-		InsuranceCompanyDAO dao = new InsuranceCompanyDAO();
+		final InsuranceCompanyDAO dao = new InsuranceCompanyDAO();
 
 		// Try to initialize and load contents from db
 		try {
@@ -39,6 +39,13 @@ public class InsuranceCompanyApplication {
 			JOptionPane.showMessageDialog(null, e, "Error: Database Not Found", JOptionPane.ERROR_MESSAGE);
 		}
 
+		// Flush pending database writes when the application exits
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				dao.close();
+			}
+		});
+
 		// Set up model (pass dao) and controller (pass model)
 		InsuranceCompanyModelInterface model = new InsuranceCompanyModel(dao);
 		ControllerInterface controller = new InsuranceCompanyController(model);
@@ -1,5 +1,9 @@
 package org.insurancedb.controller;
 
+import java.util.Map;
+import org.insurancedb.model.InsuranceCompany;
+import org.insurancedb.model.InsuranceCompanyQuery;
+
 /**
  * ControllerInterface represents the main interface,
  * which should be implemented in all Controller classes.
@@ -12,7 +16,7 @@ public interface ControllerInterface {
 
 	void deleteInsuranceCompany(int i);
 
-	void searchInsuranceCompanies(String query);
+	Map<Integer, InsuranceCompany> searchInsuranceCompanies(InsuranceCompanyQuery query);
 
 	void selectInsuranceCompany(int i);
 
@@ -2,6 +2,7 @@ package org.insurancedb.controller;
 
 import org.insurancedb.model.*;
 import org.insurancedb.view.gui.*;
+import java.util.*;
 
 /**
  * InsuranceCompanyController implements the ControllerInterface
@@ -79,14 +80,16 @@ public class InsuranceCompanyController implements ControllerInterface {
 	}
 
 	/**
-	 * Notifies the model to search for a set of InsuranceCompanies according to
-	 * a given search query
+	 * Asks the model for the set of InsuranceCompanies matching a given search
+	 * query. The view calls it from its search worker, so it doesn't block
+	 * the event dispatch thread.
 	 *
-	 * @param query search query given as String
+	 * @param query parsed search query
+	 * @return map with all matching InsuranceCompanies
 	 */
-	public void searchInsuranceCompanies(String query){
+	public Map<Integer, InsuranceCompany> searchInsuranceCompanies(InsuranceCompanyQuery query){
 
-		model.searchInsuranceCompanies(query);
+		return model.findInsuranceCompanies(query);
 
 	}
 
@@ -0,0 +1,363 @@
+package org.insurancedb.data;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * BPlusTree is a page-based B+-tree which maps record numbers to record values.
+ * Pages are accessed through a BufferPool, so a lookup, update or delete
+ * touches only the pages on the path from the root to a leaf.
+ * <p>
+ * Values longer than MAX_VALUE_SIZE are written into a chain of overflow
+ * pages, the leaf only holds a reference with the value's length and first
+ * page. Every overflow page holds its type, the next page of the chain (0 for
+ * the last page), the length of its part of the value and that part.
+ * <p>
+ * Leaves are not linked, full scans traverse the tree recursively.
+ * Nodes are not merged when they shrink, empty nodes are removed from
+ * their parent and returned to the free-page list.
+ *
+ * @see BPlusTreeNode
+ * @see BufferPool
+ */
+class BPlusTree {
+
+	// Biggest value stored in a leaf, which guarantees that at least four entries fit into a leaf
+	static final int MAX_VALUE_SIZE = (Pager.PAGE_SIZE - BPlusTreeNode.HEADER_SIZE) / 4 - BPlusTreeNode.LEAF_ENTRY_SIZE;
+
+	private static final byte OVERFLOW 			  = 3; // Page type of an overflow page
+	private static final int OVERFLOW_HEADER_SIZE = 7; // Type, next page and length of an overflow page
+	private static final int OVERFLOW_CHUNK_SIZE  = Pager.PAGE_SIZE - OVERFLOW_HEADER_SIZE;
+
+	/**
+	 * Visitor of the entries of a scan
+	 */
+	interface Visitor {
+
+		/**
+		 * Visits an entry
+		 *
+		 * @param key record number
+		 * @param value record value
+		 */
+		void visit(int key, byte[] value) throws IOException;
+
+	}
+
+	/**
+	 * Result of a node split
+	 */
+	private static class Split {
+
+		private int key; // Smallest key covered by the new node
+		private BPlusTreeNode right;
+
+		Split(int key, BPlusTreeNode right) {
+			this.key = key;
+			this.right = right;
+		}
+
+	}
+
+	private Pager pager;
+	private BufferPool pool;
+
+	/**
+	 * Sets up the tree, an empty root leaf is created if there is no root yet
+	 *
+	 * @param pager pager of the page file
+	 * @param pool buffer pool of the page file
+	 */
+	BPlusTree(Pager pager, BufferPool pool) throws IOException {
+		this.pager = pager;
+		this.pool = pool;
+		if(pager.getRoot() == 0){
+			pager.setRoot(pool.create(true).page);
+		}
+	}
+
+	/**
+	 * Gets the value of a key
+	 *
+	 * @param key record number
+	 * @return the value, or null if the key doesn't exist
+	 */
+	byte[] get(int key) throws IOException {
+		BPlusTreeNode node = pool.get(pager.getRoot());
+		while(!node.leaf){
+			node = pool.get(node.children[node.childIndex(key)]);
+		}
+		int index = node.search(key);
+		if(index < 0){
+			return null;
+		}
+		return node.references[index] ? readOverflow(node.values[index]) : node.values[index];
+	}
+
+	/**
+	 * Sets the value of a key
+	 *
+	 * @param key record number
+	 * @param value value of any length
+	 */
+	void put(int key, byte[] value) throws IOException {
+		boolean reference = value.length > MAX_VALUE_SIZE;
+		if(reference){
+			value = writeOverflow(value);
+		}
+		BPlusTreeNode root = pool.get(pager.getRoot());
+		Split split = insert(root, key, value, reference);
+		if(split != null){
+			// The root was split, the tree grows by one level
+			BPlusTreeNode newRoot = pool.create(false);
+			newRoot.children[0] = root.page;
+			newRoot.insertChild(0, split.key, split.right.page);
+			pager.setRoot(newRoot.page);
+		}
+	}
+
+	/**
+	 * Inserts a key into a subtree
+	 *
+	 * @param node root of the subtree
+	 * @param key record number
+	 * @param value record value
+	 * @param reference true if the value refers to overflow pages
+	 * @return the split if the node was split, otherwise null
+	 */
+	private Split insert(BPlusTreeNode node, int key, byte[] value, boolean reference) throws IOException {
+		if(node.leaf){
+			int index = node.search(key);
+			if(index >= 0){
+				if(node.references[index]){
+					freeOverflow(node.values[index]); // The old value is replaced
+				}
+				node.setValue(index, value, reference);
+			} else {
+				node.insertEntry(-index - 1, key, value, reference);
+			}
+			pool.markDirty(node);
+			return node.isOverflowing() ? split(node, -index - 1 == node.count - 1) : null;
+		}
+
+		int index = node.childIndex(key);
+		BPlusTreeNode child = pool.get(node.children[index]);
+		Split split = insert(child, key, value, reference);
+		if(split == null){
+			return null;
+		}
+		node.insertChild(index, split.key, split.right.page);
+		pool.markDirty(node);
+		return node.isOverflowing() ? split(node, false) : null;
+	}
+
+	/**
+	 * Splits an overflowing node
+	 *
+	 * @param node node to split
+	 * @param append true if the last entry was appended, then it moves alone into the new
+	 * node, so appending record numbers leaves full leaves behind
+	 * @return the split with the new right sibling
+	 */
+	private Split split(BPlusTreeNode node, boolean append) throws IOException {
+		BPlusTreeNode right = pool.create(node.leaf);
+		int from;
+		if(!node.leaf){
+			from = node.count / 2; // The key at from moves up into the parent
+		} else if(append){
+			from = node.count - 1;
+		} else {
+			// Split at half of the bytes, so both halves fit into a page
+			int half = node.size() / 2;
+			int size = BPlusTreeNode.HEADER_SIZE;
+			from = 0;
+			while(size + BPlusTreeNode.LEAF_ENTRY_SIZE + node.values[from].length <= half){
+				size += BPlusTreeNode.LEAF_ENTRY_SIZE + node.values[from].length;
+				from++;
+			}
+			from = Math.max(from, 1);
+		}
+		int separator = node.keys[from];
+		node.moveTo(from, right);
+		pool.markDirty(node);
+		pool.markDirty(right);
+		return new Split(separator, right);
+	}
+
+	/**
+	 * Removes a key
+	 *
+	 * @param key record number
+	 * @return true if the key existed
+	 */
+	boolean remove(int key) throws IOException {
+		BPlusTreeNode root = pool.get(pager.getRoot());
+		boolean removed = remove(root, key);
+
+		// Shrink the tree while the root has a single child
+		while(!root.leaf && root.count == 0){
+			pager.setRoot(root.children[0]);
+			pool.free(root);
+			root = pool.get(pager.getRoot());
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes a key from a subtree
+	 *
+	 * @param node root of the subtree
+	 * @param key record number
+	 * @return true if the key existed
+	 */
+	private boolean remove(BPlusTreeNode node, int key) throws IOException {
+		if(node.leaf){
+			int index = node.search(key);
+			if(index < 0){
+				return false;
+			}
+			if(node.references[index]){
+				freeOverflow(node.values[index]);
+			}
+			node.removeEntry(index);
+			pool.markDirty(node);
+			return true;
+		}
+
+		int index = node.childIndex(key);
+		BPlusTreeNode child = pool.get(node.children[index]);
+		boolean removed = remove(child, key);
+		if(isEmpty(child) && node.count > 0){
+			// Drop the empty child, its neighbour takes over its key range
+			node.removeChild(index);
+			free(child);
+			pool.markDirty(node);
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns the pages of an empty subtree to the free-page list
+	 *
+	 * @param node root of the subtree
+	 */
+	private void free(BPlusTreeNode node) throws IOException {
+		if(!node.leaf){
+			free(pool.get(node.children[0])); // An empty inner node has a single child
+		}
+		pool.free(node);
+	}
+
+	/**
+	 * Checks if a node has no entries left
+	 *
+	 * @param node node to check
+	 * @return true for an empty leaf or an inner node with a single empty leaf
+	 */
+	private boolean isEmpty(BPlusTreeNode node) throws IOException {
+		if(node.leaf){
+			return node.count == 0;
+		}
+		return node.count == 0 && isEmpty(pool.get(node.children[0]));
+	}
+
+	/**
+	 * Visits all entries in ascending key order
+	 *
+	 * @param visitor visitor of the entries
+	 */
+	void scan(Visitor visitor) throws IOException {
+		scan(pager.getRoot(), visitor);
+	}
+
+	/**
+	 * Visits all entries of a subtree in ascending key order
+	 *
+	 * @param page root page of the subtree
+	 * @param visitor visitor of the entries
+	 */
+	private void scan(int page, Visitor visitor) throws IOException {
+		BPlusTreeNode node = pool.get(page);
+		if(node.leaf){
+			// Copy the entries, the node might be evicted by the visitor
+			int count = node.count;
+			int[] keys = node.keys.clone();
+			byte[][] values = node.values.clone();
+			boolean[] references = node.references.clone();
+			for(int i = 0; i < count; i++){
+				visitor.visit(keys[i], references[i] ? readOverflow(values[i]) : values[i]);
+			}
+			return;
+		}
+		int count = node.count;
+		int[] children = node.children.clone();
+		for(int i = 0; i <= count; i++){
+			scan(children[i], visitor);
+		}
+	}
+
+	/**
+	 * Writes a value into a new chain of overflow pages. The pages are
+	 * written right away, as they are not cached by the buffer pool.
+	 *
+	 * @param value the value
+	 * @return reference to the value, its length and first page
+	 */
+	private byte[] writeOverflow(byte[] value) throws IOException {
+		int[] pages = new int[(value.length + OVERFLOW_CHUNK_SIZE - 1) / OVERFLOW_CHUNK_SIZE];
+		for(int i = 0; i < pages.length; i++){
+			pages[i] = pager.allocate();
+		}
+		for(int i = 0; i < pages.length; i++){
+			int offset = i * OVERFLOW_CHUNK_SIZE;
+			int length = Math.min(OVERFLOW_CHUNK_SIZE, value.length - offset);
+			ByteBuffer buffer = ByteBuffer.allocate(Pager.PAGE_SIZE);
+			buffer.put(OVERFLOW).putInt(i + 1 < pages.length ? pages[i + 1] : 0).putShort((short)length);
+			buffer.put(value, offset, length);
+			buffer.clear();
+			pager.write(pages[i], buffer);
+		}
+		return ByteBuffer.allocate(8).putInt(value.length).putInt(pages[0]).array();
+	}
+
+	/**
+	 * Reads a value from its overflow pages
+	 *
+	 * @param reference reference to the value
+	 * @return the value
+	 */
+	private byte[] readOverflow(byte[] reference) throws IOException {
+		ByteBuffer header = ByteBuffer.wrap(reference);
+		byte[] value = new byte[header.getInt()];
+		int page = header.getInt();
+		for(int offset = 0; offset < value.length;){
+			ByteBuffer buffer = pager.read(page);
+			if(buffer.get() != OVERFLOW){
+				throw new IOException("Page " + page + " is no overflow page");
+			}
+			page = buffer.getInt();
+			int length = buffer.getShort();
+			buffer.get(value, offset, length);
+			offset += length;
+		}
+		return value;
+	}
+
+	/**
+	 * Frees the overflow pages of a value. They are only reused after the
+	 * changed pages were flushed, so a leaf on disk never refers to them.
+	 *
+	 * @param reference reference to the value
+	 */
+	private void freeOverflow(byte[] reference) throws IOException {
+		ByteBuffer header = ByteBuffer.wrap(reference);
+		int length = header.getInt();
+		int page = header.getInt();
+		for(int offset = 0; offset < length; offset += OVERFLOW_CHUNK_SIZE){
+			int next = pager.read(page).getInt(1);
+			pool.freeLater(page);
+			page = next;
+		}
+	}
+
+}
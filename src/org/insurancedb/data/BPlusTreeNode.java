@@ -0,0 +1,275 @@
+package org.insurancedb.data;
+
+import java.nio.*;
+
+/**
+ * BPlusTreeNode is the decoded content of a page of the B+-tree.
+ * A leaf holds record numbers and their values in ascending order. An inner
+ * node holds separator keys and one more child page than keys, child i
+ * covers all keys below keys[i] and the last child all remaining keys.
+ * <p>
+ * Page layout: type (byte), count (short), then for a leaf every entry as
+ * key (int), length (short), value bytes and for an inner node the first
+ * child (int) followed by every key (int) and child (int). The highest bit
+ * of the length marks a value which is a reference to overflow pages.
+ *
+ * @see BPlusTree
+ */
+class BPlusTreeNode {
+
+	static final byte LEAF  = 1;
+	static final byte INNER = 2;
+
+	static final int HEADER_SIZE 	 = 3;
+	static final int LEAF_ENTRY_SIZE = 6; // Key and length of a leaf entry, without the value
+	static final int MAX_INNER_KEYS  = (Pager.PAGE_SIZE - HEADER_SIZE - 4) / 8;
+
+	private static final int REFERENCE = 0x8000; // Length bit of a reference to overflow pages
+
+	private static final int MAX_LEAF_ENTRIES = (Pager.PAGE_SIZE - HEADER_SIZE) / (LEAF_ENTRY_SIZE + 1) + 1;
+
+	int page;
+	boolean leaf;
+	int count; // Number of keys
+	int[] keys;
+	byte[][] values; // Values of a leaf
+	boolean[] references; // Leaf values which refer to overflow pages
+	int[] children;  // Child pages of an inner node
+	private int valueBytes; // Total length of all values of a leaf
+
+	/**
+	 * Creates an empty node
+	 *
+	 * @param page page number
+	 * @param leaf true for a leaf, false for an inner node
+	 */
+	BPlusTreeNode(int page, boolean leaf) {
+		this.page = page;
+		this.leaf = leaf;
+		if(leaf){
+			keys = new int[MAX_LEAF_ENTRIES + 1];
+			values = new byte[MAX_LEAF_ENTRIES + 1][];
+			references = new boolean[MAX_LEAF_ENTRIES + 1];
+		} else {
+			keys = new int[MAX_INNER_KEYS + 1];
+			children = new int[MAX_INNER_KEYS + 2];
+		}
+	}
+
+	/**
+	 * Decodes a page
+	 *
+	 * @param page page number
+	 * @param buffer buffer with the page's bytes
+	 * @return the decoded node
+	 */
+	static BPlusTreeNode decode(int page, ByteBuffer buffer) {
+		byte type = buffer.get();
+		BPlusTreeNode node = new BPlusTreeNode(page, type == LEAF);
+		node.count = buffer.getShort();
+		if(node.leaf){
+			for(int i = 0; i < node.count; i++){
+				node.keys[i] = buffer.getInt();
+				int length = buffer.getShort() & 0xffff;
+				node.references[i] = (length & REFERENCE) != 0;
+				node.values[i] = new byte[length & ~REFERENCE];
+				buffer.get(node.values[i]);
+				node.valueBytes += node.values[i].length;
+			}
+		} else {
+			node.children[0] = buffer.getInt();
+			for(int i = 0; i < node.count; i++){
+				node.keys[i] = buffer.getInt();
+				node.children[i + 1] = buffer.getInt();
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Encodes the node into a page
+	 *
+	 * @return buffer with the page's bytes
+	 */
+	ByteBuffer encode() {
+		ByteBuffer buffer = ByteBuffer.allocate(Pager.PAGE_SIZE);
+		buffer.put(leaf ? LEAF : INNER);
+		buffer.putShort((short)count);
+		if(leaf){
+			for(int i = 0; i < count; i++){
+				buffer.putInt(keys[i]);
+				buffer.putShort((short)(values[i].length | (references[i] ? REFERENCE : 0)));
+				buffer.put(values[i]);
+			}
+		} else {
+			buffer.putInt(children[0]);
+			for(int i = 0; i < count; i++){
+				buffer.putInt(keys[i]);
+				buffer.putInt(children[i + 1]);
+			}
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Gets the encoded size of the node
+	 *
+	 * @return size in bytes
+	 */
+	int size() {
+		if(leaf){
+			return HEADER_SIZE + count * LEAF_ENTRY_SIZE + valueBytes;
+		}
+		return HEADER_SIZE + 4 + count * 8;
+	}
+
+	/**
+	 * Checks if the node doesn't fit into a page anymore
+	 *
+	 * @return true if the node must be split
+	 */
+	boolean isOverflowing() {
+		return leaf ? size() > Pager.PAGE_SIZE : count > MAX_INNER_KEYS;
+	}
+
+	/**
+	 * Finds a key of a leaf
+	 *
+	 * @param key key to find
+	 * @return index of the key, or -(insertion point) - 1 if it isn't there
+	 */
+	int search(int key) {
+		int low = 0;
+		int high = count - 1;
+		while(low <= high){
+			int middle = (low + high) >>> 1;
+			if(keys[middle] < key){
+				low = middle + 1;
+			} else if(keys[middle] > key){
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Finds the child of an inner node which covers a key
+	 *
+	 * @param key key to find
+	 * @return index of the child
+	 */
+	int childIndex(int key) {
+		int low = 0;
+		int high = count;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(keys[middle] <= key){
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Inserts an entry into a leaf
+	 *
+	 * @param index position of the entry
+	 * @param key record number
+	 * @param value record value
+	 * @param reference true if the value refers to overflow pages
+	 */
+	void insertEntry(int index, int key, byte[] value, boolean reference) {
+		System.arraycopy(keys, index, keys, index + 1, count - index);
+		System.arraycopy(values, index, values, index + 1, count - index);
+		System.arraycopy(references, index, references, index + 1, count - index);
+		keys[index] = key;
+		values[index] = value;
+		references[index] = reference;
+		valueBytes += value.length;
+		count++;
+	}
+
+	/**
+	 * Replaces the value of a leaf entry
+	 *
+	 * @param index position of the entry
+	 * @param value new value
+	 * @param reference true if the value refers to overflow pages
+	 */
+	void setValue(int index, byte[] value, boolean reference) {
+		valueBytes += value.length - values[index].length;
+		values[index] = value;
+		references[index] = reference;
+	}
+
+	/**
+	 * Removes an entry from a leaf
+	 *
+	 * @param index position of the entry
+	 */
+	void removeEntry(int index) {
+		valueBytes -= values[index].length;
+		System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+		System.arraycopy(values, index + 1, values, index, count - index - 1);
+		System.arraycopy(references, index + 1, references, index, count - index - 1);
+		count--;
+		values[count] = null;
+	}
+
+	/**
+	 * Inserts a key and the child to its right into an inner node
+	 *
+	 * @param index position of the key
+	 * @param key separator key
+	 * @param child page covering the keys from the separator on
+	 */
+	void insertChild(int index, int key, int child) {
+		System.arraycopy(keys, index, keys, index + 1, count - index);
+		System.arraycopy(children, index + 1, children, index + 2, count - index);
+		keys[index] = key;
+		children[index + 1] = child;
+		count++;
+	}
+
+	/**
+	 * Removes a child and one of its separator keys from an inner node
+	 *
+	 * @param index position of the child
+	 */
+	void removeChild(int index) {
+		int key = Math.max(index - 1, 0); // The separator of the merged ranges
+		System.arraycopy(keys, key + 1, keys, key, count - key - 1);
+		System.arraycopy(children, index + 1, children, index, count - index);
+		count--;
+	}
+
+	/**
+	 * Moves the entries from the given position on into another node
+	 *
+	 * @param from first position to move
+	 * @param target empty node of the same type
+	 */
+	void moveTo(int from, BPlusTreeNode target) {
+		if(leaf){
+			for(int i = from; i < count; i++){
+				target.insertEntry(target.count, keys[i], values[i], references[i]);
+				valueBytes -= values[i].length;
+				values[i] = null;
+			}
+			count = from;
+		} else {
+			// The key at from moves up into the parent
+			target.children[0] = children[from + 1];
+			for(int i = from + 1; i < count; i++){
+				target.insertChild(target.count, keys[i], children[i + 1]);
+			}
+			count = from;
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+
+/**
+ * BufferPool caches a bounded number of decoded pages of the B+-tree.
+ * The least recently used page is evicted when the pool is full, changed
+ * pages are written back on eviction and by flush(). Pages which aren't
+ * cached, like overflow pages, can be freed once the changes are flushed.
+ *
+ * @see Pager
+ * @see BPlusTree
+ */
+class BufferPool {
+
+	private Pager pager;
+	private int capacity;
+	private LinkedHashMap<Integer, BPlusTreeNode> frames = new LinkedHashMap<Integer, BPlusTreeNode>(16, 0.75f, true); // In access order
+	private Set<Integer> dirty = new HashSet<Integer>();
+	private List<Integer> released = new ArrayList<Integer>(); // Pages which are freed by the next flush
+
+	/**
+	 * Sets up the buffer pool
+	 *
+	 * @param pager pager of the page file
+	 * @param capacity maximum number of cached pages
+	 */
+	BufferPool(Pager pager, int capacity) {
+		this.pager = pager;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Gets a page, it is read from the file if it isn't cached
+	 *
+	 * @param page page number
+	 * @return the decoded page
+	 */
+	BPlusTreeNode get(int page) throws IOException {
+		BPlusTreeNode node = frames.get(page);
+		if(node == null){
+			node = BPlusTreeNode.decode(page, pager.read(page));
+			frames.put(page, node);
+			evict();
+		}
+		return node;
+	}
+
+	/**
+	 * Allocates a new page
+	 *
+	 * @param leaf true for a leaf, false for an inner node
+	 * @return the new empty page
+	 */
+	BPlusTreeNode create(boolean leaf) throws IOException {
+		BPlusTreeNode node = new BPlusTreeNode(pager.allocate(), leaf);
+		markDirty(node);
+		return node;
+	}
+
+	/**
+	 * Marks a page as changed, so it is written back
+	 *
+	 * @param node changed page
+	 */
+	void markDirty(BPlusTreeNode node) throws IOException {
+		frames.put(node.page, node); // The page might have been evicted while it was used
+		dirty.add(node.page);
+		evict();
+	}
+
+	/**
+	 * Removes a page from the pool and adds it to the free-page list
+	 *
+	 * @param node page to free
+	 */
+	void free(BPlusTreeNode node) throws IOException {
+		frames.remove(node.page);
+		dirty.remove(node.page);
+		pager.free(node.page);
+	}
+
+	/**
+	 * Adds a page which isn't cached to the free-page list by the next flush
+	 *
+	 * @param page page number
+	 */
+	void freeLater(int page) {
+		released.add(page);
+	}
+
+	/**
+	 * Writes all changed pages and the header to the file. The released
+	 * pages are freed after the changed pages were written.
+	 */
+	void flush() throws IOException {
+		for(Integer page : dirty){
+			pager.write(page, frames.get(page).encode());
+		}
+		dirty.clear();
+		for(int page : released){
+			pager.free(page);
+		}
+		released.clear();
+		pager.writeHeader();
+	}
+
+	/**
+	 * Evicts the least recently used pages while the pool is too big
+	 */
+	private void evict() throws IOException {
+		Iterator<Map.Entry<Integer, BPlusTreeNode>> it = frames.entrySet().iterator();
+		while(frames.size() > capacity){
+			Map.Entry<Integer, BPlusTreeNode> eldest = it.next();
+			if(dirty.remove(eldest.getKey())){
+				pager.write(eldest.getKey(), eldest.getValue().encode());
+			}
+			it.remove();
+		}
+	}
+
+}
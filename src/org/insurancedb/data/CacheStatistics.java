@@ -0,0 +1,97 @@
+package org.insurancedb.data;
+
+/**
+ * CacheStatistics is a snapshot of the counters of the record cache.
+ *
+ * @see InsuranceCompanyDAO#getCacheStatistics()
+ */
+public class CacheStatistics {
+
+	private int capacity;
+	private int size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Sets all counters
+	 *
+	 * @param capacity maximum number of cached records
+	 * @param size number of cached records
+	 * @param hits number of reads answered by the cache
+	 * @param misses number of reads passed on to the database
+	 * @param evictions number of records evicted to make room
+	 */
+	CacheStatistics(int capacity, int size, long hits, long misses, long evictions) {
+		this.capacity = capacity;
+		this.size = size;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+	}
+
+	/**
+	 * Gets the maximum number of cached records
+	 *
+	 * @return maximum number of cached records
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of cached records
+	 *
+	 * @return number of cached records
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of reads answered by the cache
+	 *
+	 * @return number of reads answered by the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of reads passed on to the database
+	 *
+	 * @return number of reads passed on to the database
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of records evicted to make room
+	 *
+	 * @return number of records evicted to make room
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Gets the share of reads answered by the cache
+	 *
+	 * @return hit rate between 0 and 1
+	 */
+	public double getHitRate() {
+		return hits + misses == 0 ? 0 : (double)hits / (hits + misses);
+	}
+
+	/**
+	 * Formats all counters
+	 *
+	 * @return String with all counters
+	 */
+	public String toString() {
+		return "Cache: " + size + "/" + capacity + " records, " + hits + " hits, " + misses + " misses, "
+			+ evictions + " evictions, hit rate " + Math.round(getHitRate() * 100) + "%";
+	}
+
+}
@@ -0,0 +1,470 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+
+/**
+ * CompressedBitmap is a compressed set of non-negative int values, organized
+ * like a Roaring bitmap. Values are partitioned by their upper 16 bits into
+ * containers. A container holds its lower 16 bits either as a sorted array,
+ * as long as it is sparse, or as a plain bitmap of 1024 words once it is dense.
+ * <p>
+ * AND and OR are computed container by container, dense containers
+ * are combined word by word.
+ */
+class CompressedBitmap {
+
+	private static final int ARRAY_MAX_SIZE = 4096; // Above this size a bitmap container is smaller
+	private static final int BITMAP_WORDS = 1024;	// 65536 bits
+
+	private char[] keys = new char[4];			 // Sorted upper 16 bits of the containers
+	private Container[] containers = new Container[4];
+	private int size;							 // Number of containers
+
+	/**
+	 * Adds a value to the bitmap
+	 *
+	 * @param value non-negative int value
+	 */
+	void add(int value) {
+		char key = (char)(value >>> 16);
+		int i = indexOf(key);
+		if(i < 0){
+			i = -(i + 1);
+			insertContainer(i, key, new ArrayContainer());
+		}
+		containers[i] = containers[i].add((char)value);
+	}
+
+	/**
+	 * Removes a value from the bitmap
+	 *
+	 * @param value non-negative int value
+	 */
+	void remove(int value) {
+		int i = indexOf((char)(value >>> 16));
+		if(i >= 0){
+			containers[i] = containers[i].remove((char)value);
+			if(containers[i].cardinality() == 0){
+				removeContainer(i);
+			}
+		}
+	}
+
+	/**
+	 * Checks if the bitmap contains a value
+	 *
+	 * @param value int value
+	 * @return true if the value is contained
+	 */
+	boolean contains(int value) {
+		int i = indexOf((char)(value >>> 16));
+		return i >= 0 && containers[i].contains((char)value);
+	}
+
+	/**
+	 * Gets the number of values in the bitmap
+	 *
+	 * @return cardinality of the bitmap
+	 */
+	int cardinality() {
+		int cardinality = 0;
+		for(int i = 0; i < size; i++){
+			cardinality += containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Checks if the bitmap contains no values
+	 *
+	 * @return true if the bitmap is empty
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Copies all values into a sorted array
+	 *
+	 * @return sorted int array
+	 */
+	int[] toArray() {
+		int[] values = new int[cardinality()];
+		int k = 0;
+		for(int i = 0; i < size; i++){
+			k = containers[i].copyTo(values, k, keys[i] << 16);
+		}
+		return values;
+	}
+
+	/**
+	 * Intersects two bitmaps
+	 *
+	 * @param a first bitmap
+	 * @param b second bitmap
+	 * @return new bitmap with all values contained in both bitmaps
+	 */
+	static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0, j = 0;
+		while(i < a.size && j < b.size){
+			if(a.keys[i] < b.keys[j]){
+				i++;
+			} else if(a.keys[i] > b.keys[j]){
+				j++;
+			} else {
+				Container c = a.containers[i].and(b.containers[j]);
+				if(c.cardinality() > 0){
+					result.insertContainer(result.size, a.keys[i], c);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Merges two bitmaps
+	 *
+	 * @param a first bitmap
+	 * @param b second bitmap
+	 * @return new bitmap with all values of both bitmaps
+	 */
+	static CompressedBitmap or(CompressedBitmap a, CompressedBitmap b) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0, j = 0;
+		while(i < a.size || j < b.size){
+			if(j == b.size || (i < a.size && a.keys[i] < b.keys[j])){
+				result.insertContainer(result.size, a.keys[i], a.containers[i].copy());
+				i++;
+			} else if(i == a.size || a.keys[i] > b.keys[j]){
+				result.insertContainer(result.size, b.keys[j], b.containers[j].copy());
+				j++;
+			} else {
+				result.insertContainer(result.size, a.keys[i], a.containers[i].or(b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the bitmap to a stream
+	 *
+	 * @param out DataOutput to write to
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for(int i = 0; i < size; i++){
+			out.writeChar(keys[i]);
+			containers[i].write(out);
+		}
+	}
+
+	/**
+	 * Reads a bitmap written by write()
+	 *
+	 * @param in DataInput to read from
+	 * @return the read bitmap
+	 */
+	static CompressedBitmap read(DataInput in) throws IOException {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		int n = in.readInt();
+		for(int i = 0; i < n; i++){
+			char key = in.readChar();
+			bitmap.insertContainer(i, key, Container.read(in));
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Finds the position of a container key
+	 *
+	 * @param key upper 16 bits
+	 * @return position of the key, or (-(insertion point) - 1) if not found
+	 */
+	private int indexOf(char key) {
+		// Values are mostly appended, so check the last container first
+		if(size > 0 && keys[size - 1] == key){
+			return size - 1;
+		}
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insertContainer(int i, char key, Container container) {
+		if(size == keys.length){
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = key;
+		containers[i] = container;
+		size++;
+	}
+
+	private void removeContainer(int i) {
+		System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+		System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+		size--;
+		containers[size] = null;
+	}
+
+	/**
+	 * Container holds the lower 16 bits of all values sharing the same upper 16 bits.
+	 * Mutating methods return the container to use afterwards, which allows
+	 * a container to convert itself to the other representation.
+	 */
+	private static abstract class Container {
+
+		abstract Container add(char value);
+
+		abstract Container remove(char value);
+
+		abstract boolean contains(char value);
+
+		abstract int cardinality();
+
+		abstract int copyTo(int[] values, int k, int high);
+
+		abstract Container copy();
+
+		abstract void write(DataOutput out) throws IOException;
+
+		abstract long[] toWords();
+
+		Container and(Container other) {
+			if(this instanceof ArrayContainer || other instanceof ArrayContainer){
+				// Probe the array container against the other one
+				ArrayContainer array = (ArrayContainer)(this instanceof ArrayContainer ? this : other);
+				Container probe = array == this ? other : this;
+				ArrayContainer result = new ArrayContainer();
+				result.values = new char[Math.max(array.size, 4)];
+				for(int i = 0; i < array.size; i++){
+					if(probe.contains(array.values[i])){
+						result.values[result.size++] = array.values[i];
+					}
+				}
+				return result;
+			}
+			long[] a = toWords();
+			long[] b = other.toWords();
+			long[] words = new long[BITMAP_WORDS];
+			for(int i = 0; i < BITMAP_WORDS; i++){
+				words[i] = a[i] & b[i];
+			}
+			return BitmapContainer.of(words).optimize();
+		}
+
+		Container or(Container other) {
+			if(this instanceof ArrayContainer && other instanceof ArrayContainer
+					&& cardinality() + other.cardinality() <= ARRAY_MAX_SIZE){
+				Container result = copy();
+				ArrayContainer array = (ArrayContainer)other;
+				for(int i = 0; i < array.size; i++){
+					result = result.add(array.values[i]);
+				}
+				return result;
+			}
+			long[] a = toWords();
+			long[] b = other.toWords();
+			long[] words = new long[BITMAP_WORDS];
+			for(int i = 0; i < BITMAP_WORDS; i++){
+				words[i] = a[i] | b[i];
+			}
+			return BitmapContainer.of(words);
+		}
+
+		static Container read(DataInput in) throws IOException {
+			boolean bitmap = in.readBoolean();
+			int cardinality = in.readInt();
+			if(!bitmap){
+				ArrayContainer array = new ArrayContainer();
+				array.values = new char[Math.max(cardinality, 4)];
+				for(int i = 0; i < cardinality; i++){
+					array.values[i] = in.readChar();
+				}
+				array.size = cardinality;
+				return array;
+			}
+			long[] words = new long[BITMAP_WORDS];
+			for(int i = 0; i < BITMAP_WORDS; i++){
+				words[i] = in.readLong();
+			}
+			return BitmapContainer.of(words);
+		}
+
+	}
+
+	/**
+	 * ArrayContainer stores a sparse container as sorted char array
+	 */
+	private static class ArrayContainer extends Container {
+
+		private char[] values = new char[4];
+		private int size;
+
+		Container add(char value) {
+			int i = Arrays.binarySearch(values, 0, size, value);
+			if(i >= 0){
+				return this;
+			}
+			if(size == ARRAY_MAX_SIZE){
+				return BitmapContainer.of(toWords()).add(value);
+			}
+			i = -(i + 1);
+			if(size == values.length){
+				values = Arrays.copyOf(values, Math.min(size * 2, ARRAY_MAX_SIZE));
+			}
+			System.arraycopy(values, i, values, i + 1, size - i);
+			values[i] = value;
+			size++;
+			return this;
+		}
+
+		Container remove(char value) {
+			int i = Arrays.binarySearch(values, 0, size, value);
+			if(i >= 0){
+				System.arraycopy(values, i + 1, values, i, size - i - 1);
+				size--;
+			}
+			return this;
+		}
+
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, size, value) >= 0;
+		}
+
+		int cardinality() {
+			return size;
+		}
+
+		int copyTo(int[] target, int k, int high) {
+			for(int i = 0; i < size; i++){
+				target[k++] = high | values[i];
+			}
+			return k;
+		}
+
+		Container copy() {
+			ArrayContainer copy = new ArrayContainer();
+			copy.values = Arrays.copyOf(values, Math.max(size, 4));
+			copy.size = size;
+			return copy;
+		}
+
+		void write(DataOutput out) throws IOException {
+			out.writeBoolean(false);
+			out.writeInt(size);
+			for(int i = 0; i < size; i++){
+				out.writeChar(values[i]);
+			}
+		}
+
+		long[] toWords() {
+			long[] words = new long[BITMAP_WORDS];
+			for(int i = 0; i < size; i++){
+				words[values[i] >>> 6] |= 1L << values[i];
+			}
+			return words;
+		}
+
+	}
+
+	/**
+	 * BitmapContainer stores a dense container as 65536 bits
+	 */
+	private static class BitmapContainer extends Container {
+
+		private long[] words;
+		private int cardinality;
+
+		static BitmapContainer of(long[] words) {
+			BitmapContainer bitmap = new BitmapContainer();
+			bitmap.words = words;
+			for(long word : words){
+				bitmap.cardinality += Long.bitCount(word);
+			}
+			return bitmap;
+		}
+
+		Container add(char value) {
+			long bit = 1L << value;
+			if((words[value >>> 6] & bit) == 0){
+				words[value >>> 6] |= bit;
+				cardinality++;
+			}
+			return this;
+		}
+
+		Container remove(char value) {
+			long bit = 1L << value;
+			if((words[value >>> 6] & bit) != 0){
+				words[value >>> 6] &= ~bit;
+				cardinality--;
+			}
+			return optimize();
+		}
+
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		int cardinality() {
+			return cardinality;
+		}
+
+		int copyTo(int[] target, int k, int high) {
+			for(int i = 0; i < BITMAP_WORDS; i++){
+				long word = words[i];
+				while(word != 0){
+					target[k++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+			return k;
+		}
+
+		Container copy() {
+			return of(words.clone());
+		}
+
+		void write(DataOutput out) throws IOException {
+			out.writeBoolean(true);
+			out.writeInt(cardinality);
+			for(long word : words){
+				out.writeLong(word);
+			}
+		}
+
+		long[] toWords() {
+			return words;
+		}
+
+		/**
+		 * Converts the container back to an array container once it got sparse
+		 *
+		 * @return the smaller representation of this container
+		 */
+		Container optimize() {
+			if(cardinality > ARRAY_MAX_SIZE){
+				return this;
+			}
+			ArrayContainer array = new ArrayContainer();
+			array.values = new char[Math.max(cardinality, 4)];
+			for(int i = 0; i < BITMAP_WORDS; i++){
+				long word = words[i];
+				while(word != 0){
+					array.values[array.size++] = (char)((i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return array;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,328 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * DictionaryColumn stores one String field of all records in two files.
+ * The dictionary file holds every distinct value once, the codes file holds
+ * one int per record, which is the position of its value in the dictionary.
+ * <p>
+ * Codes have a fixed width, so a record's code is overwritten in place.
+ * New values are appended to the dictionary, unused values are only
+ * dropped by compact(). Deleted records have the code DELETED.
+ * <p>
+ * Both files are only read when the column is used for the first time.
+ * <p>
+ * compact() writes the new files next to the old ones and moves them over the
+ * old files, the codes first and the dictionary last. If this is interrupted,
+ * the column is completed or rolled back when it is read the next time.
+ *
+ * @see InsuranceCompanyColumnDAO
+ */
+class DictionaryColumn {
+
+	static final int DELETED = -1;
+
+	private static final String CODES_SUFFIX 	  = ".col";
+	private static final String DICTIONARY_SUFFIX = ".dict";
+	private static final String NEW_SUFFIX 		  = ".new"; // Name suffix of a compacted column which is swapped in
+
+	private File codesFile;
+	private File dictionaryFile;
+	private File newCodesFile;
+	private File newDictionaryFile;
+	private RandomAccessFile codesRaf;
+	private RandomAccessFile dictionaryRaf;
+
+	private boolean loaded;
+	private List<String> values;
+	private Map<String, Integer> codes;
+	private int[] rows = new int[0]; // Code of every record, record n at index n - 1
+	private int size;
+
+	/**
+	 * Sets up the column, its files are read lazily
+	 *
+	 * @param dir folder of the column files
+	 * @param name name of the column
+	 */
+	DictionaryColumn(File dir, String name) {
+		codesFile = new File(dir, name + CODES_SUFFIX);
+		dictionaryFile = new File(dir, name + DICTIONARY_SUFFIX);
+		newCodesFile = new File(dir, name + NEW_SUFFIX + CODES_SUFFIX);
+		newDictionaryFile = new File(dir, name + NEW_SUFFIX + DICTIONARY_SUFFIX);
+	}
+
+	/**
+	 * Writes a new column with the given values and forces it to disk.
+	 * The codes file is created first.
+	 *
+	 * @param dir folder of the column files
+	 * @param name name of the column
+	 * @param records value of every record, null for deleted records
+	 */
+	static void create(File dir, String name, String[] records) throws IOException {
+		Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		FileOutputStream codesOut = new FileOutputStream(new File(dir, name + CODES_SUFFIX));
+		FileOutputStream valuesOut = new FileOutputStream(new File(dir, name + DICTIONARY_SUFFIX));
+		DataOutputStream codes = new DataOutputStream(new BufferedOutputStream(codesOut));
+		DataOutputStream values = new DataOutputStream(new BufferedOutputStream(valuesOut));
+		try {
+			for(String value : records){
+				if(value == null){
+					codes.writeInt(DELETED);
+					continue;
+				}
+				Integer code = dictionary.get(value);
+				if(code == null){
+					code = dictionary.size();
+					dictionary.put(value, code);
+					values.writeUTF(value);
+				}
+				codes.writeInt(code);
+			}
+			codes.flush();
+			values.flush();
+			codesOut.getFD().sync();
+			valuesOut.getFD().sync();
+		} finally {
+			codes.close();
+			values.close();
+		}
+	}
+
+	/**
+	 * Replaces a column with the given values. The new column is written
+	 * next to the old files and then moved over them, see compact().
+	 *
+	 * @param dir folder of the column files
+	 * @param name name of the column
+	 * @param records value of every record, null for deleted records
+	 */
+	static void replace(File dir, String name, String[] records) throws IOException {
+		create(dir, name + NEW_SUFFIX, records);
+		move(new File(dir, name + NEW_SUFFIX + CODES_SUFFIX), new File(dir, name + CODES_SUFFIX));
+		move(new File(dir, name + NEW_SUFFIX + DICTIONARY_SUFFIX), new File(dir, name + DICTIONARY_SUFFIX));
+	}
+
+	/**
+	 * Checks if the files of a column exist. A column whose new dictionary
+	 * still has to be moved exists as well, it is completed when it is read.
+	 *
+	 * @param dir folder of the column files
+	 * @param name name of the column
+	 * @return true if the column exists
+	 */
+	static boolean exists(File dir, String name) {
+		boolean pending = new File(dir, name + NEW_SUFFIX + DICTIONARY_SUFFIX).exists() && !new File(dir, name + NEW_SUFFIX + CODES_SUFFIX).exists();
+		return new File(dir, name + CODES_SUFFIX).exists() && (pending || new File(dir, name + DICTIONARY_SUFFIX).exists());
+	}
+
+	/**
+	 * Reads the column files, if it wasn't done yet
+	 */
+	private void load() throws IOException {
+		if(loaded){
+			return;
+		}
+		recover();
+		values = new ArrayList<String>();
+		codes = new HashMap<String, Integer>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dictionaryFile)));
+		long valid = 0; // Length of the dictionary up to the last complete value
+		try {
+			while(true){
+				String value = in.readUTF();
+				codes.put(value, values.size());
+				values.add(value);
+				valid = dictionaryFile.length() - in.available();
+			}
+		} catch (EOFException e) {
+			// End of the dictionary or a torn value
+		} finally {
+			in.close();
+		}
+
+		codesRaf = new RandomAccessFile(codesFile, "rw");
+		dictionaryRaf = new RandomAccessFile(dictionaryFile, "rw");
+		dictionaryRaf.setLength(valid);
+
+		FileChannel channel = codesRaf.getChannel();
+		size = (int)(channel.size() / 4);
+		rows = new int[Math.max(size, 16)];
+		ByteBuffer buffer = ByteBuffer.allocate(size * 4);
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, buffer.position()) == -1){
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		buffer.asIntBuffer().get(rows, 0, size);
+		loaded = true;
+	}
+
+	/**
+	 * Gets the number of records of the column
+	 *
+	 * @return number of records, including deleted ones
+	 */
+	int size() throws IOException {
+		load();
+		return size;
+	}
+
+	/**
+	 * Gets the code of a record's value
+	 *
+	 * @param recNo record number
+	 * @return dictionary code, or DELETED
+	 */
+	int getCode(int recNo) throws IOException {
+		load();
+		return rows[recNo - 1];
+	}
+
+	/**
+	 * Gets the value of a record
+	 *
+	 * @param recNo record number
+	 * @return the record's value, or null if the record was deleted
+	 */
+	String get(int recNo) throws IOException {
+		int code = getCode(recNo);
+		return code == DELETED ? null : values.get(code);
+	}
+
+	/**
+	 * Gets the number of distinct values
+	 *
+	 * @return size of the dictionary
+	 */
+	int getValueCount() throws IOException {
+		load();
+		return values.size();
+	}
+
+	/**
+	 * Gets a value of the dictionary
+	 *
+	 * @param code dictionary code
+	 * @return the value
+	 */
+	String getValue(int code) throws IOException {
+		load();
+		return values.get(code);
+	}
+
+	/**
+	 * Looks up the code of a value, without adding it to the dictionary
+	 *
+	 * @param value value to look up
+	 * @return dictionary code, or DELETED if no record has that value
+	 */
+	int lookup(String value) throws IOException {
+		load();
+		Integer code = codes.get(value);
+		return code == null ? DELETED : code;
+	}
+
+	/**
+	 * Sets the value of a record. A record number right after the
+	 * last record appends a new record.
+	 *
+	 * @param recNo record number
+	 * @param value new value, or null to delete the record
+	 */
+	void set(int recNo, String value) throws IOException {
+		load();
+		int code = DELETED;
+		if(value != null){
+			code = lookup(value);
+			if(code == DELETED){
+				code = values.size();
+				dictionaryRaf.seek(dictionaryRaf.length());
+				dictionaryRaf.writeUTF(value); // The value is written before any code refers to it
+				values.add(value);
+				codes.put(value, code);
+			}
+		}
+		if(recNo > size){
+			if(size == rows.length){
+				rows = Arrays.copyOf(rows, rows.length * 2);
+			}
+			size++;
+		}
+		rows[recNo - 1] = code;
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		buffer.putInt(0, code);
+		FileChannel channel = codesRaf.getChannel();
+		while(buffer.hasRemaining()){
+			channel.write(buffer, (long)(recNo - 1) * 4 + buffer.position());
+		}
+	}
+
+	/**
+	 * Completes or rolls back a compaction which was interrupted. While the
+	 * new files are written both exist, and the old column is still intact.
+	 * A new dictionary without new codes means the codes were already moved.
+	 */
+	private void recover() throws IOException {
+		if(newDictionaryFile.exists() && !newCodesFile.exists()){
+			move(newDictionaryFile, dictionaryFile);
+		} else {
+			newCodesFile.delete();
+			newDictionaryFile.delete();
+		}
+	}
+
+	/**
+	 * Rewrites the column without the values no record refers to anymore.
+	 * The new column replaces the old one only after it was written completely.
+	 */
+	void compact() throws IOException {
+		load();
+		String[] records = new String[size];
+		for(int i = 0; i < size; i++){
+			records[i] = rows[i] == DELETED ? null : values.get(rows[i]);
+		}
+		String name = codesFile.getName().substring(0, codesFile.getName().length() - CODES_SUFFIX.length());
+		close();
+		replace(codesFile.getParentFile(), name, records);
+	}
+
+	/**
+	 * Replaces a file with another one in a single step, if the file system allows it
+	 *
+	 * @param source the new file
+	 * @param target file to replace
+	 */
+	private static void move(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Forces the column files to disk and closes them.
+	 * The column is read again when it is used the next time.
+	 */
+	void close() throws IOException {
+		if(loaded){
+			codesRaf.getChannel().force(false);
+			dictionaryRaf.getChannel().force(false);
+			codesRaf.close();
+			dictionaryRaf.close();
+			loaded = false;
+			values = null;
+			codes = null;
+			rows = new int[0];
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package org.insurancedb.data;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * FloatColumn reads a float field of all records, stored as packed floats,
+ * one per record. Older versions stored the percentage column that way,
+ * which lost the text of the percentages. It is only read to migrate such
+ * a column to a DictionaryColumn.
+ * <p>
+ * The file is only read when the column is used for the first time.
+ *
+ * @see InsuranceCompanyColumnDAO
+ */
+class FloatColumn {
+
+	private static final String SUFFIX = ".col";
+
+	private File file;
+	private RandomAccessFile raf;
+	private boolean loaded;
+	private float[] rows = new float[0]; // Value of every record, record n at index n - 1
+	private int size;
+
+	/**
+	 * Sets up the column, its file is read lazily
+	 *
+	 * @param dir folder of the column file
+	 * @param name name of the column
+	 */
+	FloatColumn(File dir, String name) {
+		file = new File(dir, name + SUFFIX);
+	}
+
+	/**
+	 * Checks if the file of a column exists
+	 *
+	 * @param dir folder of the column file
+	 * @param name name of the column
+	 * @return true if the column exists
+	 */
+	static boolean exists(File dir, String name) {
+		return new File(dir, name + SUFFIX).exists();
+	}
+
+	/**
+	 * Reads the column file, if it wasn't done yet
+	 */
+	private void load() throws IOException {
+		if(loaded){
+			return;
+		}
+		raf = new RandomAccessFile(file, "rw");
+		FileChannel channel = raf.getChannel();
+		size = (int)(channel.size() / 4);
+		rows = new float[Math.max(size, 16)];
+		ByteBuffer buffer = ByteBuffer.allocate(size * 4);
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, buffer.position()) == -1){
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		buffer.asFloatBuffer().get(rows, 0, size);
+		loaded = true;
+	}
+
+	/**
+	 * Gets the number of records of the column
+	 *
+	 * @return number of records, including deleted ones
+	 */
+	int size() throws IOException {
+		load();
+		return size;
+	}
+
+	/**
+	 * Gets the value of a record
+	 *
+	 * @param recNo record number
+	 * @return the record's value
+	 */
+	float get(int recNo) throws IOException {
+		load();
+		return rows[recNo - 1];
+	}
+
+	/**
+	 * Forces the column file to disk and closes it.
+	 * The column is read again when it is used the next time.
+	 */
+	void close() throws IOException {
+		if(loaded){
+			raf.getChannel().force(false);
+			raf.close();
+			loaded = false;
+			rows = new float[0];
+		}
+	}
+
+}
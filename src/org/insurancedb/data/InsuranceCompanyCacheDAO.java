@@ -0,0 +1,147 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+
+/**
+ * InsuranceCompanyCacheDAO caches the records read by readRecord in front of
+ * another StorageDAO. The cache is bounded and evicts with the CLOCK algorithm.
+ * A record is invalidated whenever it is added, updated or deleted, so the
+ * cache never returns outdated data. All other calls are passed through.
+ * <p>
+ * Records are copied in and out of the cache, so callers can't change cached records.
+ * <p>
+ * Only the cache itself is locked, never a call of the DAO behind it. A
+ * missed record is read without the lock and is only cached if no record
+ * was invalidated meanwhile, so a concurrent write can't leave an old
+ * version in the cache.
+ *
+ * @see RecordCache
+ * @see InsuranceCompanyDAO
+ */
+class InsuranceCompanyCacheDAO implements StorageDAO {
+
+	private StorageDAO dao;
+	private RecordCache cache;
+	private long invalidations; // Number of invalidations so far
+
+	/**
+	 * Sets up the cache in front of a DAO
+	 *
+	 * @param dao the cached DAO
+	 * @param capacity maximum number of cached records
+	 */
+	InsuranceCompanyCacheDAO(StorageDAO dao, int capacity) {
+		this.dao = dao;
+		cache = new RecordCache(capacity);
+	}
+
+	public synchronized void initialize() throws DatabaseNotFoundException {
+		cache.clear();
+		dao.initialize();
+	}
+
+	public List<String[]> readAllRecords() {
+		return dao.readAllRecords();
+	}
+
+	public int[] readRecordNumbers() {
+		return dao.readRecordNumbers();
+	}
+
+	public String[] readRecord(int recNo) throws RecordNotFoundException {
+		long stamp;
+		synchronized(this){
+			String[] record = cache.get(recNo);
+			if(record != null){
+				return record.clone();
+			}
+			stamp = invalidations;
+		}
+		String[] record = dao.readRecord(recNo); // Deleted records are not cached, the exception passes through
+		synchronized(this){
+			if(stamp == invalidations){
+				cache.put(recNo, record.clone());
+			}
+		}
+		return record;
+	}
+
+	public int addRecord(String[] data) throws DuplicateIndexException {
+		int id = dao.addRecord(data);
+		invalidate(id); // The record number might be reused
+		return id;
+	}
+
+	public void deleteRecord(int recNo) throws RecordNotFoundException {
+		dao.deleteRecord(recNo);
+		invalidate(recNo);
+	}
+
+	public void updateRecord(int recNo, String[] data) throws RecordNotFoundException {
+		dao.updateRecord(recNo, data);
+		invalidate(recNo);
+	}
+
+	public int[] applyBatch(WriteBatch batch) throws RecordNotFoundException, DuplicateIndexException {
+		try {
+			return dao.applyBatch(batch);
+		} finally {
+			synchronized(this){
+				cache.clear(); // A failed batch might be applied partly
+				invalidations++;
+			}
+		}
+	}
+
+	public int[] findRecords(String[] criteria, int bool) {
+		return dao.findRecords(criteria, bool);
+	}
+
+	public void snapshot(File target) throws IOException {
+		dao.snapshot(target);
+	}
+
+	public void compact() {
+		dao.compact();
+		synchronized(this){
+			cache.clear();
+			invalidations++;
+		}
+	}
+
+	public int[] renumber(float ratio) {
+		int[] remap = dao.renumber(ratio);
+		if(remap != null){
+			synchronized(this){
+				cache.clear(); // The cached records moved
+				invalidations++;
+			}
+		}
+		return remap;
+	}
+
+	public void close() {
+		dao.close();
+	}
+
+	/**
+	 * Removes a record from the cache after it was written
+	 *
+	 * @param recNo record number
+	 */
+	private synchronized void invalidate(int recNo) {
+		cache.invalidate(recNo);
+		invalidations++;
+	}
+
+	/**
+	 * Gets a snapshot of the cache counters
+	 *
+	 * @return the cache statistics
+	 */
+	synchronized CacheStatistics getStatistics() {
+		return cache.getStatistics();
+	}
+
+}
@@ -0,0 +1,111 @@
+package org.insurancedb.data;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * InsuranceCompanyColumnConverter converts the text database into the
+ * column files of the InsuranceCompanyColumnDAO. Record numbers and
+ * deleted records are kept.
+ * <p>
+ * Usage:
+ * <pre>
+ * java org.insurancedb.data.InsuranceCompanyColumnConverter [data folder]
+ * </pre>
+ *
+ * @see InsuranceCompanyColumnDAO
+ */
+public class InsuranceCompanyColumnConverter {
+
+	/**
+	 * Checks if all column files exist
+	 *
+	 * @param dir folder of the column files
+	 * @return true if the columns exist
+	 */
+	static boolean exists(File dir) {
+		for(int i = 0; i < InsuranceCompanyColumnDAO.COLUMNS.length; i++){
+			if(!DictionaryColumn.exists(dir, InsuranceCompanyColumnDAO.COLUMNS[i])){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Converts a text database. The columns are written to a temporary
+	 * folder first, which is then renamed to the column folder.
+	 *
+	 * @param file text database file
+	 * @param dir folder of the column files
+	 */
+	public static void convert(File file, File dir) throws IOException {
+		InsuranceCompanyRecordIndex index = InsuranceCompanyRecordIndex.build(file);
+		int size = index.size();
+		String[][] fields = new String[InsuranceCompanyColumnDAO.COLUMNS.length][size];
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			InsuranceCompanyRecordCodec codec = new InsuranceCompanyRecordCodec();
+			for(int recNo = 1; recNo <= size; recNo++){
+				codec.read(channel, index.getOffset(recNo), index.getLength(recNo));
+				if(codec.isDeleted()){
+					continue;
+				}
+				if(codec.getFieldCount() < fields.length){
+					System.out.println("Record " + recNo + " is incomplete and was not converted");
+					continue;
+				}
+				try {
+					codec.getFloat(InsuranceCompanyColumnDAO.PERCENTAGE); // Only records with a valid percentage are converted
+				} catch (NumberFormatException e) {
+					System.out.println("Record " + recNo + " has an invalid percentage and was not converted");
+					continue;
+				}
+				for(int i = 0; i < fields.length; i++){
+					fields[i][recNo - 1] = codec.getString(i);
+				}
+			}
+		} finally {
+			raf.close();
+		}
+
+		// Write the columns into a temporary folder
+		File tempDir = new File(dir.getPath() + ".tmp");
+		delete(tempDir);
+		tempDir.mkdirs();
+		for(int i = 0; i < fields.length; i++){
+			DictionaryColumn.create(tempDir, InsuranceCompanyColumnDAO.COLUMNS[i], fields[i]);
+		}
+		delete(dir);
+		Files.move(tempDir.toPath(), dir.toPath());
+	}
+
+	/**
+	 * Deletes a folder with all its files
+	 *
+	 * @param dir folder to delete
+	 */
+	private static void delete(File dir) {
+		if(dir.exists()){
+			for(File file : dir.listFiles()){
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	/**
+	 * Converts the text database of a data folder
+	 *
+	 * @param args optional data folder, data in the working directory by default
+	 */
+	public static void main(String[] args) throws IOException {
+		File dataDir = new File(args.length > 0 ? args[0] : System.getProperty("user.dir") + File.separator + "data");
+		convert(new File(dataDir, "insurance.db"), new File(dataDir, "columns"));
+		System.out.println("DB was successully converted!");
+	}
+
+}
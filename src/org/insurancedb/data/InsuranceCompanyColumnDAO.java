@@ -0,0 +1,526 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+
+import org.insurancedb.util.LongIntHashTable;
+
+/**
+ * InsuranceCompanyColumnDAO is a binary implementation of the data access object.
+ * Every field is stored in its own column files in the columns folder of the
+ * database. All fields are dictionary encoded, so the broker percentage keeps
+ * its text just like in the text database. It implements the Singleton pattern.
+ * <p>
+ * Columns are read when they are used for the first time, so e.g. a search
+ * only reads the insurance types column. If there are no columns yet, they
+ * are converted from the text database by initialize(). Columns of older
+ * versions, which stored the percentage as packed floats, are migrated.
+ * <p>
+ * Added records are only compared with the records of the same name, which
+ * are found by the code of the name. These record numbers and the deleted
+ * records are collected in memory by the first add.
+ * <p>
+ * The backend is used if the system property insurancedb.backend is set to column.
+ *
+ * @see InsuranceCompanyDAO
+ * @see InsuranceCompanyColumnConverter
+ */
+public class InsuranceCompanyColumnDAO implements StorageDAO {
+
+	// Database folder and file location constants
+	private static final String DS 		   = File.separator;
+	private static final String DATA_DIR   = System.getProperty("insurancedb.data", System.getProperty("user.dir") + DS + "data");
+	private static final String COLUMN_DIR = DATA_DIR + DS + "columns";
+	private static final String DB_FILE    = "insurance.db";
+
+	// Column names in field order
+	static final String[] COLUMNS = {"name", "telephone", "url", "types", "percentage", "description"};
+	static final int PERCENTAGE = 4;
+	static final int TYPES = 3;
+
+	// Singleton instance
+	private static InsuranceCompanyColumnDAO instance;
+
+	private DictionaryColumn[] columns;
+	private LongIntHashTable names; // Record numbers by the code of their name, built by the first add
+	private BitSet deleted; // Deleted records, built with the names
+
+	// Insurance type tokens of every value of the types column
+	private List<String> tokens = new ArrayList<String>();
+	private Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+	private int[][] typeTokens = new int[0][]; // Token ids of every types value
+	private int tokenizedTypes; // Number of types values which are tokenized
+
+	/**
+	 * Private empty construtor
+	 */
+	private InsuranceCompanyColumnDAO() {};
+
+	/**
+	 * getInstance() returns the created instance of the class
+	 *
+	 * @return returns an InsuranceCompanyColumnDAO object
+	 */
+	public static synchronized InsuranceCompanyColumnDAO getInstance() {
+		if(instance == null){
+			instance = new InsuranceCompanyColumnDAO();
+		}
+		return instance;
+	}
+
+	/**
+	 * Sets up all columns. If they don't exist yet, the text database
+	 * is converted. Throws an exception if the database is not available.
+	 */
+	public synchronized void initialize() throws DatabaseNotFoundException {
+		File dir = new File(COLUMN_DIR);
+		try {
+			migratePercentages(dir);
+		} catch (IOException e) {
+			throw new DatabaseNotFoundException("Database could not be migrated: " + e.getMessage());
+		}
+		if(!InsuranceCompanyColumnConverter.exists(dir)){
+			File file = new File(DATA_DIR + DS + DB_FILE);
+			if(!file.exists()){
+				throw new DatabaseNotFoundException();
+			}
+			try {
+				InsuranceCompanyColumnConverter.convert(file, dir);
+			} catch (IOException e) {
+				throw new DatabaseNotFoundException("Database could not be converted: " + e.getMessage());
+			}
+		}
+
+		columns = new DictionaryColumn[COLUMNS.length];
+		for(int i = 0; i < COLUMNS.length; i++){
+			columns[i] = new DictionaryColumn(dir, COLUMNS[i]);
+		}
+		names = null;
+		deleted = null;
+		resetTypeTokens();
+	}
+
+	/**
+	 * Replaces a percentage column of packed floats, as written by older
+	 * versions, with a dictionary column. The original text of the
+	 * percentages is lost in that format, so they are written as floats.
+	 *
+	 * @param dir folder of the column files
+	 */
+	private void migratePercentages(File dir) throws IOException {
+		String name = COLUMNS[PERCENTAGE];
+		if(!FloatColumn.exists(dir, name) || DictionaryColumn.exists(dir, name)){
+			return;
+		}
+		FloatColumn floats = new FloatColumn(dir, name);
+		String[] records = new String[floats.size()];
+		for(int recNo = 1; recNo <= records.length; recNo++){
+			float value = floats.get(recNo);
+			records[recNo - 1] = Float.isNaN(value) ? null : String.valueOf(value); // Deleted records are NaN
+		}
+		floats.close();
+		DictionaryColumn.replace(dir, name, records);
+		System.out.println("Percentage column was successully migrated!");
+	}
+
+	/**
+	 * Returns a List of String arrays containing all database records
+	 *
+	 * @return String array containing database record
+	 */
+	public synchronized List<String[]> readAllRecords() {
+		List<String[]> list = new ArrayList<String[]>();
+		try {
+			int size = columns[0].size();
+			for(int i = 1; i <= size; i++){
+				list.add(columns[0].getCode(i) == DictionaryColumn.DELETED ? null : read(i)); // Deleted records are null to ensure proper ID's
+			}
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+		return list;
+	}
+
+	/**
+	 * Writes a point in time copy of the database in the format of the text database
+	 *
+	 * @param target file of the copy
+	 */
+	public synchronized void snapshot(File target) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), "UTF-8"));
+		try {
+			int size = columns[0].size();
+			for(int i = 1; i <= size; i++){
+				if(columns[0].getCode(i) == DictionaryColumn.DELETED){
+					out.write("empty");
+				} else {
+					String[] data = read(i);
+					out.write(data[0]+":"+data[1]+":"+data[2]+":"+data[3]+":"+data[4]+":"+data[5]);
+				}
+				out.write(System.getProperty("line.separator"));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the identifiers of all records. Only the codes
+	 * of the name column are scanned.
+	 *
+	 * @return sorted array of record identifiers
+	 */
+	public synchronized int[] readRecordNumbers() {
+		try {
+			int size = columns[0].size();
+			int[] found = new int[size];
+			int n = 0;
+			for(int i = 1; i <= size; i++){
+				if(columns[0].getCode(i) != DictionaryColumn.DELETED){
+					found[n++] = i;
+				}
+			}
+			return Arrays.copyOf(found, n);
+		} catch (IOException e) {
+			System.out.println(e);
+			return new int[0];
+		}
+	}
+
+	/**
+	 * Reads a single record from the database
+	 *
+	 * @param recNo record number to read
+	 * @return String array containing database record
+	 */
+	public synchronized String[] readRecord(int recNo) throws RecordNotFoundException {
+		try {
+			if(recNo < 1 || recNo > columns[0].size() || columns[0].getCode(recNo) == DictionaryColumn.DELETED){
+				throw new RecordNotFoundException();
+			}
+			return read(recNo);
+		} catch (IOException e) {
+			System.out.println(e);
+			throw new RecordNotFoundException();
+		}
+	}
+
+	/**
+	 * Reads all fields of a live record
+	 *
+	 * @param recNo record number
+	 * @return String array containing the record
+	 */
+	private String[] read(int recNo) throws IOException {
+		String[] record = new String[COLUMNS.length];
+		for(int i = 0; i < COLUMNS.length; i++){
+			record[i] = columns[i].get(recNo);
+		}
+		return record;
+	}
+
+	/**
+	 * Adds a record to the database. The first deleted record is reused,
+	 * otherwise the record is appended.
+	 *
+	 * @param data String array containing record data
+	 * @return int which represents the id of the record
+	 */
+	public synchronized int addRecord(String[] data) throws DuplicateIndexException {
+		int id = 0;
+		try {
+			buildIndexes();
+			if(isDuplicate(data)){
+				throw new DuplicateIndexException(); // If the exact same data already exists
+			}
+			id = deleted.nextSetBit(1); // Reuse the first deleted record
+			if(id == -1){
+				id = columns[0].size() + 1;
+			}
+			write(id, data);
+			System.out.println("DB was successully updated!");
+		} catch (IOException e) {
+			System.out.println(e);
+			id = -1;
+		}
+		return id;
+	}
+
+	/**
+	 * Collects the records of every name code and the deleted records,
+	 * if it wasn't done yet. write() keeps them up to date afterwards.
+	 */
+	private void buildIndexes() throws IOException {
+		if(names != null){
+			return;
+		}
+		LongIntHashTable table = new LongIntHashTable();
+		BitSet free = new BitSet();
+		int size = columns[0].size();
+		for(int i = 1; i <= size; i++){
+			int code = columns[0].getCode(i);
+			if(code == DictionaryColumn.DELETED){
+				free.set(i);
+			} else {
+				table.add(code, i);
+			}
+		}
+		names = table;
+		deleted = free;
+	}
+
+	/**
+	 * Checks if a record holds the given data. Only records with
+	 * the same name can be duplicates.
+	 *
+	 * @param data String array containing record data
+	 * @return true if all fields of a record are equal
+	 */
+	private boolean isDuplicate(String[] data) throws IOException {
+		int name = columns[0].lookup(data[0]);
+		if(name == DictionaryColumn.DELETED){
+			return false; // The name is not used yet
+		}
+		for(int recNo : names.find(name)){
+			if(Arrays.equals(read(recNo), data)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes all fields of a record. The name marks a record as live, so it is
+	 * written last for live records and first for deleted records. That way a
+	 * crash never leaves a live record with missing fields behind.
+	 *
+	 * The names and the deleted records follow the change.
+	 *
+	 * @param recNo record number
+	 * @param data String array containing record data, or null to delete the record
+	 */
+	private void write(int recNo, String[] data) throws IOException {
+		if(names != null && recNo <= columns[0].size() && columns[0].getCode(recNo) != DictionaryColumn.DELETED){
+			names.remove(columns[0].getCode(recNo), recNo);
+		}
+		if(data == null){
+			columns[0].set(recNo, null);
+		}
+		for(int i = COLUMNS.length - 1; i > 0; i--){
+			columns[i].set(recNo, data == null ? null : data[i]);
+		}
+		if(data != null){
+			columns[0].set(recNo, data[0]);
+		}
+		if(names != null){
+			if(data != null){
+				names.add(columns[0].getCode(recNo), recNo);
+			}
+			deleted.set(recNo, data == null);
+		}
+	}
+
+	/**
+	 * Deletes a record from the database
+	 *
+	 * @param recNo record number to delete
+	 */
+	public synchronized void deleteRecord(int recNo) throws RecordNotFoundException {
+		readRecord(recNo); // Throws an exception if the record doesn't exist or is already deleted
+		try {
+			write(recNo, null);
+			System.out.println("Record " + recNo + " deleted!");
+			System.out.println("DB was successully updated!");
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Updates a specific record in the database
+	 *
+	 * @param recNo record number to update
+	 * @param data new record data
+	 */
+	public synchronized void updateRecord(int recNo, String[] data) throws RecordNotFoundException {
+		try {
+			if(recNo < 1 || recNo > columns[0].size()){
+				throw new RecordNotFoundException();
+			}
+			write(recNo, data);
+			System.out.println("Entry was successully updated!");
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Applies a batch of writes. Records are written in place, so the
+	 * operations are applied one after the other.
+	 *
+	 * @param batch the writes
+	 * @return record number of every operation in the order of the batch,
+	 * -1 for skipped duplicates, or null if an add could not be written
+	 */
+	public synchronized int[] applyBatch(WriteBatch batch) throws RecordNotFoundException, DuplicateIndexException {
+		return batch.applyEach(this);
+	}
+
+	/**
+	 * Compacts the database. Values which are not used by any
+	 * record are dropped from the dictionaries.
+	 */
+	public synchronized void compact() {
+		try {
+			for(DictionaryColumn column : columns){
+				column.compact();
+			}
+			names = null; // The codes of the names changed
+			resetTypeTokens(); // The codes of the types column changed
+			System.out.println("DB was successully compacted!");
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Records are never renumbered, the rows of the columns keep their positions
+	 *
+	 * @param ratio share of deleted records
+	 * @return null
+	 */
+	public int[] renumber(float ratio) {
+		return null;
+	}
+
+	/**
+	 * Forces all columns to disk and closes them
+	 */
+	public synchronized void close() {
+		if(columns == null){
+			return;
+		}
+		try {
+			for(DictionaryColumn column : columns){
+				column.close();
+			}
+			names = null;
+			deleted = null;
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Finds records accord to given criteria. The criteria are matched against
+	 * the few distinct insurance type tokens, each value of the types column
+	 * then combines the matches of its tokens. Only the codes of the types
+	 * column are scanned.
+	 *
+	 * @param criteria String array with search criteria
+	 * @param bool int either 0(AND) or 1(OR) as search argument
+	 * @return returns an array of int with all found id's
+	 */
+	public synchronized int[] findRecords(String[] criteria, int bool) {
+		try {
+			DictionaryColumn types = columns[TYPES];
+			tokenizeTypes();
+
+			// Every criterion is one bit, which is set for every token containing it
+			int groups = (criteria.length + 63) / 64;
+			long[][] tokenMasks = new long[tokens.size()][groups];
+			for(int t = 0; t < tokens.size(); t++){
+				for(int c = 0; c < criteria.length; c++){
+					if(tokens.get(t).contains(criteria[c].toLowerCase())){
+						tokenMasks[t][c / 64] |= 1L << c;
+					}
+				}
+			}
+
+			boolean[] matches = new boolean[tokenizedTypes];
+			long[] mask = new long[groups];
+			for(int code = 0; code < matches.length; code++){
+				Arrays.fill(mask, 0);
+				for(int t : typeTokens[code]){
+					for(int g = 0; g < groups; g++){
+						mask[g] |= tokenMasks[t][g];
+					}
+				}
+				matches[code] = matches(mask, criteria.length, bool);
+			}
+
+			int size = types.size();
+			int[] found = new int[size];
+			int n = 0;
+			for(int i = 1; i <= size; i++){
+				int code = types.getCode(i);
+				if(code != DictionaryColumn.DELETED && matches[code]){
+					found[n++] = i;
+				}
+			}
+			return Arrays.copyOf(found, n);
+		} catch (IOException e) {
+			System.out.println(e);
+			return new int[0];
+		}
+	}
+
+	/**
+	 * Tokenizes all values of the types column which were added
+	 * since the last call
+	 */
+	private void tokenizeTypes() throws IOException {
+		DictionaryColumn types = columns[TYPES];
+		int count = types.getValueCount();
+		if(typeTokens.length < count){
+			typeTokens = Arrays.copyOf(typeTokens, Math.max(count, typeTokens.length * 2));
+		}
+		for(; tokenizedTypes < count; tokenizedTypes++){
+			Set<String> valueTokens = InsuranceTypeIndex.tokenize(types.getValue(tokenizedTypes));
+			int[] ids = new int[valueTokens.size()];
+			int i = 0;
+			for(String token : valueTokens){
+				Integer id = tokenIds.get(token);
+				if(id == null){
+					id = tokens.size();
+					tokens.add(token);
+					tokenIds.put(token, id);
+				}
+				ids[i++] = id;
+			}
+			typeTokens[tokenizedTypes] = ids;
+		}
+	}
+
+	/**
+	 * Forgets the tokens of the types column
+	 */
+	private void resetTypeTokens() {
+		tokens.clear();
+		tokenIds.clear();
+		typeTokens = new int[0][];
+		tokenizedTypes = 0;
+	}
+
+	/**
+	 * Checks if the matched criteria satisfy the search
+	 *
+	 * @param mask bits of the matched criteria
+	 * @param criteria number of criteria
+	 * @param bool int either 0(AND) or 1(OR) as search argument
+	 * @return true if all criteria (AND) or any criterion (OR) matched
+	 */
+	private boolean matches(long[] mask, int criteria, int bool) {
+		for(int g = 0; g < mask.length; g++){
+			int bits = Math.min(64, criteria - g * 64);
+			long all = bits == 64 ? -1L : (1L << bits) - 1;
+			if(bool == OR && mask[g] != 0){
+				return true;
+			} else if(bool == AND && mask[g] != all){
+				return false;
+			}
+		}
+		return bool == AND;
+	}
+
+}
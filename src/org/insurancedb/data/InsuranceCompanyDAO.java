@@ -1,28 +1,58 @@
 package org.insurancedb.data;
 
 import java.util.*;
+import java.io.*;
 
 /**
  * InsuranceCompanyDAO represents the applications
  * data access object. It implements all methods of the
  * DAO interface.
  * <p>
- * It delegates it's responsibilites to a specific DAO implementation.
+ * It delegates it's responsibilites to a specific DAO implementation,
+ * which is the text database, the column database or the B+-tree database.
+ * Records read by readRecord are cached in front of it.
+ * <p>
+ * The DAO can be called from many threads at once. The text database lets
+ * reads run in parallel and locks single records for updates, the column
+ * and B+-tree databases serialize their calls.
  * 
  * @see DAO
  */
 public class InsuranceCompanyDAO implements DAO {
 
-	// Text database DAO implementation
-	private InsuranceCompanyTextDAO dao;
+	// Names of the record fields, in the order of the data arrays
+	public static final String[] FIELD_NAMES = { "companyName", "telephone", "url", "insuranceTypes", "percentage", "generalDescription" };
+
+	// Backend selected by the system property insurancedb.backend
+	private static final String BACKEND = System.getProperty("insurancedb.backend", "text");
+
+	// Records cached by readRecord, set by the system property insurancedb.cache. 0 disables the cache.
+	private static final int CACHE_SIZE = Integer.getInteger("insurancedb.cache", 10000);
+
+	// Share of deleted records from which on the records are renumbered, set by the system property insurancedb.renumber. 0 never renumbers.
+	private static final float RENUMBER_RATIO = Float.parseFloat(System.getProperty("insurancedb.renumber", "0"));
+
+	// Text, column or B+-tree database DAO implementation
+	private StorageDAO dao;
 	// InsuranceCompanySqlDAO or InsuranceCompanyXmlDAO would also be possible
+	private InsuranceCompanyCacheDAO cache;
 
 	/**
 	 * The constructor sets the classes dao
 	 * to an instance of the implementation dao.
 	 */
 	public InsuranceCompanyDAO() {
-		dao = InsuranceCompanyTextDAO.getInstance();
+		if(BACKEND.equals("column")){
+			dao = InsuranceCompanyColumnDAO.getInstance();
+		} else if(BACKEND.equals("tree")){
+			dao = InsuranceCompanyTreeDAO.getInstance();
+		} else {
+			dao = InsuranceCompanyTextDAO.getInstance();
+		}
+		if(CACHE_SIZE > 0){
+			cache = new InsuranceCompanyCacheDAO(dao, CACHE_SIZE);
+			dao = cache;
+		}
 	}
 
 	/**
@@ -42,6 +72,16 @@ public class InsuranceCompanyDAO implements DAO {
 		return dao.readAllRecords();
 	}
 
+	/**
+	 * Delegates readRecordNumbers to dao and returns the identifiers
+	 * of all records, without reading the records
+	 *
+	 * @return sorted array of record identifiers
+	 */
+	public int[] readRecordNumbers() {
+		return dao.readRecordNumbers();
+	}
+
 	/**
 	 * Delegates readRecord to dao and returns a String array containing a database
 	 * record
@@ -83,6 +123,65 @@ public class InsuranceCompanyDAO implements DAO {
 		dao.updateRecord(recNo, data);
 	};
 
+	/**
+	 * Delegates applyBatch to dao and returns the record
+	 * number of every operation of the batch
+	 *
+	 * @param batch adds, updates and deletes to apply
+	 * @return record number of every operation in the order of the batch,
+	 * -1 for skipped duplicates, or null if the database could not be written
+	 */
+	public int[] applyBatch(WriteBatch batch) throws RecordNotFoundException, DuplicateIndexException {
+		return dao.applyBatch(batch);
+	}
+
+	/**
+	 * Delegates snapshot to dao, which writes a point in time copy of
+	 * all records in the format of the text database
+	 *
+	 * @param target file of the copy
+	 */
+	public void snapshot(File target) throws IOException {
+		dao.snapshot(target);
+	}
+
+	/**
+	 * Delegates database compaction to dao
+	 */
+	public void compact() {
+		dao.compact();
+	}
+
+	/**
+	 * Delegates renumbering to dao, if the share of deleted records reached
+	 * the ratio set by insurancedb.renumber. Only the text database renumbers.
+	 *
+	 * @return new record number at the index of every old record number, 0 for
+	 * deleted records, or null if the records were not renumbered
+	 */
+	public int[] renumber() {
+		if(RENUMBER_RATIO <= 0){
+			return null;
+		}
+		return dao.renumber(RENUMBER_RATIO);
+	}
+
+	/**
+	 * Delegates closing the database to dao
+	 */
+	public void close() {
+		dao.close();
+	}
+
+	/**
+	 * Gets the counters of the record cache
+	 *
+	 * @return the cache statistics, or null if the cache is disabled
+	 */
+	public CacheStatistics getCacheStatistics() {
+		return cache != null ? cache.getStatistics() : null;
+	}
+
 	/**
 	 * Delegates findRecords to dao and returns an int array
 	 * containing all found record identifiers
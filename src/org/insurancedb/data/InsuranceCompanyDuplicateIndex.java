@@ -0,0 +1,239 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+
+import org.insurancedb.util.LongIntHashTable;
+
+/**
+ * InsuranceCompanyDuplicateIndex maps a 64-bit hash of the key of every record
+ * to its record number, so an added record is checked for duplicates without
+ * reading the database. The key consists of the key fields of the record,
+ * which are normalized first: surrounding white space is removed, inner white
+ * space is collapsed to a single space and letters are lower case.
+ * <p>
+ * By default every field is part of the key, so records which only differ in
+ * case or spacing are duplicates. The system property insurancedb.duplicatekey
+ * sets the key fields, e.g. companyName,telephone treats all records with the same
+ * name and telephone number as duplicates.
+ * <p>
+ * The hashes and record numbers are kept in a LongIntHashTable.
+ * Different keys can have the same hash, so the records found for a hash are
+ * only candidates whose keys have to be compared. Several records can have
+ * the same key, as updates are not checked for duplicates.
+ * <p>
+ * The index is saved next to the database with a stamp of the database state
+ * and the key fields, like the InsuranceTypeIndex.
+ *
+ * @see InsuranceCompanyTextDAO
+ * @see InsuranceTypeIndex
+ * @see org.insurancedb.util.LongIntHashTable
+ */
+class InsuranceCompanyDuplicateIndex {
+
+	// Fields of the key, set by the system property insurancedb.duplicatekey
+	static final int[] KEY_FIELDS = keyFields(System.getProperty("insurancedb.duplicatekey", ""));
+
+	private static final int FILE_VERSION = 1;
+
+	private LongIntHashTable table = new LongIntHashTable(); // Key hash to record numbers
+
+	/**
+	 * Parses the key fields
+	 *
+	 * @param names comma separated field names
+	 * @return positions of the key fields, all fields if no valid name is given
+	 */
+	static int[] keyFields(String names) {
+		List<String> fieldNames = Arrays.asList(InsuranceCompanyDAO.FIELD_NAMES);
+		BitSet fields = new BitSet();
+		for(String name : names.split(",")){
+			int field = fieldNames.indexOf(name.trim());
+			if(field != -1){
+				fields.set(field);
+			} else if(name.trim().length() > 0){
+				System.out.println("Unknown duplicate key field " + name.trim());
+			}
+		}
+		if(fields.isEmpty()){
+			fields.set(0, InsuranceCompanyDAO.FIELD_NAMES.length);
+		}
+		int[] keyFields = new int[fields.cardinality()];
+		for(int i = 0, field = fields.nextSetBit(0); field != -1; i++, field = fields.nextSetBit(field + 1)){
+			keyFields[i] = field;
+		}
+		return keyFields;
+	}
+
+	/**
+	 * Builds the normalized key of a record
+	 *
+	 * @param data String array containing record data
+	 * @return the key fields, normalized and separated by ":"
+	 */
+	static String key(String[] data) {
+		StringBuilder key = new StringBuilder();
+		for(int field : KEY_FIELDS){
+			if(key.length() > 0){
+				key.append(':');
+			}
+			if(field < data.length){
+				normalize(key, data[field]);
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Appends a field without surrounding white space, with inner
+	 * white space collapsed to a single space and in lower case
+	 *
+	 * @param key key to append to
+	 * @param field the field
+	 */
+	private static void normalize(StringBuilder key, String field) {
+		boolean space = false; // White space is pending
+		int start = key.length();
+		for(int i = 0; i < field.length(); i++){
+			char c = field.charAt(i);
+			if(Character.isWhitespace(c)){
+				space = key.length() > start;
+			} else {
+				if(space){
+					key.append(' ');
+					space = false;
+				}
+				key.append(Character.toLowerCase(c));
+			}
+		}
+	}
+
+	/**
+	 * Gets the 64-bit hash of a key, FNV-1a with a final mix of the bits
+	 *
+	 * @param key normalized key
+	 * @return hash of the key
+	 */
+	static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for(int i = 0; i < key.length(); i++){
+			h = (h ^ key.charAt(i)) * 0x100000001b3L;
+		}
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * Gets the number of indexed records
+	 *
+	 * @return number of records
+	 */
+	int size() {
+		return table.size();
+	}
+
+	/**
+	 * Adds a record to the index
+	 *
+	 * @param recNo record number
+	 * @param data String array containing record data
+	 */
+	void add(int recNo, String[] data) {
+		table.add(hash(key(data)), recNo);
+	}
+
+	/**
+	 * Removes a record from the index
+	 *
+	 * @param recNo record number
+	 * @param data String array the record was indexed with
+	 */
+	void remove(int recNo, String[] data) {
+		table.remove(hash(key(data)), recNo);
+	}
+
+	/**
+	 * Finds the records which might have the same key as the given data
+	 *
+	 * @param data String array containing record data
+	 * @return record numbers with the same hash, their keys still have to be compared
+	 */
+	int[] find(String[] data) {
+		return table.find(hash(key(data)));
+	}
+
+	/**
+	 * Saves the index to a file
+	 *
+	 * @param file index file
+	 * @param stamp values identifying the database state the index belongs to
+	 */
+	void save(File file, long[] stamp) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(FILE_VERSION);
+			out.writeInt(stamp.length);
+			for(long value : stamp){
+				out.writeLong(value);
+			}
+			out.writeInt(KEY_FIELDS.length);
+			for(int field : KEY_FIELDS){
+				out.writeInt(field);
+			}
+			out.writeInt(table.size());
+			for(int i = 0; i < table.capacity(); i++){
+				if(table.isUsed(i)){
+					out.writeInt(table.getValue(i));
+					out.writeLong(table.getKey(i));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Loads an index saved by save()
+	 *
+	 * @param file index file
+	 * @param stamp values identifying the current database state
+	 * @return the loaded index, or null if there is no index for the current database state and key fields
+	 */
+	static InsuranceCompanyDuplicateIndex load(File file, long[] stamp) throws IOException {
+		if(!file.exists()){
+			return null;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != FILE_VERSION || in.readInt() != stamp.length){
+				return null;
+			}
+			for(long value : stamp){
+				if(in.readLong() != value){
+					return null; // The database was changed after the index was saved
+				}
+			}
+			if(in.readInt() != KEY_FIELDS.length){
+				return null;
+			}
+			for(int field : KEY_FIELDS){
+				if(in.readInt() != field){
+					return null; // The index was built for other key fields
+				}
+			}
+			InsuranceCompanyDuplicateIndex index = new InsuranceCompanyDuplicateIndex();
+			int n = in.readInt();
+			for(int i = 0; i < n; i++){
+				int recNo = in.readInt();
+				index.table.add(in.readLong(), recNo);
+			}
+			return index;
+		} catch (EOFException e) {
+			return null; // Incomplete index file
+		} finally {
+			in.close();
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,305 @@
+package org.insurancedb.data;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.zip.*;
+
+/**
+ * InsuranceCompanyExporter exports all records of the database. The records are
+ * taken from a point in time snapshot of the DAO, so edits can continue while
+ * the records are exported and the export still shows a single state of the
+ * database. Writes only wait until the snapshot is written, which is a plain
+ * file copy for the text database. The snapshot is then streamed line by line
+ * into the export, so exports of any size need a constant amount of memory.
+ * <p>
+ * Records are exported in one of these formats:
+ * <ul>
+ * <li>TEXT, the format of insurance.db, which can replace the database
+ * <li>CSV with a header row, fields are quoted if needed
+ * <li>JSON_LINES, one object per line
+ * <li>BINARY, the magic bytes IDBS and a version int, then for every record the
+ * gap to the previous record number and its six fields as UTF-8 bytes prefixed
+ * by their length. Numbers are written with 7 bits per byte, the high bit marks
+ * that another byte follows. A gap of 0 ends the snapshot.
+ * </ul>
+ * CSV and JSON lines exports can be imported by the InsuranceCompanyImporter.
+ * The export can be compressed with gzip or deflate.
+ * <p>
+ * Usage, the format and compression are taken from the file extension, e.g.
+ * .csv.gz or .jsonl.deflate:
+ * <pre>
+ * java org.insurancedb.data.InsuranceCompanyExporter [export file]
+ * </pre>
+ *
+ * @see InsuranceCompanyDAO#snapshot
+ */
+public class InsuranceCompanyExporter {
+
+	// Format constants
+	public static final int TEXT	   = 0;
+	public static final int CSV		   = 1;
+	public static final int JSON_LINES = 2;
+	public static final int BINARY	   = 3;
+
+	// Compression constants
+	public static final int NONE	= 0;
+	public static final int GZIP	= 1;
+	public static final int DEFLATE = 2;
+
+	private static final String DS 			  = File.separator;
+	private static final String DATA_DIR 	  = System.getProperty("insurancedb.data", System.getProperty("user.dir") + DS + "data");
+	private static final String DATA_TEMP_DIR = DATA_DIR + DS + "tmp";
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final byte[] MAGIC = { 'I', 'D', 'B', 'S' };
+	private static final int VERSION = 1;
+
+	private InsuranceCompanyDAO dao;
+
+	/**
+	 * Creates an exporter of a database
+	 *
+	 * @param dao the initialized DAO
+	 */
+	public InsuranceCompanyExporter(InsuranceCompanyDAO dao) {
+		this.dao = dao;
+	}
+
+	/**
+	 * Gets the format of a file by its extension, ignoring .gz and .deflate.
+	 * Files ending with .csv are CSV, .json, .jsonl and .ndjson are JSON lines,
+	 * .bin and .snapshot are BINARY, all other files are TEXT.
+	 *
+	 * @param file export file
+	 * @return int either TEXT, CSV, JSON_LINES or BINARY
+	 */
+	public static int getFormat(File file) {
+		String name = file.getName().toLowerCase().replaceAll("\\.(gz|deflate)$", "");
+		if(name.endsWith(".csv")){
+			return CSV;
+		} else if(name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson")){
+			return JSON_LINES;
+		} else if(name.endsWith(".bin") || name.endsWith(".snapshot")){
+			return BINARY;
+		}
+		return TEXT;
+	}
+
+	/**
+	 * Gets the compression of a file by its extension
+	 *
+	 * @param file export file
+	 * @return int either NONE, GZIP or DEFLATE
+	 */
+	public static int getCompression(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".gz") ? GZIP : name.endsWith(".deflate") ? DEFLATE : NONE;
+	}
+
+	/**
+	 * Exports all records into a file. The export is written next to the
+	 * file first and then renamed, so an existing file is only replaced by
+	 * a complete export.
+	 *
+	 * @param file export file, its extension sets the format and compression
+	 * @return number of exported records
+	 */
+	public long exportFile(File file) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		long count;
+		OutputStream out = new FileOutputStream(tempFile);
+		try {
+			count = export(out, getFormat(file), getCompression(file));
+		} catch (IOException e) {
+			out.close();
+			tempFile.delete();
+			throw e;
+		}
+		out.close();
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return count;
+	}
+
+	/**
+	 * Exports all records into a stream. The stream is not closed.
+	 *
+	 * @param out the stream
+	 * @param format TEXT, CSV, JSON_LINES or BINARY
+	 * @param compression NONE, GZIP or DEFLATE
+	 * @return number of exported records
+	 */
+	public long export(OutputStream out, int format, int compression) throws IOException {
+		File tempDir = new File(DATA_TEMP_DIR);
+		tempDir.mkdirs();
+		File snapshot = File.createTempFile("insurance", ".snapshot", tempDir);
+		try {
+			dao.snapshot(snapshot);
+			DeflaterOutputStream compressed = null;
+			if(compression == GZIP){
+				out = compressed = new GZIPOutputStream(out, BUFFER_SIZE);
+			} else if(compression == DEFLATE){
+				out = compressed = new DeflaterOutputStream(out, new Deflater(), BUFFER_SIZE);
+			}
+			long count = write(snapshot, new BufferedOutputStream(out, BUFFER_SIZE), format);
+			if(compressed != null){
+				compressed.finish();
+			}
+			return count;
+		} finally {
+			snapshot.delete();
+		}
+	}
+
+	/**
+	 * Streams the records of a snapshot into the export
+	 *
+	 * @param snapshot snapshot of the database
+	 * @param out the export
+	 * @param format TEXT, CSV, JSON_LINES or BINARY
+	 * @return number of exported records
+	 */
+	private long write(File snapshot, BufferedOutputStream out, int format) throws IOException {
+		Writer writer = new OutputStreamWriter(out, CHARSET);
+		DataOutputStream data = new DataOutputStream(out);
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(snapshot), CHARSET), BUFFER_SIZE);
+		long count = 0;
+		try {
+			if(format == CSV){
+				writeCsv(writer, InsuranceCompanyDAO.FIELD_NAMES);
+			} else if(format == BINARY){
+				data.write(MAGIC);
+				data.writeInt(VERSION);
+			}
+			int recNo = 0;
+			int previous = 0; // Last exported record number
+			for(String line = in.readLine(); line != null; line = in.readLine()){
+				recNo++;
+				String[] fields = InsuranceCompanyRecordCodec.split(line.trim()); // Slots of the text database are padded
+				boolean deleted = fields[0].equals("empty") || fields[0].length() == 0;
+				if(format == TEXT){
+					writer.write(deleted ? "empty" : line.trim()); // Deleted records keep their line, so record numbers don't change
+					writer.write(LINE_SEPARATOR);
+				}
+				if(deleted){
+					continue;
+				}
+				if(format == CSV){
+					writeCsv(writer, fields);
+				} else if(format == JSON_LINES){
+					writeJson(writer, fields);
+				} else if(format == BINARY){
+					writeNumber(data, recNo - previous);
+					previous = recNo;
+					for(int i = 0; i < InsuranceCompanyDAO.FIELD_NAMES.length; i++){
+						byte[] bytes = (i < fields.length ? fields[i] : "").getBytes(CHARSET);
+						writeNumber(data, bytes.length);
+						data.write(bytes);
+					}
+				}
+				count++;
+			}
+			if(format == BINARY){
+				writeNumber(data, 0);
+			}
+			writer.flush();
+			data.flush();
+		} finally {
+			in.close();
+		}
+		return count;
+	}
+
+	/**
+	 * Writes a CSV row. Fields with commas, quotes or line breaks are quoted.
+	 *
+	 * @param writer the export
+	 * @param fields fields of the row
+	 */
+	private static void writeCsv(Writer writer, String[] fields) throws IOException {
+		for(int i = 0; i < InsuranceCompanyDAO.FIELD_NAMES.length; i++){
+			String field = i < fields.length ? fields[i] : "";
+			if(i > 0){
+				writer.write(',');
+			}
+			if(field.indexOf(',') != -1 || field.indexOf('"') != -1 || field.indexOf('\n') != -1 || field.indexOf('\r') != -1){
+				writer.write('"');
+				writer.write(field.replace("\"", "\"\""));
+				writer.write('"');
+			} else {
+				writer.write(field);
+			}
+		}
+		writer.write("\r\n");
+	}
+
+	/**
+	 * Writes a record as JSON object on a single line
+	 *
+	 * @param writer the export
+	 * @param fields fields of the record
+	 */
+	private static void writeJson(Writer writer, String[] fields) throws IOException {
+		writer.write('{');
+		for(int i = 0; i < InsuranceCompanyDAO.FIELD_NAMES.length; i++){
+			if(i > 0){
+				writer.write(',');
+			}
+			writer.write('"');
+			writer.write(InsuranceCompanyDAO.FIELD_NAMES[i]);
+			writer.write("\":\"");
+			String field = i < fields.length ? fields[i] : "";
+			for(int c = 0; c < field.length(); c++){
+				char ch = field.charAt(c);
+				if(ch == '"' || ch == '\\'){
+					writer.write('\\');
+					writer.write(ch);
+				} else if(ch < ' '){
+					writer.write(String.format("\\u%04x", (int)ch));
+				} else {
+					writer.write(ch);
+				}
+			}
+			writer.write('"');
+		}
+		writer.write('}');
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes a positive number with 7 bits per byte, lowest bits first
+	 *
+	 * @param data the export
+	 * @param n the number
+	 */
+	private static void writeNumber(DataOutputStream data, int n) throws IOException {
+		while(n >= 0x80){
+			data.write((n & 0x7f) | 0x80);
+			n >>>= 7;
+		}
+		data.write(n);
+	}
+
+	/**
+	 * Exports the database of the data folder, which is set by the system
+	 * property insurancedb.data, into the given file. Without a file the
+	 * database is written to backup/insurance.db of the data folder.
+	 *
+	 * @param args optional export file
+	 */
+	public static void main(String[] args) throws IOException, DatabaseNotFoundException {
+		File file = new File(args.length > 0 ? args[0] : DATA_DIR + DS + "backup" + DS + "insurance.db");
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		InsuranceCompanyDAO dao = new InsuranceCompanyDAO();
+		dao.initialize();
+		try {
+			long count = new InsuranceCompanyExporter(dao).exportFile(file);
+			System.out.println(count + " records exported to " + file);
+		} finally {
+			dao.close();
+		}
+	}
+
+}
\ No newline at end of file
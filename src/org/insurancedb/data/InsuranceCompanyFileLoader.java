@@ -0,0 +1,98 @@
+package org.insurancedb.data;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+/**
+ * InsuranceCompanyFileLoader reads all records of the text database in parallel.
+ * The file is split into chunks of whole lines with the help of the record index,
+ * every chunk is memory mapped and parsed by a fork-join task with its own
+ * InsuranceCompanyRecordCodec. Each record is
+ * stored at the position of its record number, so deleted records stay null.
+ *
+ * @see InsuranceCompanyTextDAO
+ * @see InsuranceCompanyRecordIndex
+ * @see InsuranceCompanyRecordCodec
+ */
+class InsuranceCompanyFileLoader {
+
+	private static final long CHUNK_SIZE = 4 * 1024 * 1024; // Bytes parsed by a single task
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	/**
+	 * Reads and splits all records of the database file
+	 *
+	 * @param file the text database file
+	 * @param index record index of the file
+	 * @return array with the fields of each record, at index recNo - 1. Deleted records are null.
+	 */
+	static String[][] load(File file, InsuranceCompanyRecordIndex index) throws IOException {
+		String[][] records = new String[index.size()][];
+		if(records.length == 0){
+			return records;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			POOL.invoke(new ChunkTask(raf.getChannel(), index, records, 1, index.size()));
+		} catch (RuntimeException e) {
+			if(e.getCause() instanceof IOException){
+				throw (IOException)e.getCause();
+			}
+			throw e;
+		} finally {
+			raf.close();
+		}
+		return records;
+	}
+
+	/**
+	 * ChunkTask parses a range of records. Ranges bigger than CHUNK_SIZE
+	 * are split in two halves, which are parsed in parallel.
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private FileChannel channel;
+		private InsuranceCompanyRecordIndex index;
+		private String[][] records;
+		private int first;
+		private int last;
+
+		ChunkTask(FileChannel channel, InsuranceCompanyRecordIndex index, String[][] records, int first, int last) {
+			this.channel = channel;
+			this.index = index;
+			this.records = records;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected void compute() {
+			long start = index.getOffset(first);
+			long end = index.getOffset(last) + index.getLength(last);
+			if(end - start > CHUNK_SIZE && last > first){
+				int middle = (first + last) >>> 1;
+				invokeAll(new ChunkTask(channel, index, records, first, middle),
+						  new ChunkTask(channel, index, records, middle + 1, last));
+				return;
+			}
+			try {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				InsuranceCompanyRecordCodec codec = new InsuranceCompanyRecordCodec();
+				for(int recNo = first; recNo <= last; recNo++){
+					codec.wrap(buffer, (int)(index.getOffset(recNo) - start), index.getLength(recNo));
+					if(!codec.isDeleted()){	// empty is the placeholder if a record was deleted
+						records[recNo - 1] = codec.toArray();
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+	}
+
+}
\ No newline at end of file
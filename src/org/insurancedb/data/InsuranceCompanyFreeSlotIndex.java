@@ -0,0 +1,152 @@
+package org.insurancedb.data;
+
+import java.util.*;
+
+/**
+ * InsuranceCompanyFreeSlotIndex keeps the record numbers of deleted records
+ * together with the length of their slot, so addRecord finds the first deleted
+ * slot a new record fits in without scanning the database.
+ * <p>
+ * The free slots are the leaves of a segment tree over the record numbers.
+ * Every inner node holds the longest free slot below it, -1 if there is none.
+ * The first slot of at least a given length is found by descending into the
+ * left child whenever it is long enough, so adds, removes and lookups take
+ * O(log n) steps. The tree only grows up to the highest free record number.
+ *
+ * @see InsuranceCompanyTextDAO
+ */
+class InsuranceCompanyFreeSlotIndex {
+
+	private static final int NONE = -1; // Node without free slots
+	private static final int MIN_CAPACITY = 16;
+
+	private int capacity = MIN_CAPACITY; // Number of leaves, a power of two
+	private int[] tree = newTree(MIN_CAPACITY);
+	private int size;
+
+	/**
+	 * Gets the number of free slots
+	 *
+	 * @return number of deleted records
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a free slot. A slot which is already free gets the new length.
+	 *
+	 * @param recNo record number of the deleted record
+	 * @param length length of the slot in bytes
+	 */
+	void add(int recNo, int length) {
+		if(recNo >= capacity){
+			int newCapacity = capacity;
+			while(recNo >= newCapacity){
+				newCapacity *= 2;
+			}
+			grow(newCapacity);
+		}
+		if(tree[capacity + recNo] == NONE){
+			size++;
+		}
+		set(recNo, Math.max(length, 0));
+	}
+
+	/**
+	 * Removes a free slot, after a record was written into it
+	 *
+	 * @param recNo record number
+	 */
+	void remove(int recNo) {
+		if(recNo < capacity && tree[capacity + recNo] != NONE){
+			size--;
+			set(recNo, NONE);
+		}
+	}
+
+	/**
+	 * Checks if a slot is free
+	 *
+	 * @param recNo record number
+	 * @return true if the record is deleted
+	 */
+	boolean contains(int recNo) {
+		return recNo >= 0 && recNo < capacity && tree[capacity + recNo] != NONE;
+	}
+
+	/**
+	 * Finds the first free slot of at least the given length
+	 *
+	 * @param length minimal length in bytes, 0 for any free slot
+	 * @return lowest record number of such a slot, or 0 if there is none
+	 */
+	int find(int length) {
+		if(tree[1] < length){
+			return 0;
+		}
+		int node = 1;
+		while(node < capacity){
+			node = tree[2 * node] >= length ? 2 * node : 2 * node + 1;
+		}
+		return node - capacity;
+	}
+
+	/**
+	 * Gets all free slots
+	 *
+	 * @return sorted array of deleted record numbers
+	 */
+	int[] toArray() {
+		int[] recNos = new int[size];
+		int n = 0;
+		for(int recNo = 1; recNo < capacity && n < size; recNo++){
+			if(tree[capacity + recNo] != NONE){
+				recNos[n++] = recNo;
+			}
+		}
+		return recNos;
+	}
+
+	/**
+	 * Sets a leaf and updates the longest slots on its path to the root
+	 *
+	 * @param recNo record number of the leaf
+	 * @param value slot length, or NONE
+	 */
+	private void set(int recNo, int value) {
+		int node = capacity + recNo;
+		tree[node] = value;
+		for(node /= 2; node >= 1; node /= 2){
+			tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+		}
+	}
+
+	/**
+	 * Copies the leaves into a bigger tree and rebuilds the inner nodes
+	 *
+	 * @param newCapacity new number of leaves, a power of two
+	 */
+	private void grow(int newCapacity) {
+		int[] newTree = newTree(newCapacity);
+		System.arraycopy(tree, capacity, newTree, newCapacity, capacity);
+		for(int node = newCapacity - 1; node >= 1; node--){
+			newTree[node] = Math.max(newTree[2 * node], newTree[2 * node + 1]);
+		}
+		tree = newTree;
+		capacity = newCapacity;
+	}
+
+	/**
+	 * Creates a tree without free slots
+	 *
+	 * @param capacity number of leaves
+	 * @return the nodes, the root at index 1 and the leaves from index capacity on
+	 */
+	private static int[] newTree(int capacity) {
+		int[] tree = new int[2 * capacity];
+		Arrays.fill(tree, NONE);
+		return tree;
+	}
+
+}
\ No newline at end of file
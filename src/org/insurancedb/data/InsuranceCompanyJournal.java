@@ -0,0 +1,157 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.util.zip.CRC32;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+
+/**
+ * InsuranceCompanyJournal is the append-only write-ahead log of the text database.
+ * Every mutation is appended as one entry, which sets a record number to a new line:
+ * <pre>
+ * &lt;operation&gt; &lt;record number&gt; &lt;crc32&gt; &lt;line&gt;
+ * </pre>
+ * The operation is A (add), U (update) or D (delete, the line is the empty placeholder).
+ * Entries are written straight to the file, but only forced to disk by sync(),
+ * which allows to batch the fsync of several entries.
+ *
+ * @see InsuranceCompanyTextDAO
+ */
+class InsuranceCompanyJournal {
+
+	// Journal operation constants
+	static final char ADD 	 = 'A';
+	static final char UPDATE = 'U';
+	static final char DELETE = 'D';
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private int pending; // Number of entries written since the last sync
+
+	/**
+	 * Opens the journal file, creating it if it doesn't exist
+	 *
+	 * @param file journal file
+	 */
+	InsuranceCompanyJournal(File file) throws IOException {
+		this.file = file;
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+	}
+
+	/**
+	 * Replays all valid entries of the journal into the given map of record
+	 * numbers and lines. A torn entry at the end of the journal, left behind
+	 * by a crash, is cut off.
+	 *
+	 * @param lines map to apply the journal entries to
+	 */
+	void replay(Map<Integer, String> lines) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+		long valid = 0; // Length of the journal up to the last valid entry
+		try {
+			StringBuilder sb = new StringBuilder();
+			int c;
+			while((c = reader.read()) != -1){
+				if(c != '\n'){
+					sb.append((char)c);
+					continue;
+				}
+				String entry = sb.toString();
+				sb.setLength(0);
+				String[] bits = entry.split(" ", 4);
+				if(bits.length < 4 || bits[0].length() != 1 || !bits[2].equals(checksum(bits[3]))){
+					break; // Torn or corrupt entry, everything after it is lost
+				}
+				lines.put(Integer.parseInt(bits[1]), bits[3]);
+				valid += entry.getBytes(CHARSET).length + 1;
+			}
+		} catch (NumberFormatException e) {
+			// Treat it like a corrupt entry
+		} finally {
+			reader.close();
+		}
+		channel.truncate(valid);
+		channel.position(valid);
+	}
+
+	/**
+	 * Appends an entry to the journal. The entry is not durable until sync() is called.
+	 *
+	 * @param operation ADD, UPDATE or DELETE
+	 * @param recNo record number
+	 * @param line new line of the record
+	 */
+	void append(char operation, int recNo, String line) throws IOException {
+		String entry = operation + " " + recNo + " " + checksum(line) + " " + line + "\n";
+		ByteBuffer buffer = ByteBuffer.wrap(entry.getBytes(CHARSET));
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		pending++;
+	}
+
+	/**
+	 * Gets the number of entries which are not yet forced to disk
+	 *
+	 * @return number of pending entries
+	 */
+	int getPending() {
+		return pending;
+	}
+
+	/**
+	 * Gets the size of the journal
+	 *
+	 * @return journal size in bytes
+	 */
+	long size() throws IOException {
+		return channel.size();
+	}
+
+	/**
+	 * Forces all written entries to disk
+	 */
+	void sync() throws IOException {
+		if(pending > 0){
+			channel.force(false);
+			pending = 0;
+		}
+	}
+
+	/**
+	 * Removes all entries, after they were folded into a new database snapshot
+	 */
+	void truncate() throws IOException {
+		channel.truncate(0);
+		channel.position(0);
+		channel.force(false);
+		pending = 0;
+	}
+
+	/**
+	 * Forces all entries to disk and closes the journal
+	 */
+	void close() throws IOException {
+		sync();
+		raf.close();
+	}
+
+	/**
+	 * Calculates the checksum of a journal line
+	 *
+	 * @param line journal line
+	 * @return CRC32 checksum as hex String
+	 */
+	private static String checksum(String line) {
+		CRC32 crc = new CRC32();
+		crc.update(line.getBytes(CHARSET));
+		return Long.toHexString(crc.getValue());
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,390 @@
+package org.insurancedb.data;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+
+/**
+ * InsuranceCompanyRecordCodec parses the lines of the text database
+ * <pre>
+ * name:tel:url:types:percentage:description
+ * </pre>
+ * directly on the bytes of a ByteBuffer, e.g. a memory mapped chunk of the file.
+ * A codec is positioned on one line at a time. It finds the field separators
+ * without copying the line, Strings are only created when a field is requested
+ * and the percentage can be parsed straight into a float.
+ * <p>
+ * A codec is reused for many lines and is not thread-safe, every thread
+ * needs its own instance.
+ *
+ * @see InsuranceCompanyTextDAO
+ * @see InsuranceCompanyFileLoader
+ */
+class InsuranceCompanyRecordCodec {
+
+	static final byte SEPARATOR = ':';
+	static final byte LINE_FEED = '\n';
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final byte[] EMPTY 	 = "empty".getBytes(CHARSET); // Placeholder of a deleted record
+	private static final int WINDOW_SIZE = 1024 * 1024; // Bytes read at once by read()
+
+	// Powers of ten which are exact floats, used by the percentage fast path
+	private static final float[] POWERS_OF_TEN = { 1f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+	private static final int MAX_EXACT_MANTISSA = 1 << 24; // Biggest integer up to which every integer is a float
+
+	private ByteBuffer buffer;
+	private int start; // Position of the first byte of the trimmed line
+	private int end;   // Position after the last byte of the trimmed line
+	private int[] separators = new int[8]; // Positions of the field separators
+	private int separatorCount;
+	private byte[] scratch = new byte[256]; // Copy buffer to decode fields of direct buffers
+
+	// Window of the file for read()
+	private ByteBuffer window;
+	private long windowStart;
+
+	/**
+	 * Positions the codec on a line of the buffer. Spaces and line terminators
+	 * around the line are skipped, like String.trim() does.
+	 *
+	 * @param buffer buffer containing the line
+	 * @param offset position of the line in the buffer
+	 * @param length length of the line in bytes
+	 */
+	void wrap(ByteBuffer buffer, int offset, int length) {
+		this.buffer = buffer;
+		start = offset;
+		end = offset + length;
+		while(start < end && (buffer.get(start) & 0xff) <= ' '){
+			start++;
+		}
+		while(end > start && (buffer.get(end - 1) & 0xff) <= ' '){
+			end--;
+		}
+		separatorCount = 0;
+		for(int i = indexOf(buffer, SEPARATOR, start, end); i != -1; i = indexOf(buffer, SEPARATOR, i + 1, end)){
+			if(separatorCount == separators.length){
+				int[] newSeparators = new int[separators.length * 2];
+				System.arraycopy(separators, 0, newSeparators, 0, separatorCount);
+				separators = newSeparators;
+			}
+			separators[separatorCount++] = i;
+		}
+	}
+
+	/**
+	 * Positions the codec on a line of a database file. The file is read
+	 * in big windows, so reading the lines in file order is cheap.
+	 *
+	 * @param channel channel of the database file
+	 * @param offset byte offset of the line
+	 * @param length line length in bytes
+	 */
+	void read(FileChannel channel, long offset, int length) throws IOException {
+		if(window == null || offset < windowStart || offset + length > windowStart + window.limit()){
+			if(window == null || window.capacity() < length){
+				window = ByteBuffer.allocate(Math.max(WINDOW_SIZE, length));
+			}
+			window.clear();
+			while(window.position() < length){
+				if(channel.read(window, offset + window.position()) == -1){
+					throw new EOFException();
+				}
+			}
+			window.flip();
+			windowStart = offset;
+		}
+		wrap(window, (int)(offset - windowStart), length);
+	}
+
+	/**
+	 * Checks if the line is the placeholder of a deleted record
+	 *
+	 * @return true if the record was deleted
+	 */
+	boolean isDeleted() {
+		return equals(EMPTY);
+	}
+
+	/**
+	 * Checks if the first field is the placeholder of a deleted record
+	 *
+	 * @return true if the first field is "empty"
+	 */
+	boolean isDeletedField() {
+		return regionEquals(fieldStart(0), fieldEnd(0), EMPTY);
+	}
+
+	/**
+	 * Compares the line with the given bytes
+	 *
+	 * @param bytes encoded line
+	 * @return true if the trimmed line consists of exactly these bytes
+	 */
+	boolean equals(byte[] bytes) {
+		return regionEquals(start, end, bytes);
+	}
+
+	/**
+	 * Gets the number of fields of the line
+	 *
+	 * @return number of fields
+	 */
+	int getFieldCount() {
+		return separatorCount + 1;
+	}
+
+	/**
+	 * Gets the position of the first byte of the trimmed line
+	 *
+	 * @return start position in the buffer
+	 */
+	int getStart() {
+		return start;
+	}
+
+	/**
+	 * Gets the length of the trimmed line
+	 *
+	 * @return length in bytes
+	 */
+	int getLength() {
+		return end - start;
+	}
+
+	/**
+	 * Creates a String of a field
+	 *
+	 * @param field index of the field, starting at 0
+	 * @return the field's value
+	 */
+	String getString(int field) {
+		return decode(fieldStart(field), fieldEnd(field));
+	}
+
+	/**
+	 * Parses a field as float, without creating a String for plain decimals
+	 * like 12.5. Everything else is left to Float.parseFloat().
+	 *
+	 * @param field index of the field, starting at 0
+	 * @return the field's value
+	 */
+	float getFloat(int field) {
+		int from = fieldStart(field);
+		int to = fieldEnd(field);
+		int i = from;
+		boolean negative = false;
+		if(i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')){
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		int mantissa = 0;
+		int digits = 0;
+		int decimals = -1; // Digits after the decimal point, -1 before the point
+		for(; i < to; i++){
+			byte b = buffer.get(i);
+			if(b >= '0' && b <= '9'){
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if(decimals >= 0){
+					decimals++;
+				}
+				if(mantissa >= MAX_EXACT_MANTISSA || decimals >= POWERS_OF_TEN.length){
+					break;
+				}
+			} else if(b == '.' && decimals < 0){
+				decimals = 0;
+			} else {
+				break;
+			}
+		}
+		if(i < to || digits == 0){
+			return Float.parseFloat(getString(field)); // Not a plain decimal
+		}
+		// Both operands are exact floats, so the division is rounded just like parseFloat
+		float value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Creates the String of the trimmed line
+	 *
+	 * @return the line
+	 */
+	String getLine() {
+		return decode(start, end);
+	}
+
+	/**
+	 * Creates Strings of all fields, like String.split(":") on the trimmed line
+	 *
+	 * @return String array with all fields
+	 */
+	String[] toArray() {
+		int count = getFieldCount();
+		if(separatorCount > 0){
+			while(count > 0 && fieldStart(count - 1) == fieldEnd(count - 1)){
+				count--; // Trailing empty fields are dropped, like split does
+			}
+		}
+		String[] fields = new String[count];
+		for(int i = 0; i < count; i++){
+			fields[i] = getString(i);
+		}
+		return fields;
+	}
+
+	/**
+	 * Copies the trimmed line into an output stream
+	 *
+	 * @param out stream to write to
+	 */
+	void writeTo(OutputStream out) throws IOException {
+		if(buffer.hasArray()){
+			out.write(buffer.array(), buffer.arrayOffset() + start, end - start);
+		} else {
+			out.write(copy(start, end), 0, end - start);
+		}
+	}
+
+	/**
+	 * Splits a line into its fields, like String.split(":")
+	 *
+	 * @param line line to split
+	 * @return String array with all fields
+	 */
+	static String[] split(String line) {
+		int separator = line.indexOf(SEPARATOR);
+		if(separator == -1){
+			return new String[] { line };
+		}
+		String[] fields = new String[8];
+		int count = 0;
+		int from = 0;
+		while(true){
+			if(count == fields.length){
+				String[] newFields = new String[fields.length * 2];
+				System.arraycopy(fields, 0, newFields, 0, count);
+				fields = newFields;
+			}
+			if(separator == -1){
+				fields[count++] = line.substring(from);
+				break;
+			}
+			fields[count++] = line.substring(from, separator);
+			from = separator + 1;
+			separator = line.indexOf(SEPARATOR, from);
+		}
+		while(count > 0 && fields[count - 1].length() == 0){
+			count--; // Trailing empty fields are dropped, like split does
+		}
+		String[] result = new String[count];
+		System.arraycopy(fields, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Finds the next occurrence of a byte in a buffer
+	 *
+	 * @param buffer buffer to search
+	 * @param b byte to find
+	 * @param from first position to check
+	 * @param to position after the last position to check
+	 * @return position of the byte, or -1 if it wasn't found
+	 */
+	static int indexOf(ByteBuffer buffer, byte b, int from, int to) {
+		if(buffer.hasArray()){
+			byte[] array = buffer.array();
+			int offset = buffer.arrayOffset();
+			for(int i = from + offset, last = to + offset; i < last; i++){
+				if(array[i] == b){
+					return i - offset;
+				}
+			}
+		} else {
+			for(int i = from; i < to; i++){
+				if(buffer.get(i) == b){
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the position of the first byte of a field
+	 *
+	 * @param field index of the field
+	 * @return start position in the buffer
+	 */
+	private int fieldStart(int field) {
+		if(field > separatorCount){
+			throw new ArrayIndexOutOfBoundsException(field);
+		}
+		return field == 0 ? start : separators[field - 1] + 1;
+	}
+
+	/**
+	 * Gets the position after the last byte of a field
+	 *
+	 * @param field index of the field
+	 * @return end position in the buffer
+	 */
+	private int fieldEnd(int field) {
+		return field == separatorCount ? end : separators[field];
+	}
+
+	/**
+	 * Compares a region of the buffer with the given bytes
+	 *
+	 * @param from first position of the region
+	 * @param to position after the region
+	 * @param bytes bytes to compare with
+	 * @return true if the region consists of exactly these bytes
+	 */
+	private boolean regionEquals(int from, int to, byte[] bytes) {
+		if(to - from != bytes.length){
+			return false;
+		}
+		for(int i = 0; i < bytes.length; i++){
+			if(buffer.get(from + i) != bytes[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes a region of the buffer into a String
+	 *
+	 * @param from first position of the region
+	 * @param to position after the region
+	 * @return the decoded String
+	 */
+	private String decode(int from, int to) {
+		if(buffer.hasArray()){
+			return new String(buffer.array(), buffer.arrayOffset() + from, to - from, CHARSET);
+		}
+		return new String(copy(from, to), 0, to - from, CHARSET);
+	}
+
+	/**
+	 * Copies a region of a direct buffer into the scratch array
+	 *
+	 * @param from first position of the region
+	 * @param to position after the region
+	 * @return the scratch array, starting with the region's bytes
+	 */
+	private byte[] copy(int from, int to) {
+		if(scratch.length < to - from){
+			scratch = new byte[to - from];
+		}
+		ByteBuffer view = buffer.duplicate();
+		view.limit(to).position(from);
+		view.get(scratch, 0, to - from);
+		return scratch;
+	}
+
+}
\ No newline at end of file
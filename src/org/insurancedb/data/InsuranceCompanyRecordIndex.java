@@ -0,0 +1,165 @@
+package org.insurancedb.data;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * InsuranceCompanyRecordIndex maps record numbers to the byte offset
+ * and length of their line in the text database. It is built once by
+ * scanning the database file and then kept up to date by the
+ * InsuranceCompanyTextDAO, so single records can be read with one seek.
+ * <p>
+ * Record numbers start at 1, like the line numbers of the database file.
+ *
+ * @see InsuranceCompanyTextDAO
+ */
+class InsuranceCompanyRecordIndex {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private long[] offsets = new long[INITIAL_CAPACITY];
+	private int[] lengths = new int[INITIAL_CAPACITY];
+	private int size;
+	private long end; // Position right after the last indexed line
+	private boolean terminated = true; // False if the last line has no line terminator
+
+	/**
+	 * Builds a new index by scanning the given database file
+	 * for line terminators.
+	 *
+	 * @param file the text database file
+	 * @return a new index covering every line of the file
+	 */
+	static InsuranceCompanyRecordIndex build(File file) throws IOException {
+		InsuranceCompanyRecordIndex index = new InsuranceCompanyRecordIndex();
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			long position = 0;
+			long lineStart = 0;
+			while(channel.read(buffer) != -1){
+				buffer.flip();
+				int from = 0;
+				int lineFeed;
+				while((lineFeed = InsuranceCompanyRecordCodec.indexOf(buffer, InsuranceCompanyRecordCodec.LINE_FEED, from, buffer.limit())) != -1){
+					index.append(lineStart, (int)(position + lineFeed - lineStart), 1);
+					lineStart = position + lineFeed + 1;
+					from = lineFeed + 1;
+				}
+				position += buffer.limit();
+				buffer.clear();
+			}
+			if(position > lineStart){
+				index.append(lineStart, (int)(position - lineStart), 0); // Last line without terminator
+			}
+		} finally {
+			in.close();
+		}
+		return index;
+	}
+
+	/**
+	 * Gets the number of indexed records
+	 *
+	 * @return number of records
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the position right after the last indexed line
+	 *
+	 * @return end position in bytes
+	 */
+	long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Checks if the last indexed line ends with a line terminator
+	 *
+	 * @return true if a new line can be appended directly at the end
+	 */
+	boolean isTerminated() {
+		return terminated;
+	}
+
+	/**
+	 * Records that a line terminator was written after the last line
+	 *
+	 * @param terminatorLength length of the written line terminator
+	 */
+	void terminate(int terminatorLength) {
+		end += terminatorLength;
+		terminated = true;
+	}
+
+	/**
+	 * Checks if a record number is covered by the index
+	 *
+	 * @param recNo record number
+	 * @return true if the record number is indexed
+	 */
+	boolean contains(int recNo) {
+		return recNo >= 1 && recNo <= size;
+	}
+
+	/**
+	 * Gets the byte offset of a record's line
+	 *
+	 * @param recNo record number
+	 * @return byte offset of the line
+	 */
+	long getOffset(int recNo) {
+		return offsets[recNo - 1];
+	}
+
+	/**
+	 * Gets the length of a record's line, without the line terminator
+	 *
+	 * @param recNo record number
+	 * @return line length in bytes
+	 */
+	int getLength(int recNo) {
+		return lengths[recNo - 1];
+	}
+
+	/**
+	 * Appends a line at the given offset to the index
+	 *
+	 * @param offset byte offset of the line
+	 * @param length line length without the terminator
+	 * @param terminatorLength length of the line terminator
+	 */
+	void append(long offset, int length, int terminatorLength) {
+		if(size == offsets.length){
+			int capacity = offsets.length * 2;
+			long[] newOffsets = new long[capacity];
+			int[] newLengths = new int[capacity];
+			System.arraycopy(offsets, 0, newOffsets, 0, size);
+			System.arraycopy(lengths, 0, newLengths, 0, size);
+			offsets = newOffsets;
+			lengths = newLengths;
+		}
+		offsets[size] = offset;
+		lengths[size] = length;
+		size++;
+		end = offset + length + terminatorLength;
+		terminated = terminatorLength > 0;
+	}
+
+	/**
+	 * Appends a line directly after the last indexed line
+	 *
+	 * @param length line length without the terminator
+	 * @param terminatorLength length of the line terminator
+	 */
+	void append(int length, int terminatorLength) {
+		append(end, length, terminatorLength);
+	}
+
+}
\ No newline at end of file
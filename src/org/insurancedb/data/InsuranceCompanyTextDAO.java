@@ -1,16 +1,50 @@
 package org.insurancedb.data;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.nio.file.*;
 
 /**
  * InsuranceCompanyTextDAO is an implementation of the data access object.
  * It uses a text file database to manage records and
  * implements the Singleton pattern.
+ * <p>
+ * Every line of the database is a slot of a record. Slots are padded with
+ * spaces, so updates and deletes overwrite the slot in place. The whole
+ * file is only rewritten if a record outgrows its slot or on compact().
+ * <p>
+ * If the system property insurancedb.journal is set to true, the DAO runs in
+ * journal mode. Mutations are then only appended to a write-ahead log next to the
+ * database, which is replayed by initialize(). A background task regularly forces
+ * the log to disk and folds it into a new database snapshot, which replaces the
+ * old database with an atomic move.
+ * <p>
+ * Lines of the database file are parsed by an InsuranceCompanyRecordCodec
+ * right on the bytes read from the file.
+ * <p>
+ * Added records are checked for duplicates with the InsuranceCompanyDuplicateIndex,
+ * which maps a hash of the normalized key fields of every record to its record
+ * number. Like the insurance type index it is kept up to date by every change
+ * and saved next to the database.
+ * <p>
+ * The DAO can be used by many threads at once. Every call opens its own file
+ * handles, and a readers-writer lock lets reads and searches run in parallel.
+ * Calls which change the layout of the file take the lock exclusively. These
+ * are adds, updates which outgrow their slot, compaction, and every change in
+ * journal mode. Other updates and deletes overwrite their slot in place. They
+ * share the lock and exclusively lock only their record, with one of a fixed
+ * number of striped record locks. So updates of different records proceed in
+ * parallel.
  * 
  * @see InsuranceCompanyDAO
+ * @see InsuranceCompanyRecordCodec
  */
-public class InsuranceCompanyTextDAO {
+public class InsuranceCompanyTextDAO implements StorageDAO {
 
 	// Search query constants
 	public static final int AND = 0;
@@ -18,36 +52,75 @@ public class InsuranceCompanyTextDAO {
 
 	// Database folder and file location constants
 	private static final String DS 			  = File.separator;
-	private static final String DATA_DIR 	  = System.getProperty("user.dir") + DS + "data";
+	private static final String DATA_DIR 	  = System.getProperty("insurancedb.data", System.getProperty("user.dir") + DS + "data");
 	private static final String DATA_TEMP_DIR = DATA_DIR + DS + "tmp"; 
 	private static final String DB_FILE 	  = "insurance.db";
 	private static final String DB_TEMP_FILE  = "insuranceTemp.db";
+	private static final String DB_JOURNAL_FILE = "insurance.journal";
+	private static final String DB_TYPE_INDEX_FILE = "insurance.idx";
+	private static final String DB_DUPLICATE_INDEX_FILE = "insurance.hash";
+
+	// Database encoding and line terminator used by the PrintWriter
+	private static final Charset CHARSET 		  = Charset.forName("UTF-8");
+	private static final String LINE_SEPARATOR	  = System.getProperty("line.separator");
+	private static final int LINE_SEPARATOR_LENGTH = LINE_SEPARATOR.length();
+
+	// Buffer size of the temporary database file
+	private static final int WRITE_BUFFER_SIZE 	  = 64 * 1024;
+
+	// Spare bytes reserved in every written slot, so updates can be done in place
+	private static final int SLOT_PADDING 		  = 32;
+
+	// Journal mode settings
+	private static final boolean JOURNAL_MODE 	  = Boolean.getBoolean("insurancedb.journal");
+	private static final int JOURNAL_SYNC_BATCH   = 64;		// Entries after which the journal is forced to disk
+	private static final long JOURNAL_SYNC_DELAY  = 50;		// Milliseconds between two batched syncs
+	private static final int JOURNAL_COMPACT_SIZE = 1000;	// Journaled records after which the journal is compacted
+	private static final long JOURNAL_COMPACT_BYTES = 64 * 1024; // Journal size after which it is compacted, if it is also bigger than half the database
+	private static final long JOURNAL_COMPACT_DELAY = 10000;	// Milliseconds between two compaction checks
+
+	// Number of record locks, a power of two. Record n is guarded by lock n % RECORD_LOCKS.
+	private static final int RECORD_LOCKS 		  = 64;
 
 	// Singleton instance
 	private static InsuranceCompanyTextDAO instance;
 
-	private Scanner s;
-	private PrintWriter pw;
 	private File file;
 	private File tempFile;
 	private File tempFileDir;
+	private InsuranceCompanyRecordIndex index; // Record number to line offset index
+	private InsuranceTypeIndex typeIndex; // Insurance type to record numbers index
+	private File typeIndexFile;
+	private InsuranceCompanyDuplicateIndex duplicateIndex; // Key hash to record numbers index
+	private File duplicateIndexFile;
+	private InsuranceCompanyFreeSlotIndex freeSlots; // Deleted records and the length of their slots
+	private InsuranceCompanyJournal journal;
+	private TreeMap<Integer, String> journaled = new TreeMap<Integer, String>(); // Lines of the journal which are not part of the database file yet
+	private ScheduledExecutorService journalService;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Shared by reads and in place writes, exclusive for layout changes
+	private final ReentrantReadWriteLock[] recordLocks = new ReentrantReadWriteLock[RECORD_LOCKS];
+	private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock(); // Guards the indexes against in place writes
 
 	/**
-	 * Private empty construtor
+	 * Private constructor, creates the record locks
 	 */
-	private InsuranceCompanyTextDAO() {};
+	private InsuranceCompanyTextDAO() {
+		for(int i = 0; i < RECORD_LOCKS; i++){
+			recordLocks[i] = new ReentrantReadWriteLock();
+		}
+	}
 
 	/**
 	 * getInstance() returns the created instance of the class
 	 *
 	 * @return returns an InsuranceCompanyTextDAO object
 	 */
-	public static InsuranceCompanyTextDAO getInstance() {
+	public static synchronized InsuranceCompanyTextDAO getInstance() {
 		if(instance == null){
-			return new InsuranceCompanyTextDAO();
-		} else {
-			return instance;
+			instance = new InsuranceCompanyTextDAO();
 		}
+		return instance;
 	}
 
 	/**
@@ -55,6 +128,18 @@ public class InsuranceCompanyTextDAO {
 	 * database is not available.
 	 */
 	public void initialize() throws DatabaseNotFoundException {
+		lock.writeLock().lock();
+		try {
+			open();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Opens the database files and builds the indexes
+	 */
+	private void open() throws DatabaseNotFoundException {
 		file = new File(DATA_DIR + DS + DB_FILE); 
 		tempFile = new File(DATA_TEMP_DIR + DS + DB_TEMP_FILE);
 		tempFileDir = new File(DATA_TEMP_DIR);
@@ -64,343 +149,1112 @@ public class InsuranceCompanyTextDAO {
 			// If the temporary folder doesn't exist, simply create it
 			tempFileDir.mkdir();
 		}
+		try {
+			index = InsuranceCompanyRecordIndex.build(file);
+		} catch (IOException e) {
+			throw new DatabaseNotFoundException("Database could not be indexed: " + e.getMessage());
+		}
+		if(JOURNAL_MODE){
+			try {
+				journal = new InsuranceCompanyJournal(new File(DATA_DIR + DS + DB_JOURNAL_FILE));
+				journal.replay(journaled);
+			} catch (IOException e) {
+				throw new DatabaseNotFoundException("Database journal could not be replayed: " + e.getMessage());
+			}
+			startJournalService();
+		}
+		loadIndexes();
+		try {
+			buildFreeSlots();
+		} catch (IOException e) {
+			throw new DatabaseNotFoundException("Database could not be indexed: " + e.getMessage());
+		}
 	}
 
 	/**
-	 * Returns a List of String arrays containing all database records
-	 *
-	 * @return String array containing database record
+	 * Loads the saved insurance type and duplicate indexes. If there are
+	 * no indexes for the current database state, they are built from all records.
 	 */
-	public List<String[]> readAllRecords() {
-
-		// Set up the scanner
+	private void loadIndexes() {
+		typeIndexFile = new File(DATA_DIR + DS + DB_TYPE_INDEX_FILE);
+		duplicateIndexFile = new File(DATA_DIR + DS + DB_DUPLICATE_INDEX_FILE);
 		try {
-			s = new Scanner(file);
-			s.useDelimiter("\n");
-		} catch(Exception e) {
+			typeIndex = InsuranceTypeIndex.load(typeIndexFile, databaseStamp());
+			duplicateIndex = InsuranceCompanyDuplicateIndex.load(duplicateIndexFile, databaseStamp());
+		} catch (IOException e) {
 			System.out.println(e);
 		}
+		if(typeIndex == null || duplicateIndex == null){
+			try {
+				buildIndexes();
+				saveIndexes();
+			} catch (IOException e) {
+				System.out.println(e);
+				typeIndex = new InsuranceTypeIndex();
+				duplicateIndex = new InsuranceCompanyDuplicateIndex();
+			}
+		}
+	}
 
-		List<String[]> list = new ArrayList<String[]>();
-
-		String[] bits = null;
-		while(s.hasNext()){
-			String line = s.next().trim();
-			if(!line.equals("empty")){		// empty is the placeholder if a record was deleted
-				bits = line.split(":");
-				list.add(bits);
-			} else {
-				list.add(null);				// add null to the list to ensure proper ID's
+	/**
+	 * Builds the insurance type and duplicate indexes by streaming over the
+	 * database file, so the records are never held in memory all at once
+	 */
+	private void buildIndexes() throws IOException {
+		typeIndex = new InsuranceTypeIndex();
+		duplicateIndex = new InsuranceCompanyDuplicateIndex();
+		InsuranceCompanyRecordCodec codec = new InsuranceCompanyRecordCodec();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			int count = recordCount();
+			for(int recNo = 1; recNo <= count; recNo++){
+				String line = journaled.get(recNo);
+				String[] bits = null;
+				if(line != null){
+					bits = fields(line);
+				} else if(index.contains(recNo)){
+					codec.read(channel, index.getOffset(recNo), index.getLength(recNo));
+					if(!codec.isDeleted()){
+						bits = codec.toArray();
+					}
+				}
+				if(bits != null && bits.length > 3){
+					typeIndex.add(recNo, bits[3]);
+					duplicateIndex.add(recNo, bits);
+				}
 			}
+		} finally {
+			raf.close();
 		}
-		s.close(); // Close the scanner
-		return list;
 	}
 
 	/**
-	 * Reads a single record from the database
-	 *
-	 * @param recNo record number to read
-	 * @return int which represents the id of the record
+	 * Collects the deleted records. Records which are not in the insurance
+	 * type index are read to see whether they are deleted, so only the
+	 * deleted records are read from the database file.
 	 */
-	public String[] readRecord(int recNo) throws RecordNotFoundException {
-		int i = 0;
+	private void buildFreeSlots() throws IOException {
+		freeSlots = new InsuranceCompanyFreeSlotIndex();
+		int[] live = typeIndex.getRecordNumbers();
+		InsuranceCompanyRecordCodec codec = new InsuranceCompanyRecordCodec();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			int count = recordCount();
+			int next = 0; // Position of the next live record
+			for(int recNo = 1; recNo <= count; recNo++){
+				if(next < live.length && live[next] == recNo){
+					next++;
+					continue;
+				}
+				String line = journaled.get(recNo);
+				boolean deleted = true; // Records behind the end of the file only exist in the journal
+				if(line != null){
+					deleted = line.equals("empty");
+				} else if(index.contains(recNo)){
+					codec.read(channel, index.getOffset(recNo), index.getLength(recNo));
+					deleted = codec.isDeleted();
+				}
+				if(deleted){
+					freeSlots.add(recNo, index.contains(recNo) ? index.getLength(recNo) : 0);
+				}
+			}
+		} finally {
+			raf.close();
+		}
+	}
 
-		// Set up the scanner
+	/**
+	 * Saves the insurance type and duplicate indexes next to the database
+	 */
+	private void saveIndexes() {
 		try {
-			s = new Scanner(file);
-			s.useDelimiter("\n");
-		} catch(Exception e) {
+			typeIndex.save(typeIndexFile, databaseStamp());
+			duplicateIndex.save(duplicateIndexFile, databaseStamp());
+		} catch (IOException e) {
 			System.out.println(e);
 		}
+	}
 
-		String[] bits = null;
-		while(s.hasNext()){
-			String line = s.next().trim();
-			if(++i == recNo){
-				bits = line.split(":");
-				if(!bits[0].equals("empty")){
-					s.close(); // Close the scanner
-					return bits;
-				} else {
-					s.close(); // Close the scanner
-					throw new RecordNotFoundException();
-				}
-			} 
+	/**
+	 * Removes the saved indexes before the database is changed,
+	 * so a crash can never leave an outdated index behind
+	 */
+	private void invalidateIndexes() {
+		if(typeIndexFile.exists()){
+			typeIndexFile.delete();
+		}
+		if(duplicateIndexFile.exists()){
+			duplicateIndexFile.delete();
 		}
-		s.close(); // Close the scanner
-		throw new RecordNotFoundException(); // If nothing has been returned, throw an exception
 	}
 
 	/**
-	 * Adds a record to the database
+	 * Gets values identifying the current state of the database files
 	 *
-	 * @param data String array containing record data
-	 * @return int which represents the id of the record
+	 * @return length and modification time of the database and the journal's length
 	 */
-	public int addRecord(String[] data) throws DuplicateIndexException {
-		int i = 0;
-		int id = 0;
-		boolean added = false;
+	private long[] databaseStamp() throws IOException {
+		return new long[] { file.length(), file.lastModified(), journal != null ? journal.size() : 0 };
+	}
 
-		// Set up the scanner
+	/**
+	 * Starts the background tasks of the journal mode, which regularly
+	 * sync the journal and compact it into the database file
+	 */
+	private void startJournalService() {
+		journalService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "InsuranceDB journal");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		journalService.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				syncJournal();
+			}
+		}, JOURNAL_SYNC_DELAY, JOURNAL_SYNC_DELAY, TimeUnit.MILLISECONDS);
+		journalService.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				compactJournal();
+			}
+		}, JOURNAL_COMPACT_DELAY, JOURNAL_COMPACT_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Forces all pending journal entries to disk
+	 */
+	private void syncJournal() {
 		try {
-			s = new Scanner(file);
-			s.useDelimiter("\n");
-		} catch(Exception e) {
+			synchronized(journal){
+				journal.sync();
+			}
+		} catch (IOException e) {
 			System.out.println(e);
 		}
+	}
 
-		// Create the temp file
+	/**
+	 * Folds the journal into a new database snapshot, if it has grown big enough
+	 */
+	private void compactJournal() {
+		lock.writeLock().lock();
 		try {
-			tempFile.createNewFile();
+			if(isJournalFull()){
+				compact();
+			}
 		} catch (IOException e) {
 			System.out.println(e);
+		} finally {
+			lock.writeLock().unlock();
 		}
+	}
+
+	/**
+	 * Checks if the journal should be folded into the database. That is
+	 * the case once it holds many records, or once repeated edits of the
+	 * same records made it bigger than half the database.
+	 *
+	 * @return true if the journal should be compacted
+	 */
+	private boolean isJournalFull() throws IOException {
+		long size = journal.size();
+		return journaled.size() >= JOURNAL_COMPACT_SIZE || (size >= JOURNAL_COMPACT_BYTES && size * 2 >= file.length());
+	}
 
+	/**
+	 * Forces all pending writes to disk and stops the background tasks.
+	 * The DAO must not be used after it was closed.
+	 */
+	public void close() {
+		lock.writeLock().lock();
 		try {
-			pw = new PrintWriter(new FileWriter(tempFile));
-
-			while(s.hasNext()){
-				i++;
-				String line = s.next().trim();
-				if(line.equals(data[0]+":"+data[1]+":"+data[2]+":"+data[3]+":"+data[4]+":"+data[5])){
-					id = -1;
-					throw new DuplicateIndexException(); // If the exact same data already exists
-				} else if (line.equals("empty") && !added) {
-					pw.println(data[0]+":"+data[1]+":"+data[2]+":"+data[3]+":"+data[4]+":"+data[5]);
-					added = true;
-					id = i;
-				} else {
-					pw.println(line);
+			if(journalService != null){
+				journalService.shutdown();
+			}
+			if(journal != null){
+				compactJournal(); // So the next start doesn't replay a big journal
+				syncJournal();
+			}
+			if(typeIndexFile != null && (!typeIndexFile.exists() || !duplicateIndexFile.exists())){
+				saveIndexes();
+			}
+			if(journal != null){
+				try {
+					synchronized(journal){
+						journal.close();
+					}
+				} catch (IOException e) {
+					System.out.println(e);
 				}
-			} 
-			
-			if(!added){
-				pw.println(data[0]+":"+data[1]+":"+data[2]+":"+data[3]+":"+data[4]+":"+data[5]);
-				id = i + 1; // Last line + 1, otherwise the last entry in the map gets overwritten	
 			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
 
-			// Close PrintWriter and Scanner
-			pw.close();
-			s.close();	
+	/**
+	 * Gets the number of records, including deleted ones
+	 *
+	 * @return number of records
+	 */
+	private int recordCount() {
+		if(journaled.isEmpty()){
+			return index.size();
+		}
+		return Math.max(index.size(), journaled.lastKey());
+	}
 
-			// Delete old File and rename/move temp fileq
-			if(file.delete() && tempFile.renameTo(file)){
-				System.out.println("DB was successully updated!");
-			} else {
-				System.out.println("Error: Temporary DB file could not be deleted/moved");
+	/**
+	 * Appends a mutation to the journal. The journal is forced
+	 * to disk once enough entries are pending.
+	 *
+	 * @param operation journal operation
+	 * @param recNo record number
+	 * @param line new line of the record
+	 */
+	private void log(char operation, int recNo, String line) throws IOException {
+		synchronized(journal){
+			journal.append(operation, recNo, line);
+			if(journal.getPending() >= JOURNAL_SYNC_BATCH){
+				journal.sync();
+			}
+		}
+		journaled.put(recNo, line);
+	}
+
+	/**
+	 * Returns a List of String arrays containing all database records.
+	 * The database file is parsed in parallel chunks. All records are
+	 * locked for reading, so no slot is overwritten meanwhile.
+	 *
+	 * @return String array containing database record
+	 */
+	public List<String[]> readAllRecords() {
+		lock.readLock().lock();
+		try {
+			lockAllRecords();
+			try {
+				return readAll();
+			} finally {
+				unlockAllRecords();
 			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads all records from the database file and applies the journal
+	 *
+	 * @return String array containing database record
+	 */
+	private List<String[]> readAll() {
 
+		String[][] records = null;
+		try {
+			records = InsuranceCompanyFileLoader.load(file, index);
 		} catch (IOException e) {
 			System.out.println(e);
-		} finally {
-			// Close PrintWriter and Scanner
-			pw.close();
-			s.close();
+			records = new String[0][];
 		}
 
-		return id;
+		List<String[]> list = new ArrayList<String[]>(recordCount());
+		list.addAll(Arrays.asList(records));		// Deleted records are null to ensure proper ID's
+		while(list.size() < recordCount()){
+			list.add(null);
+		}
 
+		// Apply the lines of the journal
+		for(Map.Entry<Integer, String> entry : journaled.entrySet()){
+			String line = entry.getValue();
+			list.set(entry.getKey() - 1, line.equals("empty") ? null : InsuranceCompanyRecordCodec.split(line));
+		}
+		return list;
 	}
 
 	/**
-	 * Deletes a record from the database
+	 * Writes a point in time copy of the database. All records are locked
+	 * for reading like readAllRecords does, so writes wait until the copy is
+	 * written. Without journaled lines the database file is copied as it is,
+	 * otherwise its lines are merged with the journal.
 	 *
-	 * @param recNo record number to delete
+	 * @param target file of the copy
 	 */
-	public void deleteRecord(int recNo) throws RecordNotFoundException {
-		int i = 0;
-		boolean found = false;
+	public void snapshot(File target) throws IOException {
+		lock.readLock().lock();
+		try {
+			lockAllRecords();
+			try {
+				if(journaled.isEmpty()){
+					Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					merge(target);
+				}
+			} finally {
+				unlockAllRecords();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
 
-		// Set up the scanner
+	/**
+	 * Writes the lines of the database file, replaced by their journaled lines
+	 *
+	 * @param target file to write
+	 */
+	private void merge(File target) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET), WRITE_BUFFER_SIZE);
 		try {
-			s = new Scanner(file);
-			s.useDelimiter("\n");
-		} catch(Exception e) {
-			System.out.println(e);
+			Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), CHARSET), WRITE_BUFFER_SIZE);
+			try {
+				int count = recordCount();
+				for(int recNo = 1; recNo <= count; recNo++){
+					String line = recNo <= index.size() ? in.readLine() : null;
+					String journaledLine = journaled.get(recNo);
+					if(journaledLine != null){
+						line = journaledLine;
+					}
+					out.write(line != null ? line : "empty"); // Records only in the journal leave gaps
+					out.write(LINE_SEPARATOR);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
 		}
+	}
 
-		// Create the temp file
+	/**
+	 * Returns the identifiers of all records. They are taken
+	 * from the insurance type index, which holds every record.
+	 *
+	 * @return sorted array of record identifiers
+	 */
+	public int[] readRecordNumbers() {
+		lock.readLock().lock();
+		indexLock.readLock().lock();
+		try {
+			return typeIndex.getRecordNumbers();
+		} finally {
+			indexLock.readLock().unlock();
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads a single record from the database. Only writes
+	 * of the same record lock are waited for.
+	 *
+	 * @param recNo record number to read
+	 * @return int which represents the id of the record
+	 */
+	public String[] readRecord(int recNo) throws RecordNotFoundException {
+		lock.readLock().lock();
+		Lock recordLock = recordLock(recNo).readLock();
+		recordLock.lock();
 		try {
-			tempFile.createNewFile();
+			return read(recNo);
+		} finally {
+			recordLock.unlock();
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads a single record from the journal or the database file
+	 *
+	 * @param recNo record number to read
+	 * @return int which represents the id of the record
+	 */
+	private String[] read(int recNo) throws RecordNotFoundException {
+		String line = journaled.get(recNo);
+		if(line != null){
+			String[] bits = InsuranceCompanyRecordCodec.split(line);
+			if(bits[0].equals("empty")){	// empty is the placeholder if a record was deleted
+				throw new RecordNotFoundException();
+			}
+			return bits;
+		}
+
+		if(!index.contains(recNo)){
+			throw new RecordNotFoundException();
+		}
+		InsuranceCompanyRecordCodec codec = new InsuranceCompanyRecordCodec();
+		try {
+			codec.wrap(readLine(index.getOffset(recNo), index.getLength(recNo)), 0, index.getLength(recNo));
 		} catch (IOException e) {
 			System.out.println(e);
+			throw new RecordNotFoundException();
+		}
+		if(codec.isDeletedField()){
+			throw new RecordNotFoundException();
 		}
+		return codec.toArray();
+	}
 
+	/**
+	 * Reads a single line of the database by seeking directly to its offset
+	 *
+	 * @param offset byte offset of the line
+	 * @param length line length in bytes
+	 * @return buffer containing the line
+	 */
+	private ByteBuffer readLine(long offset, int length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
 		try {
-			pw = new PrintWriter(new FileWriter(tempFile));
-
-			while(s.hasNext()){
-				String line = s.next().trim();
-				if(++i == recNo){
-					found = true;
-					if(line.equals("empty")){
-						throw new RecordNotFoundException();
-					} else {
-						pw.println("empty");
-						System.out.println("Record " + i + " deleted!");
-					}
-				} else {
-					pw.println(line);
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			FileChannel channel = raf.getChannel();
+			while(buffer.hasRemaining()){
+				if(channel.read(buffer, offset + buffer.position()) == -1){
+					throw new EOFException();
 				}
-			} 
+			}
+			return buffer;
+		} finally {
+			raf.close();
+		}
+	}
 
-			// Close PrintWriter and Scanner
-			pw.close();
-			s.close();	
+	/**
+	 * Ends a line of the temporary database file. The line is padded to
+	 * its slot length and its position is recorded in the given index.
+	 *
+	 * @param out stream of the temporary database file
+	 * @param newIndex index of the temporary database file
+	 * @param length length of the already written line in bytes
+	 * @param slotLength slot length in bytes
+	 */
+	private void endLine(OutputStream out, InsuranceCompanyRecordIndex newIndex, int length, int slotLength) throws IOException {
+		for(int i = length; i < slotLength; i++){
+			out.write(' ');
+		}
+		out.write(LINE_SEPARATOR.getBytes(CHARSET));
+		newIndex.append(Math.max(length, slotLength), LINE_SEPARATOR_LENGTH);
+	}
 
-			if(!found){
-				throw new RecordNotFoundException();
-			} else {
-				// Delete old File and rename/move temp file
-				if(file.delete() && tempFile.renameTo(file)){
-					System.out.println("DB was successully updated!");
-				} else {
-					System.out.println("Error: Temporary DB file could not be deleted/moved");
+	/**
+	 * Adds a record to the database. The record is written in place into
+	 * the first deleted slot which is big enough, otherwise it is appended
+	 * to the end of the file. In journal mode any deleted slot is reused.
+	 *
+	 * @param data String array containing record data
+	 * @return int which represents the id of the record
+	 */
+	public int addRecord(String[] data) throws DuplicateIndexException {
+		lock.writeLock().lock();
+		try {
+			return add(data);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a record to the database, the database must be locked exclusively
+	 *
+	 * @param data String array containing record data
+	 * @return int which represents the id of the record
+	 */
+	private int add(String[] data) throws DuplicateIndexException {
+		if(isDuplicate(data, Collections.<Integer>emptySet())){
+			throw new DuplicateIndexException(); // If a record with the same key already exists
+		}
+		String record = data[0]+":"+data[1]+":"+data[2]+":"+data[3]+":"+data[4]+":"+data[5];
+		int id = freeSlots.find(JOURNAL_MODE ? 0 : record.getBytes(CHARSET).length); // The first deleted slot the record fits in
+
+		try {
+			invalidateIndexes();
+			if(JOURNAL_MODE){
+				if(id == 0){
+					id = recordCount() + 1;
 				}
+				log(InsuranceCompanyJournal.ADD, id, record);
+			} else if(id != 0){
+				writeSlot(id, record);
+			} else {
+				id = appendSlot(record);
 			}
+			reindex(id, null, data);
+			System.out.println("DB was successully updated!");
 		} catch (IOException e) {
 			System.out.println(e);
+			id = -1;
+		}
+
+		return id;
+
+	}
+
+	/**
+	 * Checks if a record with the same key as the given data exists. The
+	 * duplicate index gives the records with the same hash, whose keys are
+	 * then compared. The database must be locked exclusively.
+	 *
+	 * @param data String array containing record data
+	 * @param ignored record numbers which are not taken into account
+	 * @return true if the data is a duplicate
+	 */
+	private boolean isDuplicate(String[] data, Set<Integer> ignored) {
+		String key = InsuranceCompanyDuplicateIndex.key(data);
+		for(int recNo : duplicateIndex.find(data)){
+			try {
+				if(!ignored.contains(recNo) && InsuranceCompanyDuplicateIndex.key(read(recNo)).equals(key)){
+					return true;
+				}
+			} catch (RecordNotFoundException e) {
+				// The index only holds live records
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Deletes a record from the database by overwriting its slot
+	 * with the empty placeholder
+	 *
+	 * @param recNo record number to delete
+	 */
+	public void deleteRecord(int recNo) throws RecordNotFoundException {
+		Lock recordLock = lockForWrite(recNo, "empty".length());
+		try {
+			String[] old = read(recNo); // Throws an exception if the record doesn't exist or is already deleted
+
+			try {
+				invalidateIndexes();
+				if(JOURNAL_MODE){
+					log(InsuranceCompanyJournal.DELETE, recNo, "empty");
+				} else if(index.getLength(recNo) >= "empty".length()){
+					writeSlot(recNo, "empty");
+				} else {
+					rewrite(Collections.singletonMap(recNo, "empty"));
+				}
+				reindex(recNo, old, null);
+				System.out.println("Record " + recNo + " deleted!");
+				System.out.println("DB was successully updated!");
+			} catch (IOException e) {
+				System.out.println(e);
+			}
 		} finally {
-			// Close PrintWriter and Scanner
-			pw.close();
-			s.close();
+			unlockForWrite(recordLock);
 		}
 	}
 
 	/**
-	 * Updates a specific record in the database
+	 * Updates a specific record in the database. If the new data fits into the
+	 * record's slot it is overwritten in place, otherwise the database is
+	 * compacted with the new data.
 	 *
 	 * @param recNo record number to update
 	 * @param data new record data
 	 */
 	public void updateRecord(int recNo, String[] data) throws RecordNotFoundException {
+		String record = data[0]+":"+data[1]+":"+data[2]+":"+data[3]+":"+data[4]+":"+data[5];
+		Lock recordLock = lockForWrite(recNo, record.getBytes(CHARSET).length);
+		try {
+			if(recNo < 1 || recNo > recordCount()){
+				throw new RecordNotFoundException();
+			}
+
+			String[] old = null;
+			try {
+				old = read(recNo);
+			} catch (RecordNotFoundException e) {
+				// A deleted record is not indexed
+			}
 
-		int i = 0;
-		boolean edited = false;
+			try {
+				invalidateIndexes();
+				if(JOURNAL_MODE){
+					log(InsuranceCompanyJournal.UPDATE, recNo, record);
+				} else if(index.getLength(recNo) >= record.getBytes(CHARSET).length){
+					writeSlot(recNo, record);
+				} else {
+					rewrite(Collections.singletonMap(recNo, record)); // The record outgrew its slot
+				}
+				reindex(recNo, old, data);
+				System.out.println("Entry was successully updated!");
+			} catch (IOException e) {
+				System.out.println(e);
+			}
+		} finally {
+			unlockForWrite(recordLock);
+		}
+	}
 
-		// Set up the scanner
+	/**
+	 * Applies a batch of writes. The whole batch is checked first, so if one
+	 * of its operations fails nothing is written. The database is then rewritten
+	 * once with all changes and replaced with a single atomic move, which in
+	 * journal mode folds the journal as well. New records reuse the lowest
+	 * deleted record numbers, otherwise they are appended.
+	 *
+	 * @param batch the writes
+	 * @return record number of every operation in the order of the batch, -1 for
+	 * skipped duplicates, or null if the database could not be written
+	 */
+	public int[] applyBatch(WriteBatch batch) throws RecordNotFoundException, DuplicateIndexException {
+		lock.writeLock().lock();
 		try {
-			s = new Scanner(file);
-			s.useDelimiter("\n");
-		} catch(Exception e) {
-			System.out.println(e);
+			return apply(batch);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Applies a batch of writes, the database must be locked exclusively
+	 *
+	 * @param batch the writes
+	 * @return record number of every operation in the order of the batch, -1 for
+	 * skipped duplicates, or null if the database could not be written
+	 */
+	private int[] apply(WriteBatch batch) throws RecordNotFoundException, DuplicateIndexException {
+		int[] ids = new int[batch.size()];
+		String[][] data = new String[batch.size()][];
+		String[] lines = new String[batch.size()];
+		for(int i = 0; i < batch.size(); i++){
+			data[i] = batch.getData(i);
+			if(data[i] != null){
+				lines[i] = data[i][0]+":"+data[i][1]+":"+data[i][2]+":"+data[i][3]+":"+data[i][4]+":"+data[i][5];
+			}
+		}
+
+		// Every record which is not deleted is live
+		int count = recordCount();
+		BitSet live = new BitSet(count + 1);
+		live.set(1, count + 1);
+		for(int recNo : freeSlots.toArray()){
+			live.clear(recNo);
+		}
+
+		// Apply the operations to the current state, without writing anything
+		TreeMap<Integer, String> replacements = new TreeMap<Integer, String>();
+		Map<Integer, String[]> oldData = new HashMap<Integer, String[]>(); // Data of the changed records before the batch
+		Map<String, Integer> keys = new HashMap<String, Integer>(); // Number of changed records by key
+		for(int i = 0; i < batch.size(); i++){
+			int recNo = batch.getRecNo(i);
+			switch(batch.getType(i)){
+			case WriteBatch.ADD:
+				Integer owners = keys.get(InsuranceCompanyDuplicateIndex.key(data[i]));
+				if((owners != null && owners > 0) || isDuplicate(data[i], replacements.keySet())){
+					if(batch.isSkipDuplicates()){
+						ids[i] = -1;
+						continue;
+					}
+					throw new DuplicateIndexException(); // If a record with the same key already exists
+				}
+				recNo = live.nextClearBit(1); // The lowest deleted record, or a new one
+				count = Math.max(count, recNo);
+				break;
+			case WriteBatch.UPDATE:
+				if(recNo < 1 || recNo > count){
+					throw new RecordNotFoundException();
+				}
+				break;
+			default:
+				if(recNo < 1 || !live.get(recNo)){
+					throw new RecordNotFoundException();
+				}
+				lines[i] = "empty";
+			}
+			ids[i] = recNo;
+			if(!replacements.containsKey(recNo) && live.get(recNo)){
+				String[] old = read(recNo);
+				oldData.put(recNo, old);
+				count(keys, InsuranceCompanyDuplicateIndex.key(old), 1); // The record's key now belongs to the changed records
+			}
+			String[] previous = replacements.containsKey(recNo) ? fields(replacements.get(recNo)) : oldData.get(recNo);
+			if(previous != null){
+				count(keys, InsuranceCompanyDuplicateIndex.key(previous), -1);
+			}
+			if(data[i] != null){
+				count(keys, InsuranceCompanyDuplicateIndex.key(data[i]), 1);
+			}
+			replacements.put(recNo, lines[i]);
+			live.set(recNo, !lines[i].equals("empty"));
 		}
 
-		// Create the temp file
 		try {
-			tempFile.createNewFile();
+			invalidateIndexes();
+			rewrite(replacements);
+			for(Map.Entry<Integer, String> entry : replacements.entrySet()){
+				reindex(entry.getKey(), oldData.get(entry.getKey()), fields(entry.getValue()));
+			}
+			System.out.println("DB was successully updated!");
 		} catch (IOException e) {
 			System.out.println(e);
+			return null; // The database file was not replaced, nothing was written
 		}
+		return ids;
+	}
 
-		try {
-			pw = new PrintWriter(new FileWriter(tempFile));
-
-			while(s.hasNext()){
-				i++;
-				String line = s.next().trim();
-				if (i == recNo) {	// If the line equals the record number
-					pw.println(data[0]+":"+data[1]+":"+data[2]+":"+data[3]+":"+data[4]+":"+data[5]);
-					edited = true;
-				} else {
-					pw.println(line);
-				}
-			}
+	/**
+	 * Splits a line into its fields
+	 *
+	 * @param line line of a record, may be null
+	 * @return String array with the fields, or null if the line is null or deleted
+	 */
+	private static String[] fields(String line) {
+		if(line == null || line.equals("empty")){
+			return null;
+		}
+		String[] bits = InsuranceCompanyRecordCodec.split(line);
+		return bits.length > 3 && !bits[0].equals("empty") ? bits : null;
+	}
 
-			if(!edited){
-				throw new RecordNotFoundException();
+	/**
+	 * Changes the number of records with a key
+	 *
+	 * @param keys number of records by key
+	 * @param key the key
+	 * @param delta change of the number
+	 */
+	private static void count(Map<String, Integer> keys, String key, int delta) {
+		Integer n = keys.get(key);
+		keys.put(key, (n != null ? n : 0) + delta);
+	}
+
+	/**
+	 * Locks the database for writing a record. If the new line fits into the
+	 * record's slot, the slot is overwritten in place. The database lock is
+	 * then shared and only the record is locked exclusively. Otherwise, and
+	 * in journal mode, the database is locked exclusively.
+	 *
+	 * @param recNo record number to write
+	 * @param length length of the new line in bytes
+	 * @return the record's write lock, or null if the database is locked exclusively
+	 */
+	private Lock lockForWrite(int recNo, int length) {
+		if(!JOURNAL_MODE){
+			lock.readLock().lock();
+			// Slots only change their length while the database is locked exclusively
+			if(recNo >= 1 && recNo <= index.size() && index.getLength(recNo) >= length){
+				Lock recordLock = recordLock(recNo).writeLock();
+				recordLock.lock();
+				return recordLock;
 			}
+			lock.readLock().unlock();
+		}
+		lock.writeLock().lock();
+		return null;
+	}
 
-			// Close PrintWriter and Scanner
-			pw.close();
-			s.close();	
+	/**
+	 * Releases the locks taken by lockForWrite
+	 *
+	 * @param recordLock the record's write lock, or null if the database is locked exclusively
+	 */
+	private void unlockForWrite(Lock recordLock) {
+		if(recordLock != null){
+			recordLock.unlock();
+			lock.readLock().unlock();
+		} else {
+			lock.writeLock().unlock();
+		}
+	}
 
-			// Delete old File and rename/move temp fileq
-			if(file.delete() && tempFile.renameTo(file)){
-				System.out.println("Entry was successully updated!");
+	/**
+	 * Gets the lock of a record. Records share their locks
+	 * with every RECORD_LOCKS-th other record.
+	 *
+	 * @param recNo record number
+	 * @return the record's lock
+	 */
+	private ReentrantReadWriteLock recordLock(int recNo) {
+		return recordLocks[recNo & (RECORD_LOCKS - 1)];
+	}
+
+	/**
+	 * Locks every record for reading
+	 */
+	private void lockAllRecords() {
+		for(ReentrantReadWriteLock recordLock : recordLocks){
+			recordLock.readLock().lock();
+		}
+	}
+
+	/**
+	 * Releases the locks taken by lockAllRecords
+	 */
+	private void unlockAllRecords() {
+		for(int i = RECORD_LOCKS - 1; i >= 0; i--){
+			recordLocks[i].readLock().unlock();
+		}
+	}
+
+	/**
+	 * Moves a record in the insurance type and duplicate indexes from its
+	 * old to its new data, and marks its slot as used or free. Writes in
+	 * place share the database lock, so the indexes are locked on their own.
+	 *
+	 * @param recNo record number
+	 * @param oldData data the record was indexed with, null if it wasn't indexed
+	 * @param newData new data, null if the record was deleted
+	 */
+	private void reindex(int recNo, String[] oldData, String[] newData) {
+		indexLock.writeLock().lock();
+		try {
+			if(oldData != null && oldData.length > 3){
+				typeIndex.remove(recNo, oldData[3]);
+				duplicateIndex.remove(recNo, oldData);
+			}
+			if(newData != null){
+				typeIndex.add(recNo, newData[3]);
+				duplicateIndex.add(recNo, newData);
+				freeSlots.remove(recNo);
 			} else {
-				System.out.println("Error: Temporary DB file could not be deleted/moved");
+				freeSlots.add(recNo, index.contains(recNo) ? index.getLength(recNo) : 0);
 			}
+		} finally {
+			indexLock.writeLock().unlock();
+		}
+	}
 
+	/**
+	 * Compacts the database. Every record is rewritten into a slot which fits its
+	 * data plus a fixed amount of padding. Deleted slots keep their size,
+	 * so they can still be reused by addRecord. In journal mode this folds
+	 * the journal into the new database file.
+	 */
+	public void compact() {
+		lock.writeLock().lock();
+		try {
+			invalidateIndexes();
+			rewrite(Collections.<Integer, String>emptyMap());
+			saveIndexes();
+			System.out.println("DB was successully compacted!");
 		} catch (IOException e) {
 			System.out.println(e);
 		} finally {
-			// Close PrintWriter and Scanner
-			pw.close();
-			s.close();
+			lock.writeLock().unlock();
 		}
+	}
 
+	/**
+	 * Compacts the database and renumbers the records consecutively, once
+	 * the share of deleted records reached the given ratio. Deleted records
+	 * are dropped, so the records behind them move up. The indexes are rebuilt.
+	 * <p>
+	 * In journal mode the journal is folded into the database first, so it is
+	 * empty on disk before the renumbered file replaces the database. A crash
+	 * in between then can't replay entries of the old record numbers onto the
+	 * renumbered records.
+	 *
+	 * @param ratio share of deleted records from which on the records are renumbered
+	 * @return new record number at the index of every old record number, 0 for
+	 * deleted records, or null if the records were not renumbered
+	 */
+	public int[] renumber(float ratio) {
+		lock.writeLock().lock();
+		try {
+			int count = recordCount();
+			if(freeSlots.size() == 0 || freeSlots.size() < ratio * count){
+				return null;
+			}
+			int[] remap = new int[count + 1];
+			int dropped = freeSlots.size();
+			try {
+				invalidateIndexes();
+				if(journal != null && journal.size() > 0){
+					rewrite(Collections.<Integer, String>emptyMap()); // Truncates the journal
+				}
+				rewrite(Collections.<Integer, String>emptyMap(), remap);
+			} catch (IOException e) {
+				System.out.println(e);
+				return null; // The database file was not replaced
+			}
+			try {
+				buildIndexes();
+				saveIndexes();
+			} catch (IOException e) {
+				System.out.println(e);
+				typeIndex = new InsuranceTypeIndex();
+				duplicateIndex = new InsuranceCompanyDuplicateIndex();
+			}
+			freeSlots = new InsuranceCompanyFreeSlotIndex();
+			System.out.println("DB was successully renumbered, " + dropped + " deleted records dropped!");
+			return remap;
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
-	 * Finds records accord to given criteria
+	 * Overwrites a record's slot in place. The line is padded with
+	 * spaces to the slot's length, the line terminator is left untouched.
 	 *
-	 * @param criteria String array with search criteria
-	 * @param bool int either 0(AND) or 1(OR) as search argument
-	 * @return returns an array of int with all found id's
+	 * @param recNo record number to overwrite
+	 * @param line new line, which must fit into the slot
 	 */
-	public int[] findRecords(String[] criteria, int bool) {
+	private void writeSlot(int recNo, String line) throws IOException {
+		byte[] slot = new byte[index.getLength(recNo)];
+		byte[] bytes = line.getBytes(CHARSET);
+		System.arraycopy(bytes, 0, slot, 0, bytes.length);
+		Arrays.fill(slot, bytes.length, slot.length, (byte)' ');
+		write(index.getOffset(recNo), slot);
+	}
 
-		int i = 0;
-		ArrayList<Integer> ids = new ArrayList<Integer>();
-		String[] bits = null;
-		String insuranceTypes = "";
-		boolean contains = true;
+	/**
+	 * Appends a new padded slot to the end of the database
+	 *
+	 * @param line line to append
+	 * @return record number of the new slot
+	 */
+	private int appendSlot(String line) throws IOException {
+		if(!index.isTerminated()){
+			write(index.getEnd(), LINE_SEPARATOR.getBytes(CHARSET)); // Terminate the last line first
+			index.terminate(LINE_SEPARATOR_LENGTH);
+		}
+		String slot = pad(line, line.getBytes(CHARSET).length + SLOT_PADDING);
+		write(index.getEnd(), (slot + LINE_SEPARATOR).getBytes(CHARSET));
+		index.append(slot.getBytes(CHARSET).length, LINE_SEPARATOR_LENGTH);
+		return index.size();
+	}
 
-		// Set up the scanner
+	/**
+	 * Writes bytes to the database file at the given position
+	 *
+	 * @param position byte offset to write to
+	 * @param bytes bytes to write
+	 */
+	private void write(long position, byte[] bytes) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
 		try {
-			s = new Scanner(file);
-			s.useDelimiter("\n");
-		} catch(Exception e) {
-			System.out.println(e);
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while(buffer.hasRemaining()){
+				channel.write(buffer, position + buffer.position());
+			}
+		} finally {
+			raf.close();
 		}
+	}
 
-		while(s.hasNext()){
-			i++;
-			String line = s.next().trim();
-			bits = line.split(":");
-
-			// Check if line is empty
-			if(bits.length > 1){
-				if(bool == AND){
-					insuranceTypes = bits[3].toLowerCase();
-					for(String s : criteria){
-						contains = true;
-						if(!insuranceTypes.contains(s.toLowerCase())){
-							contains = false;
-							break; // If even one criteria is not the insurance types, break and return false
-						}
-					}
-					if(contains){
-						ids.add(i); // If the insurance types contain the criteria, add the ID to the list
+	/**
+	 * Rewrites the whole database into the temporary file and moves it back
+	 * atomically. Live records get a freshly padded slot, deleted slots keep
+	 * their size. All journaled lines are written as well, so the journal is
+	 * truncated afterwards.
+	 *
+	 * @param replacements new lines by record number, which may lie behind the last record
+	 */
+	private void rewrite(Map<Integer, String> replacements) throws IOException {
+		rewrite(replacements, null);
+	}
+
+	/**
+	 * Rewrites the database like rewrite(replacements). If a remap array
+	 * is given, deleted records are dropped and the records behind them
+	 * move up. The new record number of every record is stored in the array.
+	 *
+	 * @param replacements new lines by record number, "empty" deletes a record
+	 * @param remap array of at least recordCount() + 1 record numbers, or null
+	 */
+	private void rewrite(Map<Integer, String> replacements, int[] remap) throws IOException {
+		InsuranceCompanyRecordIndex newIndex = new InsuranceCompanyRecordIndex();
+		int count = recordCount();
+		for(int recNo : replacements.keySet()){
+			count = Math.max(count, recNo);
+		}
+
+		// Create the temp file
+		tempFile.createNewFile();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		FileOutputStream out = new FileOutputStream(tempFile);
+
+		try {
+			OutputStream bos = new BufferedOutputStream(out, WRITE_BUFFER_SIZE);
+			FileChannel channel = raf.getChannel();
+			InsuranceCompanyRecordCodec codec = new InsuranceCompanyRecordCodec();
+
+			for(int i = 1; i <= count; i++){
+				String line = replacements.containsKey(i) ? replacements.get(i) : journaled.get(i);
+				int oldLength = index.contains(i) ? index.getLength(i) : 0;
+				if(line == null && index.contains(i)){
+					// Copy the line of the database file without decoding it
+					codec.read(channel, index.getOffset(i), oldLength);
+					if(remap != null && codec.isDeleted()){
+						continue; // Dropped, its record number stays 0
 					}
+					codec.writeTo(bos);
+					endLine(bos, newIndex, codec.getLength(), codec.isDeleted() ? oldLength : codec.getLength() + SLOT_PADDING);
 				} else {
-					// If bool is OR, add all ID's to the list if they contain the criteria
-					insuranceTypes = bits[3].toLowerCase();
-					for(String s : criteria){
-						if(insuranceTypes.contains(s.toLowerCase())){
-							if(!ids.contains(i)){
-								ids.add(i);
-							}
-						}
+					if(line == null){
+						line = "empty";
+					}
+					if(remap != null && line.equals("empty")){
+						continue;
 					}
+					byte[] bytes = line.getBytes(CHARSET);
+					bos.write(bytes);
+					endLine(bos, newIndex, bytes.length, line.equals("empty") ? oldLength : bytes.length + SLOT_PADDING);
+				}
+				if(remap != null){
+					remap[i] = newIndex.size();
 				}
 			}
 
+			// Force the temp file to disk before it replaces the database
+			bos.flush();
+			out.getFD().sync();
+		} finally {
+			out.close();
+			raf.close();
 		}
 
-		int[] idArray = new int[ids.size()];
-
-		for(int k = 0; k < idArray.length; k++){
-			idArray[k] = ids.get(k);
+		// Replace the old file with the temp file in a single step
+		try {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
+		index = newIndex;
+		journaled.clear();
+		if(journal != null){
+			synchronized(journal){
+				journal.truncate();
+			}
+		}
+	}
 
-		s.close(); // Close the scanner
-
-		return idArray;
+	/**
+	 * Pads a line with spaces to the given slot length in bytes
+	 *
+	 * @param line line to pad
+	 * @param length slot length in bytes
+	 * @return the padded line
+	 */
+	private String pad(String line, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		sb.append(line);
+		for(int i = line.getBytes(CHARSET).length; i < length; i++){
+			sb.append(' ');
+		}
+		return sb.toString();
+	}
 
+	/**
+	 * Finds records accord to given criteria. The search is answered
+	 * by the insurance type index.
+	 *
+	 * @param criteria String array with search criteria
+	 * @param bool int either 0(AND) or 1(OR) as search argument
+	 * @return returns an array of int with all found id's
+	 */
+	public int[] findRecords(String[] criteria, int bool) {
+		lock.readLock().lock();
+		indexLock.readLock().lock();
+		try {
+			return typeIndex.find(criteria, bool);
+		} finally {
+			indexLock.readLock().unlock();
+			lock.readLock().unlock();
+		}
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,444 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+
+/**
+ * InsuranceCompanyTreeDAO is a page-based implementation of the data access object.
+ * Records are stored in a B+-tree keyed by record number in the page file
+ * insurance.tree, with fixed-size pages, a buffer pool and a free-page list.
+ * Reading, updating and deleting a record only touches the pages on the path
+ * from the root to its leaf. It implements the Singleton pattern.
+ * <p>
+ * A record is stored as its line of the text database. Records longer than
+ * BPlusTree.MAX_VALUE_SIZE bytes are stored in overflow pages, so records of
+ * any length are kept. If there is no page file yet, it is created from the
+ * text database by initialize().
+ * <p>
+ * The backend is used if the system property insurancedb.backend is set to tree.
+ *
+ * @see InsuranceCompanyDAO
+ * @see BPlusTree
+ */
+public class InsuranceCompanyTreeDAO implements StorageDAO {
+
+	// Database folder and file location constants
+	private static final String DS 			 = File.separator;
+	private static final String DATA_DIR 	 = System.getProperty("insurancedb.data", System.getProperty("user.dir") + DS + "data");
+	private static final String DB_FILE 	 = "insurance.db";
+	private static final String DB_TREE_FILE = "insurance.tree";
+	private static final String DB_TEMP_FILE = "insurance.tree.tmp";
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final int BUFFER_POOL_PAGES = 1024; // Cached pages, 4MB
+
+	// Singleton instance
+	private static InsuranceCompanyTreeDAO instance;
+
+	private File file;
+	private Pager pager;
+	private BufferPool pool;
+	private BPlusTree tree;
+	private InsuranceTypeIndex typeIndex; // Built by the first search
+
+	/**
+	 * Private empty construtor
+	 */
+	private InsuranceCompanyTreeDAO() {};
+
+	/**
+	 * getInstance() returns the created instance of the class
+	 *
+	 * @return returns an InsuranceCompanyTreeDAO object
+	 */
+	public static synchronized InsuranceCompanyTreeDAO getInstance() {
+		if(instance == null){
+			instance = new InsuranceCompanyTreeDAO();
+		}
+		return instance;
+	}
+
+	/**
+	 * Opens the page file. If it doesn't exist yet, it is created from the
+	 * text database. Throws an exception if the database is not available.
+	 */
+	public synchronized void initialize() throws DatabaseNotFoundException {
+		file = new File(DATA_DIR + DS + DB_TREE_FILE);
+		try {
+			if(!file.exists()){
+				File textFile = new File(DATA_DIR + DS + DB_FILE);
+				if(!textFile.exists()){
+					throw new DatabaseNotFoundException();
+				}
+				convert(textFile);
+			}
+			open(file);
+		} catch (IOException e) {
+			throw new DatabaseNotFoundException("Database could not be opened: " + e.getMessage());
+		}
+		typeIndex = null;
+	}
+
+	/**
+	 * Opens a page file
+	 *
+	 * @param file page file
+	 */
+	private void open(File file) throws IOException {
+		pager = new Pager(file);
+		pool = new BufferPool(pager, BUFFER_POOL_PAGES);
+		tree = new BPlusTree(pager, pool);
+	}
+
+	/**
+	 * Creates the page file from the text database. The records are written
+	 * into a temporary file first, which is then moved into place.
+	 *
+	 * @param textFile the text database file
+	 */
+	private void convert(File textFile) throws IOException {
+		InsuranceCompanyRecordIndex index = InsuranceCompanyRecordIndex.build(textFile);
+		File tempFile = new File(DATA_DIR + DS + DB_TEMP_FILE);
+		tempFile.delete();
+		open(tempFile);
+		RandomAccessFile raf = new RandomAccessFile(textFile, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			InsuranceCompanyRecordCodec codec = new InsuranceCompanyRecordCodec();
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			for(int recNo = 1; recNo <= index.size(); recNo++){
+				codec.read(channel, index.getOffset(recNo), index.getLength(recNo));
+				if(codec.isDeleted()){
+					continue;
+				}
+				line.reset();
+				codec.writeTo(line);
+				tree.put(recNo, line.toByteArray());
+			}
+			pager.setRecordCount(index.size());
+			pool.flush();
+			pager.sync();
+		} finally {
+			raf.close();
+			pager.close();
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Returns a List of String arrays containing all database records
+	 *
+	 * @return String array containing database record
+	 */
+	public synchronized List<String[]> readAllRecords() {
+		final List<String[]> list = new ArrayList<String[]>(pager.getRecordCount());
+		try {
+			tree.scan(new BPlusTree.Visitor() {
+				public void visit(int key, byte[] value) {
+					while(list.size() < key - 1){
+						list.add(null); // Deleted records are null to ensure proper ID's
+					}
+					list.add(decode(value));
+				}
+			});
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+		while(list.size() < pager.getRecordCount()){
+			list.add(null);
+		}
+		return list;
+	}
+
+	/**
+	 * Writes a point in time copy of the database in the format of the text
+	 * database. The values of the tree already are lines of the text database.
+	 *
+	 * @param target file of the copy
+	 */
+	public synchronized void snapshot(File target) throws IOException {
+		final byte[] empty = "empty".getBytes(CHARSET);
+		final byte[] lineSeparator = System.getProperty("line.separator").getBytes(CHARSET);
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+		try {
+			final int[] written = { 0 };
+			tree.scan(new BPlusTree.Visitor() {
+				public void visit(int key, byte[] value) throws IOException {
+					for(; written[0] < key - 1; written[0]++){
+						out.write(empty); // Deleted records keep their line
+						out.write(lineSeparator);
+					}
+					out.write(value);
+					out.write(lineSeparator);
+					written[0]++;
+				}
+			});
+			for(; written[0] < pager.getRecordCount(); written[0]++){
+				out.write(empty);
+				out.write(lineSeparator);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the identifiers of all records by scanning the
+	 * keys of the leaves. The records are not decoded.
+	 *
+	 * @return sorted array of record identifiers
+	 */
+	public synchronized int[] readRecordNumbers() {
+		final CompressedBitmap found = new CompressedBitmap();
+		try {
+			tree.scan(new BPlusTree.Visitor() {
+				public void visit(int key, byte[] value) {
+					found.add(key);
+				}
+			});
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+		return found.toArray();
+	}
+
+	/**
+	 * Reads a single record from the database
+	 *
+	 * @param recNo record number to read
+	 * @return String array containing database record
+	 */
+	public synchronized String[] readRecord(int recNo) throws RecordNotFoundException {
+		byte[] value = null;
+		try {
+			value = tree.get(recNo);
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+		if(value == null){
+			throw new RecordNotFoundException();
+		}
+		return decode(value);
+	}
+
+	/**
+	 * Adds a record to the database. The first deleted record number
+	 * is reused, otherwise the record is appended.
+	 *
+	 * @param data String array containing record data
+	 * @return int which represents the id of the record
+	 */
+	public synchronized int addRecord(String[] data) throws DuplicateIndexException {
+		final byte[] record = encode(data);
+
+		// Look for a duplicate and the first unused record number
+		final int[] free = new int[] { 0, 1 }; // First unused record number and next expected key
+		final boolean[] duplicate = new boolean[1];
+		try {
+			tree.scan(new BPlusTree.Visitor() {
+				public void visit(int key, byte[] value) {
+					if(free[0] == 0 && key > free[1]){
+						free[0] = free[1];
+					}
+					free[1] = key + 1;
+					duplicate[0] |= Arrays.equals(value, record);
+				}
+			});
+		} catch (IOException e) {
+			System.out.println(e);
+			return -1;
+		}
+		if(duplicate[0]){
+			throw new DuplicateIndexException(); // If the exact same data already exists
+		}
+
+		int id = free[0];
+		if(id == 0){
+			id = free[1] <= pager.getRecordCount() ? free[1] : pager.getRecordCount() + 1;
+		}
+		try {
+			tree.put(id, record);
+			pager.setRecordCount(Math.max(id, pager.getRecordCount()));
+			pool.flush();
+			if(typeIndex != null){
+				typeIndex.add(id, data[3]);
+			}
+			System.out.println("DB was successully updated!");
+		} catch (IOException e) {
+			System.out.println(e);
+			id = -1;
+		}
+		return id;
+	}
+
+	/**
+	 * Deletes a record from the database
+	 *
+	 * @param recNo record number to delete
+	 */
+	public synchronized void deleteRecord(int recNo) throws RecordNotFoundException {
+		String[] old = readRecord(recNo); // Throws an exception if the record doesn't exist or is already deleted
+		try {
+			tree.remove(recNo);
+			pool.flush();
+			if(typeIndex != null){
+				typeIndex.remove(recNo, old[3]);
+			}
+			System.out.println("Record " + recNo + " deleted!");
+			System.out.println("DB was successully updated!");
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Updates a specific record in the database
+	 *
+	 * @param recNo record number to update
+	 * @param data new record data
+	 */
+	public synchronized void updateRecord(int recNo, String[] data) throws RecordNotFoundException {
+		if(recNo < 1 || recNo > pager.getRecordCount()){
+			throw new RecordNotFoundException();
+		}
+		byte[] record = encode(data);
+		try {
+			byte[] old = tree.get(recNo);
+			tree.put(recNo, record);
+			pool.flush();
+			if(typeIndex != null){
+				if(old != null){
+					typeIndex.remove(recNo, decode(old)[3]);
+				}
+				typeIndex.add(recNo, data[3]);
+			}
+			System.out.println("Entry was successully updated!");
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Applies a batch of writes. Records are written in place, so the
+	 * operations are applied one after the other.
+	 *
+	 * @param batch the writes
+	 * @return record number of every operation in the order of the batch,
+	 * -1 for skipped duplicates, or null if an add could not be written
+	 */
+	public synchronized int[] applyBatch(WriteBatch batch) throws RecordNotFoundException, DuplicateIndexException {
+		return batch.applyEach(this);
+	}
+
+	/**
+	 * Compacts the database. All records are written into a new page file
+	 * with full leaves, which replaces the old one. Record numbers don't change.
+	 */
+	public synchronized void compact() {
+		try {
+			File tempFile = new File(DATA_DIR + DS + DB_TEMP_FILE);
+			tempFile.delete();
+			final Pager newPager = new Pager(tempFile);
+			final BufferPool newPool = new BufferPool(newPager, BUFFER_POOL_PAGES);
+			final BPlusTree newTree = new BPlusTree(newPager, newPool);
+			try {
+				tree.scan(new BPlusTree.Visitor() {
+					public void visit(int key, byte[] value) throws IOException {
+						newTree.put(key, value); // Ascending keys are appended, which leaves full leaves behind
+					}
+				});
+				newPager.setRecordCount(pager.getRecordCount());
+				newPool.flush();
+				newPager.sync();
+			} finally {
+				newPager.close();
+			}
+			pager.close();
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			open(file);
+			System.out.println("DB was successully compacted!");
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Records are never renumbered, deleted keys don't take space in the tree
+	 *
+	 * @param ratio share of deleted records
+	 * @return null
+	 */
+	public int[] renumber(float ratio) {
+		return null;
+	}
+
+	/**
+	 * Forces all changed pages to disk and closes the page file
+	 */
+	public synchronized void close() {
+		if(pager == null){
+			return;
+		}
+		try {
+			pool.flush();
+			pager.sync();
+			pager.close();
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+		pager = null;
+	}
+
+	/**
+	 * Finds records accord to given criteria. The insurance type
+	 * index is built by the first search and then kept up to date.
+	 *
+	 * @param criteria String array with search criteria
+	 * @param bool int either 0(AND) or 1(OR) as search argument
+	 * @return returns an array of int with all found id's
+	 */
+	public synchronized int[] findRecords(String[] criteria, int bool) {
+		if(typeIndex == null){
+			final InsuranceTypeIndex newIndex = new InsuranceTypeIndex();
+			try {
+				tree.scan(new BPlusTree.Visitor() {
+					public void visit(int key, byte[] value) {
+						newIndex.add(key, decode(value)[3]);
+					}
+				});
+			} catch (IOException e) {
+				System.out.println(e);
+				return new int[0];
+			}
+			typeIndex = newIndex;
+		}
+		return typeIndex.find(criteria, bool);
+	}
+
+	/**
+	 * Encodes a record as line of the text database
+	 *
+	 * @param data String array containing record data
+	 * @return encoded record
+	 */
+	private byte[] encode(String[] data) {
+		return (data[0]+":"+data[1]+":"+data[2]+":"+data[3]+":"+data[4]+":"+data[5]).getBytes(CHARSET);
+	}
+
+	/**
+	 * Decodes a record
+	 *
+	 * @param value encoded record
+	 * @return String array containing the record
+	 */
+	private String[] decode(byte[] value) {
+		InsuranceCompanyRecordCodec codec = new InsuranceCompanyRecordCodec();
+		codec.wrap(ByteBuffer.wrap(value), 0, value.length);
+		return codec.toArray();
+	}
+
+}
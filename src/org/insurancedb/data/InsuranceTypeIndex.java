@@ -0,0 +1,198 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+
+/**
+ * InsuranceTypeIndex is an inverted index from normalized insurance type
+ * tokens (e.g. "pet", "travel", "motorcar") to a compressed bitmap of the
+ * record numbers of all records offering that insurance type.
+ * <p>
+ * A search criterion matches every token containing it, so partially typed
+ * criteria like "trav" still find all travel insurances. AND and OR queries
+ * are answered by intersecting and merging the bitmaps, without
+ * touching the database file.
+ * <p>
+ * The index can be saved next to the database together with a stamp of the
+ * database state it belongs to, so it can be loaded instead of rebuilt.
+ *
+ * @see CompressedBitmap
+ * @see InsuranceCompanyTextDAO
+ */
+class InsuranceTypeIndex {
+
+	private static final int FILE_VERSION = 1;
+
+	private TreeMap<String, CompressedBitmap> bitmaps = new TreeMap<String, CompressedBitmap>();
+	private CompressedBitmap all = new CompressedBitmap(); // Record numbers of all indexed records
+
+	/**
+	 * Splits an insurance types field into its normalized tokens
+	 *
+	 * @param insuranceTypes comma separated insurance types
+	 * @return Set of lower case insurance type tokens
+	 */
+	static Set<String> tokenize(String insuranceTypes) {
+		Set<String> tokens = new LinkedHashSet<String>();
+		for(String token : insuranceTypes.split(",")){
+			token = token.trim().toLowerCase();
+			if(!token.equals("")){
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Adds a record to the index
+	 *
+	 * @param recNo record number
+	 * @param insuranceTypes insurance types field of the record
+	 */
+	void add(int recNo, String insuranceTypes) {
+		all.add(recNo);
+		for(String token : tokenize(insuranceTypes)){
+			CompressedBitmap bitmap = bitmaps.get(token);
+			if(bitmap == null){
+				bitmap = new CompressedBitmap();
+				bitmaps.put(token, bitmap);
+			}
+			bitmap.add(recNo);
+		}
+	}
+
+	/**
+	 * Removes a record from the index
+	 *
+	 * @param recNo record number
+	 * @param insuranceTypes insurance types field the record was indexed with
+	 */
+	void remove(int recNo, String insuranceTypes) {
+		all.remove(recNo);
+		for(String token : tokenize(insuranceTypes)){
+			CompressedBitmap bitmap = bitmaps.get(token);
+			if(bitmap != null){
+				bitmap.remove(recNo);
+				if(bitmap.isEmpty()){
+					bitmaps.remove(token);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds all records matching the given criteria
+	 *
+	 * @param criteria String array with search criteria
+	 * @param bool int either 0(AND) or 1(OR) as search argument
+	 * @return sorted array of matching record numbers
+	 */
+	int[] find(String[] criteria, int bool) {
+		if(criteria.length == 0){
+			return bool == DAO.AND ? getRecordNumbers() : new int[0];
+		}
+
+		CompressedBitmap result = null;
+		for(String criterion : criteria){
+			CompressedBitmap ids = match(criterion.toLowerCase());
+			if(result == null){
+				result = ids;
+			} else if(bool == DAO.AND){
+				result = CompressedBitmap.and(result, ids);
+			} else {
+				result = CompressedBitmap.or(result, ids);
+			}
+			if(bool == DAO.AND && result.isEmpty()){
+				break; // Nothing left to intersect
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Gets the record numbers of all indexed records
+	 *
+	 * @return sorted array of record numbers
+	 */
+	int[] getRecordNumbers() {
+		return all.toArray();
+	}
+
+	/**
+	 * Gets all records with a token containing the criterion
+	 *
+	 * @param criterion lower case search criterion
+	 * @return bitmap of record numbers
+	 */
+	private CompressedBitmap match(String criterion) {
+		CompressedBitmap result = new CompressedBitmap();
+		for(Map.Entry<String, CompressedBitmap> entry : bitmaps.entrySet()){
+			if(entry.getKey().contains(criterion)){
+				result = CompressedBitmap.or(result, entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Saves the index to a file
+	 *
+	 * @param file index file
+	 * @param stamp values identifying the database state the index belongs to
+	 */
+	void save(File file, long[] stamp) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(FILE_VERSION);
+			out.writeInt(stamp.length);
+			for(long value : stamp){
+				out.writeLong(value);
+			}
+			all.write(out);
+			out.writeInt(bitmaps.size());
+			for(Map.Entry<String, CompressedBitmap> entry : bitmaps.entrySet()){
+				out.writeUTF(entry.getKey());
+				entry.getValue().write(out);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Loads an index saved by save()
+	 *
+	 * @param file index file
+	 * @param stamp values identifying the current database state
+	 * @return the loaded index, or null if there is no index for the current database state
+	 */
+	static InsuranceTypeIndex load(File file, long[] stamp) throws IOException {
+		if(!file.exists()){
+			return null;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != FILE_VERSION || in.readInt() != stamp.length){
+				return null;
+			}
+			for(long value : stamp){
+				if(in.readLong() != value){
+					return null; // The database was changed after the index was saved
+				}
+			}
+			InsuranceTypeIndex index = new InsuranceTypeIndex();
+			index.all = CompressedBitmap.read(in);
+			int n = in.readInt();
+			for(int i = 0; i < n; i++){
+				String token = in.readUTF();
+				index.bitmaps.put(token, CompressedBitmap.read(in));
+			}
+			return index;
+		} catch (EOFException e) {
+			return null; // Incomplete index file
+		} finally {
+			in.close();
+		}
+	}
+
+}
\ No newline at end of file
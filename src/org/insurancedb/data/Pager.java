@@ -0,0 +1,179 @@
+package org.insurancedb.data;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Pager reads and writes the fixed-size pages of a page file. Page 0 is the
+ * header, which holds the root page of the B+-tree, the number of pages, the
+ * head of the free-page list and the highest record number.
+ * <p>
+ * Freed pages are linked into the free-page list and reused by allocate()
+ * before the file grows.
+ *
+ * @see BufferPool
+ * @see BPlusTree
+ */
+class Pager {
+
+	static final int PAGE_SIZE = 4096;
+	static final byte FREE 	   = 0; // Page type of a page in the free-page list
+
+	private static final int MAGIC 	 = 0x49444254; // "IDBT"
+	private static final int VERSION = 1;
+
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private int pageCount;
+	private int freeList; // First free page, 0 if there is none
+	private int root;	  // Root page of the tree, 0 if there is none
+	private int recordCount;
+
+	/**
+	 * Opens a page file, a new file is created with an empty header
+	 *
+	 * @param file page file
+	 */
+	Pager(File file) throws IOException {
+		boolean exists = file.exists() && file.length() > 0;
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		if(!exists){
+			pageCount = 1;
+			writeHeader();
+			return;
+		}
+		ByteBuffer header = read(0);
+		if(header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != PAGE_SIZE){
+			raf.close();
+			throw new IOException("Unsupported page file " + file);
+		}
+		root = header.getInt();
+		pageCount = header.getInt();
+		freeList = header.getInt();
+		recordCount = header.getInt();
+	}
+
+	/**
+	 * Writes the header page
+	 */
+	void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE);
+		header.putInt(root).putInt(pageCount).putInt(freeList).putInt(recordCount);
+		header.clear();
+		write(0, header);
+	}
+
+	/**
+	 * Reads a page
+	 *
+	 * @param page page number
+	 * @return buffer with the page's bytes
+	 */
+	ByteBuffer read(int page) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+		long position = (long)page * PAGE_SIZE;
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, position + buffer.position()) == -1){
+				throw new EOFException("Page " + page + " is missing");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Writes a page
+	 *
+	 * @param page page number
+	 * @param buffer buffer with the page's bytes
+	 */
+	void write(int page, ByteBuffer buffer) throws IOException {
+		long position = (long)page * PAGE_SIZE;
+		while(buffer.hasRemaining()){
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	/**
+	 * Allocates a page, a free page is reused if there is one
+	 *
+	 * @return page number
+	 */
+	int allocate() throws IOException {
+		if(freeList == 0){
+			return pageCount++;
+		}
+		int page = freeList;
+		ByteBuffer buffer = read(page);
+		buffer.get(); // Page type
+		freeList = buffer.getInt();
+		return page;
+	}
+
+	/**
+	 * Adds a page to the free-page list
+	 *
+	 * @param page page number
+	 */
+	void free(int page) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+		buffer.put(FREE).putInt(freeList);
+		buffer.clear();
+		write(page, buffer);
+		freeList = page;
+	}
+
+	/**
+	 * Gets the root page of the tree
+	 *
+	 * @return page number, 0 if there is no root yet
+	 */
+	int getRoot() {
+		return root;
+	}
+
+	/**
+	 * Sets the root page of the tree
+	 *
+	 * @param root page number
+	 */
+	void setRoot(int root) {
+		this.root = root;
+	}
+
+	/**
+	 * Gets the highest record number ever assigned
+	 *
+	 * @return number of records, including deleted ones
+	 */
+	int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Sets the highest record number ever assigned
+	 *
+	 * @param recordCount number of records, including deleted ones
+	 */
+	void setRecordCount(int recordCount) {
+		this.recordCount = recordCount;
+	}
+
+	/**
+	 * Forces the page file to disk
+	 */
+	void sync() throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * Closes the page file
+	 */
+	void close() throws IOException {
+		raf.close();
+	}
+
+}
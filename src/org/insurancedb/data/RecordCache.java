@@ -0,0 +1,138 @@
+package org.insurancedb.data;
+
+import java.util.*;
+
+/**
+ * RecordCache holds a bounded number of decoded records. When the cache is
+ * full, a record is evicted with the CLOCK algorithm: the clock hand sweeps
+ * over the slots, clearing the reference bit of every recently used record
+ * and evicting the first record which wasn't used since the last sweep.
+ * <p>
+ * Hits, misses and evictions are counted, so the capacity can be sized
+ * against the hit rate.
+ *
+ * @see InsuranceCompanyCacheDAO
+ */
+class RecordCache {
+
+	private int capacity;
+	private int[] keys;
+	private String[][] values;
+	private boolean[] referenced;
+	private int hand; // Next slot the clock hand checks
+	private int used; // Slots which were ever filled
+	private int[] freeSlots; // Slots emptied by invalidate()
+	private int freeCount;
+	private Map<Integer, Integer> slots = new HashMap<Integer, Integer>(); // Record number to slot
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Sets up an empty cache
+	 *
+	 * @param capacity maximum number of cached records
+	 */
+	RecordCache(int capacity) {
+		this.capacity = capacity;
+		keys = new int[capacity];
+		values = new String[capacity][];
+		referenced = new boolean[capacity];
+		freeSlots = new int[capacity];
+	}
+
+	/**
+	 * Gets a cached record
+	 *
+	 * @param recNo record number
+	 * @return the cached record, or null if it isn't cached
+	 */
+	String[] get(int recNo) {
+		Integer slot = slots.get(recNo);
+		if(slot == null){
+			misses++;
+			return null;
+		}
+		hits++;
+		referenced[slot] = true;
+		return values[slot];
+	}
+
+	/**
+	 * Caches a record, a record is evicted if the cache is full
+	 *
+	 * @param recNo record number
+	 * @param record decoded record
+	 */
+	void put(int recNo, String[] record) {
+		Integer slot = slots.get(recNo);
+		if(slot == null){
+			if(freeCount > 0){
+				slot = freeSlots[--freeCount];
+			} else if(used < capacity){
+				slot = used++;
+			} else {
+				slot = evict();
+			}
+			slots.put(recNo, slot);
+			keys[slot] = recNo;
+		}
+		values[slot] = record;
+		referenced[slot] = false; // A new record must be used again before it survives a sweep
+	}
+
+	/**
+	 * Removes a record from the cache
+	 *
+	 * @param recNo record number
+	 */
+	void invalidate(int recNo) {
+		Integer slot = slots.remove(recNo);
+		if(slot != null){
+			values[slot] = null;
+			referenced[slot] = false;
+			freeSlots[freeCount++] = slot;
+		}
+	}
+
+	/**
+	 * Removes all records from the cache
+	 */
+	void clear() {
+		slots.clear();
+		Arrays.fill(values, null);
+		Arrays.fill(referenced, false);
+		hand = 0;
+		used = 0;
+		freeCount = 0;
+	}
+
+	/**
+	 * Evicts the first record the clock hand finds without reference bit.
+	 * Only called if there are no free slots.
+	 *
+	 * @return the emptied slot
+	 */
+	private int evict() {
+		while(referenced[hand]){
+			referenced[hand] = false; // Second chance
+			hand = (hand + 1) % capacity;
+		}
+		int slot = hand;
+		hand = (hand + 1) % capacity;
+		slots.remove(keys[slot]);
+		evictions++;
+		return slot;
+	}
+
+	/**
+	 * Gets a snapshot of the cache counters
+	 *
+	 * @return the cache statistics
+	 */
+	CacheStatistics getStatistics() {
+		return new CacheStatistics(capacity, slots.size(), hits, misses, evictions);
+	}
+
+}
@@ -0,0 +1,57 @@
+package org.insurancedb.data;
+
+import java.util.*;
+import java.io.*;
+
+/**
+ * StorageDAO extends the DAO interface with the life cycle of a storage backend.
+ * Every backend the InsuranceCompanyDAO can delegate to implements it.
+ *
+ * @see DAO
+ * @see InsuranceCompanyDAO
+ */
+interface StorageDAO extends DAO {
+
+	// Opens the database. Throws a DatabaseNotFoundException if the
+	// database is not available.
+
+	public void initialize() throws DatabaseNotFoundException;
+
+	// Returns all records of the database. The record with identifier n
+	// is at index n - 1, deleted records are null.
+
+	public List<String[]> readAllRecords();
+
+	// Returns the sorted identifiers of all records which are not deleted,
+	// without reading the records themselves.
+
+	public int[] readRecordNumbers();
+
+	// Applies a batch of adds, updates and deletes in the order of the batch.
+	// Returns the record number of every operation, -1 for skipped duplicates,
+	// or null if the database could not be written.
+
+	public int[] applyBatch(WriteBatch batch) throws RecordNotFoundException, DuplicateIndexException;
+
+	// Writes a point in time copy of all records to a file in the format of
+	// the text database, line n holds record n and deleted records are "empty".
+	// Writes wait until the copy is written.
+
+	public void snapshot(File target) throws IOException;
+
+	// Reclaims unused space of the database. Record identifiers don't change.
+
+	public void compact();
+
+	// Drops deleted records and renumbers the others consecutively, once the
+	// share of deleted records reached the given ratio. Returns the new record
+	// number at the index of every old one, 0 for deleted records, or null if
+	// the records were not renumbered. Backends may never renumber.
+
+	public int[] renumber(float ratio);
+
+	// Forces all pending writes to disk and releases the database.
+
+	public void close();
+
+}
@@ -0,0 +1,172 @@
+package org.insurancedb.data;
+
+import java.util.*;
+
+/**
+ * WriteBatch collects adds, updates and deletes of records, which are
+ * applied together by InsuranceCompanyDAO.applyBatch(). The operations
+ * are applied in the order they were put into the batch, so an update
+ * can follow the add of the same record.
+ * <p>
+ * The text database checks the whole batch before anything is written and
+ * then rewrites the database file once, so a batch is applied completely
+ * or not at all. The column and B+-tree databases write every record in
+ * place and apply the operations one after the other.
+ * <p>
+ * Adds of records which already exist fail the batch with a
+ * DuplicateIndexException, unless the batch skips duplicates. Skipped
+ * adds get the record number -1.
+ *
+ * @see InsuranceCompanyDAO
+ */
+public class WriteBatch {
+
+	// Operation constants
+	public static final int ADD    = 0;
+	public static final int UPDATE = 1;
+	public static final int DELETE = 2;
+
+	private ArrayList<Integer> types = new ArrayList<Integer>();
+	private ArrayList<Integer> recNos = new ArrayList<Integer>();
+	private ArrayList<String[]> data = new ArrayList<String[]>();
+	private boolean skipDuplicates;
+
+	/**
+	 * Adds a new record to the batch
+	 *
+	 * @param data String array containing record data
+	 */
+	public void addRecord(String[] data) {
+		put(ADD, 0, data.clone());
+	}
+
+	/**
+	 * Adds an update of a record to the batch
+	 *
+	 * @param recNo record number to update
+	 * @param data new record data
+	 */
+	public void updateRecord(int recNo, String[] data) {
+		put(UPDATE, recNo, data.clone());
+	}
+
+	/**
+	 * Adds the delete of a record to the batch
+	 *
+	 * @param recNo record number to delete
+	 */
+	public void deleteRecord(int recNo) {
+		put(DELETE, recNo, null);
+	}
+
+	/**
+	 * Sets whether adds of existing records are skipped instead of failing the batch
+	 *
+	 * @param skipDuplicates true to skip duplicates
+	 */
+	public void setSkipDuplicates(boolean skipDuplicates) {
+		this.skipDuplicates = skipDuplicates;
+	}
+
+	/**
+	 * Checks whether adds of existing records are skipped
+	 *
+	 * @return true if duplicates are skipped
+	 */
+	public boolean isSkipDuplicates() {
+		return skipDuplicates;
+	}
+
+	/**
+	 * Gets the number of operations
+	 *
+	 * @return number of operations
+	 */
+	public int size() {
+		return types.size();
+	}
+
+	/**
+	 * Gets the kind of an operation
+	 *
+	 * @param i index of the operation
+	 * @return int either ADD, UPDATE or DELETE
+	 */
+	public int getType(int i) {
+		return types.get(i);
+	}
+
+	/**
+	 * Gets the record number of an operation
+	 *
+	 * @param i index of the operation
+	 * @return record number, 0 for adds
+	 */
+	public int getRecNo(int i) {
+		return recNos.get(i);
+	}
+
+	/**
+	 * Gets the record data of an operation
+	 *
+	 * @param i index of the operation
+	 * @return String array containing record data, null for deletes
+	 */
+	public String[] getData(int i) {
+		String[] record = data.get(i);
+		return record != null ? record.clone() : null;
+	}
+
+	/**
+	 * Applies the operations one after the other by the single record
+	 * methods of a DAO. It stops at the first failing operation, the
+	 * operations before it stay applied.
+	 *
+	 * @param dao the DAO to write to
+	 * @return record number of every operation in the order of the batch, -1
+	 * for skipped duplicates, or null if an add could not be written
+	 */
+	int[] applyEach(DAO dao) throws RecordNotFoundException, DuplicateIndexException {
+		int[] ids = new int[size()];
+		for(int i = 0; i < size(); i++){
+			int recNo = getRecNo(i);
+			switch(getType(i)){
+			case ADD:
+				try {
+					recNo = dao.addRecord(data.get(i));
+				} catch (DuplicateIndexException e) {
+					if(!skipDuplicates){
+						throw e;
+					}
+					recNo = -1;
+					break;
+				}
+				if(recNo == -1){
+					return null; // The database could not be written
+				}
+				break;
+			case UPDATE:
+				dao.updateRecord(recNo, data.get(i));
+				break;
+			default:
+				dao.deleteRecord(recNo);
+			}
+			ids[i] = recNo;
+		}
+		return ids;
+	}
+
+	/**
+	 * Appends an operation
+	 *
+	 * @param type ADD, UPDATE or DELETE
+	 * @param recNo record number
+	 * @param record record data
+	 */
+	private void put(int type, int recNo, String[] record) {
+		types.add(type);
+		recNos.add(recNo);
+		data.add(record);
+	}
+
+}
\ No newline at end of file
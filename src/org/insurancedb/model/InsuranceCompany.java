@@ -1,9 +1,16 @@
 package org.insurancedb.model;
 
+import java.util.*;
+
 /**
  * InsuranceCompany holds all data for a single InsuranceCompany.
- * The class is immutable and can only be instantiated via the static
- * method createInsuranceCompany.
+ * Outside of the model it can only be instantiated via the static
+ * method createInsuranceCompany, such InsuranceCompanies are immutable.
+ * <p>
+ * The InsuranceCompanies of the model's InsuranceCompanyStore are mutable
+ * flyweights instead. They only know their slot in the store and read their
+ * values from it, so they show the changes of their company. A deleted
+ * company shows empty values. copy() takes a snapshot that doesn't change.
  * <p>
  * Implements Comparable<InsuranceCompany> to enable natural sorting.
  *
@@ -18,6 +25,9 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 					telephone;
 	private float	percentage;
 	private int		id;
+	private String[] insuranceTypeTokens; // Lower case insurance types, created on first search
+	private InsuranceCompanyStore store; // Store of a flyweight, null otherwise
+	private int slot; // Slot of a flyweight in the store
 
 	/**
 	 * Private constructor, can only be invoked from static method createInsuranceCompany
@@ -30,7 +40,7 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 	 * @param	per	broker percentage
 	 * @param	gd	general description
 	 */
-	private InsuranceCompany(int id, String cn, String tel, String url, String it, Float per, String gd){
+	private InsuranceCompany(int id, String cn, String tel, String url, String it, float per, String gd){
 		this.id = id;
 		this.companyName = cn;
 		this.url = url;
@@ -51,10 +61,37 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 	 * @param	per	broker percentage
 	 * @param	gd	general description
 	 */
-	public static InsuranceCompany createInsuranceCompany(int id, String cn, String tel, String url, String it, Float per, String gd){
+	public static InsuranceCompany createInsuranceCompany(int id, String cn, String tel, String url, String it, float per, String gd){
 		return new InsuranceCompany(id, cn, tel, url, it, per, gd);
 	};
 
+	/**
+	 * Package private constructor of a flyweight, which reads its values
+	 * from an InsuranceCompanyStore
+	 *
+	 * @param	store	the store holding the values
+	 * @param	slot	slot of the company in the store
+	 * @param	id		unique InsuranceCompany identifier
+	 */
+	InsuranceCompany(InsuranceCompanyStore store, int slot, int id){
+		this.store = store;
+		this.slot = slot;
+		this.id = id;
+	}
+
+	/**
+	 * Creates an InsuranceCompany which holds its values itself. A flyweight
+	 * is copied, so the copy keeps the current values when the store changes.
+	 *
+	 * @return an InsuranceCompany which is independent of any store
+	 */
+	InsuranceCompany copy(){
+		if(store == null){
+			return this; // Created by createInsuranceCompany, so it never changes
+		}
+		return new InsuranceCompany(id, getCompanyName(), getTelephone(), getUrl(), getInsuranceTypes(), getPercentage(), getGeneralDescription());
+	}
+
 	/**
 	 * Gets the company's ID
 	 *
@@ -70,6 +107,9 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 	 * @return company name String
 	 */
 	public String getCompanyName(){
+		if(store != null){
+			return store.getText(slot, id, InsuranceCompanyStore.NAME);
+		}
 		return this.companyName;
 	}
 
@@ -79,6 +119,9 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 	 * @return website String
 	 */
 	public String getUrl(){
+		if(store != null){
+			return store.getText(slot, id, InsuranceCompanyStore.URL);
+		}
 		return this.url;
 	}
 
@@ -88,15 +131,57 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 	 * @return insurance types String
 	 */
 	public String getInsuranceTypes(){
+		if(store != null){
+			return store.getInsuranceTypes(slot, id);
+		}
 		return this.insuranceTypes;
 	}
 
+	/**
+	 * Gets the company's insurance types as normalized search tokens.
+	 * The tokens are created once and cached, so repeated searches
+	 * don't have to split and lower case the insurance types again.
+	 *
+	 * @return lower case insurance type tokens
+	 */
+	String[] getInsuranceTypeTokens(){
+		if(store != null){
+			return store.getInsuranceTypeTokens(slot, id); // Shared by all companies with the same insurance types
+		}
+		String[] tokens = this.insuranceTypeTokens;
+		if(tokens == null){
+			tokens = tokenize(this.insuranceTypes);
+			this.insuranceTypeTokens = tokens;
+		}
+		return tokens;
+	}
+
+	/**
+	 * Splits insurance types into normalized search tokens
+	 *
+	 * @param insuranceTypes comma separated insurance types
+	 * @return lower case insurance type tokens
+	 */
+	static String[] tokenize(String insuranceTypes){
+		ArrayList<String> list = new ArrayList<String>();
+		for(String token : insuranceTypes.toLowerCase().split(",")){
+			token = token.trim();
+			if(!token.equals("")){
+				list.add(token);
+			}
+		}
+		return list.toArray(new String[list.size()]);
+	}
+
 	/**
 	 * Gets the company's general description
 	 *
 	 * @return general description String
 	 */
 	public String getGeneralDescription(){
+		if(store != null){
+			return store.getText(slot, id, InsuranceCompanyStore.DESCRIPTION);
+		}
 		return this.generalDescription;
 	}
 
@@ -106,6 +191,9 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 	 * @return telephone number String
 	 */
 	public String getTelephone(){
+		if(store != null){
+			return store.getText(slot, id, InsuranceCompanyStore.TELEPHONE);
+		}
 		return this.telephone;
 	}
 
@@ -115,6 +203,9 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 	 * @return broker percentage float
 	 */
 	public float getPercentage(){
+		if(store != null){
+			return store.getPercentage(slot, id);
+		}
 		return this.percentage;
 	}
 
@@ -125,12 +216,12 @@ public class InsuranceCompany implements Comparable<InsuranceCompany>{
 	 * @return String with InsuranceCompany data
 	 */
 	public String toString(){
-		return 	"Company: \t\t" + this.companyName + "\n" +
-				"Telephone: \t\t" + this.telephone + "\n" +
-				"Web Adress: \t\t" + this.url + "\n" +
-				"Types of insurance: \t" + this.insuranceTypes + "\n" +
-				"Broker percentage: \t" + this.percentage + "\n" +
-				"General Description: \t" + this.generalDescription + "\n";
+		return 	"Company: \t\t" + getCompanyName() + "\n" +
+				"Telephone: \t\t" + getTelephone() + "\n" +
+				"Web Adress: \t\t" + getUrl() + "\n" +
+				"Types of insurance: \t" + getInsuranceTypes() + "\n" +
+				"Broker percentage: \t" + getPercentage() + "\n" +
+				"General Description: \t" + getGeneralDescription() + "\n";
 	};
 
 	/**
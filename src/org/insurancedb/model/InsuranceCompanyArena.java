@@ -0,0 +1,185 @@
+package org.insurancedb.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * InsuranceCompanyArena keeps records outside of the Java heap, in a direct
+ * ByteBuffer. Records are laid out like the lines of the text database,
+ * name:telephone:url:types:percentage:description, UTF-8 encoded and
+ * terminated by a line feed. A record is referred to by its offset and its
+ * fields are decoded when they are read.
+ * <p>
+ * Records are only appended. A changed record is appended again and its old
+ * line is counted as garbage, until the arena is compacted by copying the
+ * live records into a new arena. The memory of an arena is released when
+ * its buffer is garbage collected.
+ * <p>
+ * The arena is not synchronized, the InsuranceCompanyStore synchronizes it.
+ *
+ * @see InsuranceCompanyStore
+ */
+class InsuranceCompanyArena {
+
+	static final int NAME			 = 0;
+	static final int TELEPHONE		 = 1;
+	static final int URL			 = 2;
+	static final int INSURANCE_TYPES = 3;
+	static final int PERCENTAGE		 = 4;
+	static final int DESCRIPTION	 = 5;
+
+	private static final byte SEPARATOR = ':';
+	private static final byte LINE_FEED = '\n';
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final int MIN_CAPACITY = 64 * 1024;
+
+	private ByteBuffer buffer;
+	private int end; // Bytes used by records, including garbage
+	private int garbage; // Bytes of records which were freed
+
+	/**
+	 * Creates an empty arena
+	 *
+	 * @param capacity initial number of bytes
+	 */
+	InsuranceCompanyArena(int capacity) {
+		buffer = ByteBuffer.allocateDirect(Math.max(capacity, MIN_CAPACITY));
+	}
+
+	/**
+	 * Gets the number of bytes used by records, including garbage
+	 *
+	 * @return used bytes
+	 */
+	int getSize() {
+		return end;
+	}
+
+	/**
+	 * Gets the number of bytes of freed records
+	 *
+	 * @return garbage bytes
+	 */
+	int getGarbage() {
+		return garbage;
+	}
+
+	/**
+	 * Appends a record
+	 *
+	 * @param fields String array with the six fields of the record
+	 * @return offset of the record
+	 */
+	int append(String[] fields) {
+		byte[] line = (fields[0]+":"+fields[1]+":"+fields[2]+":"+fields[3]+":"+fields[4]+":"+fields[5]+"\n").getBytes(CHARSET);
+		return append(line);
+	}
+
+	/**
+	 * Appends a record of another arena
+	 *
+	 * @param arena arena of the record
+	 * @param offset offset of the record in that arena
+	 * @return offset of the record in this arena
+	 */
+	int copy(InsuranceCompanyArena arena, int offset) {
+		byte[] line = new byte[arena.lineLength(offset)];
+		arena.read(offset, line);
+		return append(line);
+	}
+
+	/**
+	 * Frees a record, its bytes become garbage
+	 *
+	 * @param offset offset of the record
+	 */
+	void free(int offset) {
+		garbage += lineLength(offset);
+	}
+
+	/**
+	 * Decodes a field of a record
+	 *
+	 * @param offset offset of the record
+	 * @param field NAME, TELEPHONE, URL, INSURANCE_TYPES, PERCENTAGE or DESCRIPTION
+	 * @return the field's value
+	 */
+	String getString(int offset, int field) {
+		int start = offset;
+		for(int i = 0; i < field; i++){
+			start = fieldEnd(start) + 1;
+		}
+		byte[] bytes = new byte[fieldEnd(start) - start];
+		read(start, bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	/**
+	 * Appends a line, the buffer grows if it doesn't fit
+	 *
+	 * @param line encoded record with its line feed
+	 * @return offset of the line
+	 */
+	private int append(byte[] line) {
+		if(line.length > buffer.capacity() - end){
+			long needed = (long)end + line.length;
+			if(needed > Integer.MAX_VALUE){
+				throw new IllegalStateException("Off-heap arena is full");
+			}
+			// Double the capacity, but stay within what a ByteBuffer can address
+			ByteBuffer bigger = ByteBuffer.allocateDirect((int)Math.min(Math.max(needed, buffer.capacity() * 2L), Integer.MAX_VALUE));
+			buffer.position(0);
+			buffer.limit(end);
+			bigger.put(buffer);
+			buffer.clear();
+			buffer = bigger;
+		}
+		int offset = end;
+		buffer.position(offset);
+		buffer.put(line);
+		end += line.length;
+		return offset;
+	}
+
+	/**
+	 * Reads bytes of the arena
+	 *
+	 * @param offset offset of the first byte
+	 * @param bytes array to fill
+	 */
+	private void read(int offset, byte[] bytes) {
+		buffer.position(offset);
+		buffer.get(bytes);
+	}
+
+	/**
+	 * Gets the end of a field, that is the position of the separator
+	 * or line feed after it
+	 *
+	 * @param start position of the field
+	 * @return position after the field
+	 */
+	private int fieldEnd(int start) {
+		int i = start;
+		byte b = buffer.get(i);
+		while(b != SEPARATOR && b != LINE_FEED){
+			b = buffer.get(++i);
+		}
+		return i;
+	}
+
+	/**
+	 * Gets the length of a record including its line feed
+	 *
+	 * @param offset offset of the record
+	 * @return number of bytes
+	 */
+	private int lineLength(int offset) {
+		int i = offset;
+		while(buffer.get(i) != LINE_FEED){
+			i++;
+		}
+		return i + 1 - offset;
+	}
+
+}
\ No newline at end of file
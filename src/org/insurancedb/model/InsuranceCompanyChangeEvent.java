@@ -0,0 +1,73 @@
+package org.insurancedb.model;
+
+/**
+ * InsuranceCompanyChangeEvent describes a single change of the model's
+ * InsuranceCompanies. It is passed to the Table observers, so they can
+ * update only the affected row instead of rebuilding the whole table.
+ * <p>
+ * An event carries the InsuranceCompany after the change and the one
+ * before the change. Inserted companies have no previous state, deleted
+ * companies no new state.
+ *
+ * @see InsuranceCompanyModel
+ */
+public class InsuranceCompanyChangeEvent {
+
+	public static final int INSERTED = 0; // An InsuranceCompany was added
+	public static final int UPDATED  = 1; // An InsuranceCompany was changed
+	public static final int DELETED  = 2; // An InsuranceCompany was deleted
+
+	private int type;
+	private InsuranceCompany insuranceCompany;
+	private InsuranceCompany previousInsuranceCompany;
+
+	/**
+	 * Creates a new change event
+	 *
+	 * @param type INSERTED, UPDATED or DELETED
+	 * @param insuranceCompany InsuranceCompany after the change, null if it was deleted
+	 * @param previousInsuranceCompany InsuranceCompany before the change, null if it was inserted
+	 */
+	public InsuranceCompanyChangeEvent(int type, InsuranceCompany insuranceCompany, InsuranceCompany previousInsuranceCompany){
+		this.type = type;
+		this.insuranceCompany = insuranceCompany;
+		this.previousInsuranceCompany = previousInsuranceCompany;
+	}
+
+	/**
+	 * Gets the kind of change
+	 *
+	 * @return int either INSERTED, UPDATED or DELETED
+	 */
+	public int getType(){
+		return type;
+	}
+
+	/**
+	 * Gets the identifier of the changed InsuranceCompany
+	 *
+	 * @return unique InsuranceCompany identifier
+	 */
+	public int getId(){
+		return insuranceCompany != null ? insuranceCompany.getId() : previousInsuranceCompany.getId();
+	}
+
+	/**
+	 * Gets the InsuranceCompany after the change
+	 *
+	 * @return the InsuranceCompany, or null if it was deleted
+	 */
+	public InsuranceCompany getInsuranceCompany(){
+		return insuranceCompany;
+	}
+
+	/**
+	 * Gets the InsuranceCompany before the change
+	 *
+	 * @return the previous InsuranceCompany, or null if it was inserted
+	 */
+	public InsuranceCompany getPreviousInsuranceCompany(){
+		return previousInsuranceCompany;
+	}
+
+}
\ No newline at end of file
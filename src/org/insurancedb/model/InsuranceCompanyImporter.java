@@ -0,0 +1,550 @@
+package org.insurancedb.model;
+
+import org.insurancedb.data.InsuranceCompanyDAO;
+import org.insurancedb.data.WriteBatch;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * InsuranceCompanyImporter imports InsuranceCompanies from CSV and JSON lines
+ * files. The import is a pipeline of three stages:
+ * <ol>
+ * <li>A parser thread reads the input incrementally and passes its records on in chunks
+ * <li>Validator threads check the chunks in parallel with the InsuranceCompanyValidator
+ * <li>The calling thread adds the valid records to the model in large WriteBatches,
+ * in the order of the input
+ * </ol>
+ * The stages are connected by bounded queues and only a fixed number of chunks
+ * is in the pipeline at once. A slow writer slows down parsing instead of piling
+ * up records, so inputs of any size are imported with a flat amount of memory.
+ * <p>
+ * CSV files have the columns companyName, telephone, url, insuranceTypes, percentage
+ * and generalDescription, optionally with a header row naming them. Fields can be
+ * quoted with double quotes. JSON lines files have one object per line with these keys.
+ * Fields are trimmed, records which already exist are skipped.
+ *
+ * @see InsuranceCompanyValidator
+ * @see InsuranceCompanyModel#applyBatch
+ */
+public class InsuranceCompanyImporter {
+
+	// Input format constants
+	public static final int CSV		   = 0;
+	public static final int JSON_LINES = 1;
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private static final int CHUNK_SIZE		= 1000;	// Records passed between the stages at once
+	private static final int QUEUE_SIZE		= 8;	// Chunks waiting in front of a stage
+	private static final int BATCH_SIZE		= 50000;	// Records added by a single batch
+	private static final int REJECTED_LINES = 100;	// Line numbers of rejected records which are reported
+
+	private static final Chunk END = new Chunk(-1); // Marks the end of the input
+
+	private InsuranceCompanyModelInterface model;
+	private int validators = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+	private int imported;
+	private int duplicates;
+	private int rejected;
+	private List<Integer> rejectedLines = new ArrayList<Integer>();
+
+	/**
+	 * Chunk holds consecutive records of the input and their line numbers
+	 */
+	private static class Chunk {
+
+		private int sequence; // Position of the chunk in the input
+		private int size;
+		private String[][] records = new String[CHUNK_SIZE][];
+		private int[] lines = new int[CHUNK_SIZE];
+		private boolean[] valid = new boolean[CHUNK_SIZE];
+
+		Chunk(int sequence){
+			this.sequence = sequence;
+		}
+
+	}
+
+	/**
+	 * Creates an importer, which adds the InsuranceCompanies to the given model
+	 *
+	 * @param model the model
+	 */
+	public InsuranceCompanyImporter(InsuranceCompanyModelInterface model){
+		this.model = model;
+	}
+
+	/**
+	 * Gets the format of a file by its extension. Files ending with .json,
+	 * .jsonl or .ndjson are JSON lines, all other files are CSV.
+	 *
+	 * @param file input file
+	 * @return int either CSV or JSON_LINES
+	 */
+	public static int getFormat(File file){
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson") ? JSON_LINES : CSV;
+	}
+
+	/**
+	 * Imports an UTF-8 encoded file
+	 *
+	 * @param file CSV or JSON lines file
+	 */
+	public void importFile(File file) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), CHARSET);
+		try {
+			importFrom(reader, getFormat(file));
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Imports the records of a reader. The reader is not closed.
+	 *
+	 * @param reader the input
+	 * @param format CSV or JSON_LINES
+	 */
+	public void importFrom(Reader reader, final int format) throws IOException {
+		final BufferedReader in = new BufferedReader(reader);
+		final BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<Chunk>(QUEUE_SIZE);
+		final BlockingQueue<Chunk> validated = new ArrayBlockingQueue<Chunk>(QUEUE_SIZE);
+		final Semaphore chunks = new Semaphore(2 * QUEUE_SIZE + validators); // Chunks in the pipeline
+		final IOException[] failure = new IOException[1]; // Published to the writer by the END chunks
+
+		ExecutorService stages = Executors.newFixedThreadPool(validators + 1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "InsuranceDB import");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			// Parser stage
+			stages.execute(new Runnable() {
+				public void run() {
+					try {
+						try {
+							Parser parser = new Parser(parsed, chunks);
+							if(format == JSON_LINES){
+								parser.parseJsonLines(in);
+							} else {
+								parser.parseCsv(in);
+							}
+						} catch (IOException e) {
+							failure[0] = e; // The records read so far are still imported
+						}
+						for(int i = 0; i < validators; i++){
+							parsed.put(END);
+						}
+					} catch (InterruptedException e) {
+						// The import was cancelled
+					}
+				}
+			});
+
+			// Validation stage
+			for(int i = 0; i < validators; i++){
+				stages.execute(new Runnable() {
+					public void run() {
+						try {
+							for(Chunk chunk = parsed.take(); chunk != END; chunk = parsed.take()){
+								for(int n = 0; n < chunk.size; n++){
+									chunk.valid[n] = InsuranceCompanyValidator.isValid(chunk.records[n]);
+								}
+								validated.put(chunk);
+							}
+							validated.put(END);
+						} catch (InterruptedException e) {
+							// The import was cancelled
+						}
+					}
+				});
+			}
+
+			// Writer stage
+			write(validated, chunks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			stages.shutdownNow(); // Stops the other stages if the writer failed
+		}
+		if(failure[0] != null){
+			throw failure[0];
+		}
+	}
+
+	/**
+	 * Gets the number of imported InsuranceCompanies
+	 *
+	 * @return number of added records
+	 */
+	public int getImported(){
+		return imported;
+	}
+
+	/**
+	 * Gets the number of records which were not added, because they already exist
+	 *
+	 * @return number of skipped records
+	 */
+	public int getDuplicates(){
+		return duplicates;
+	}
+
+	/**
+	 * Gets the number of records which are malformed or invalid
+	 *
+	 * @return number of rejected records
+	 */
+	public int getRejected(){
+		return rejected;
+	}
+
+	/**
+	 * Gets the line numbers of the first rejected records
+	 *
+	 * @return line numbers, starting at 1
+	 */
+	public List<Integer> getRejectedLines(){
+		return rejectedLines;
+	}
+
+	/**
+	 * Takes the validated chunks and adds their valid records in batches.
+	 * Chunks are validated in parallel, so a chunk may arrive before the
+	 * chunks in front of it. It then waits until they are written.
+	 *
+	 * @param validated queue of validated chunks
+	 * @param chunks permits of the chunks in the pipeline
+	 */
+	private void write(BlockingQueue<Chunk> validated, Semaphore chunks) throws InterruptedException, IOException {
+		Map<Integer, Chunk> waiting = new HashMap<Integer, Chunk>();
+		int next = 0; // Sequence of the next chunk to write
+		int ended = 0;
+		WriteBatch batch = new WriteBatch();
+		batch.setSkipDuplicates(true);
+		while(ended < validators){
+			Chunk chunk = validated.take();
+			if(chunk == END){
+				ended++;
+				continue;
+			}
+			waiting.put(chunk.sequence, chunk);
+			for(chunk = waiting.remove(next); chunk != null; chunk = waiting.remove(next)){
+				for(int n = 0; n < chunk.size; n++){
+					if(chunk.valid[n]){
+						batch.addRecord(chunk.records[n]);
+					} else {
+						reject(chunk.lines[n]);
+					}
+				}
+				next++;
+				chunks.release();
+				if(batch.size() >= BATCH_SIZE){
+					flush(batch);
+					batch = new WriteBatch();
+					batch.setSkipDuplicates(true);
+				}
+			}
+		}
+		flush(batch);
+	}
+
+	/**
+	 * Adds a batch of records to the model
+	 *
+	 * @param batch the records
+	 */
+	private void flush(WriteBatch batch) throws IOException {
+		if(batch.size() == 0){
+			return;
+		}
+		int[] ids = model.applyBatch(batch);
+		if(ids == null){
+			throw new IOException("Records could not be written to the database, " + imported + " records were imported");
+		}
+		for(int id : ids){
+			if(id == -1){
+				duplicates++;
+			} else {
+				imported++;
+			}
+		}
+	}
+
+	/**
+	 * Counts a rejected record
+	 *
+	 * @param line line number of the record
+	 */
+	private void reject(int line){
+		rejected++;
+		if(rejectedLines.size() < REJECTED_LINES){
+			rejectedLines.add(line);
+		}
+	}
+
+	/**
+	 * Parser reads the records of the input and passes them on in chunks.
+	 * Malformed records are passed on as null, so they are rejected.
+	 */
+	private static class Parser {
+
+		private BlockingQueue<Chunk> parsed;
+		private Semaphore chunks;
+		private Chunk chunk;
+		private int sequence;
+
+		Parser(BlockingQueue<Chunk> parsed, Semaphore chunks){
+			this.parsed = parsed;
+			this.chunks = chunks;
+		}
+
+		/**
+		 * Reads CSV records. A quoted field may contain commas and
+		 * line breaks, two double quotes stand for one double quote.
+		 *
+		 * @param in the input
+		 */
+		void parseCsv(BufferedReader in) throws IOException, InterruptedException {
+			List<String> fields = new ArrayList<String>();
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false; // Inside a quoted part of the field
+			boolean header = true; // The first record might be the header
+			int line = 1;
+			int start = 1; // Line of the current record
+			int previous = -1;
+			for(int c = in.read(); c != -1; previous = c, c = in.read()){
+				if(quoted){
+					if(c == '"'){
+						quoted = false;
+					} else {
+						field.append((char)c);
+						if(c == '\n'){
+							line++;
+						}
+					}
+				} else if(c == '"'){
+					if(previous == '"'){
+						field.append('"'); // An escaped quote
+					}
+					quoted = true;
+				} else if(c == ','){
+					fields.add(field.toString().trim());
+					field.setLength(0);
+				} else if(c == '\n'){
+					if(!fields.isEmpty() || field.toString().trim().length() > 0){
+						fields.add(field.toString().trim());
+						header = emitCsv(fields, start, header);
+					}
+					fields.clear();
+					field.setLength(0);
+					start = ++line;
+				} else if(c != '\r'){
+					field.append((char)c);
+				}
+			}
+			if(!fields.isEmpty() || field.toString().trim().length() > 0){
+				fields.add(field.toString().trim());
+				emitCsv(fields, start, header);
+			}
+			end();
+		}
+
+		/**
+		 * Passes on a CSV record, unless it is the header
+		 *
+		 * @param fields fields of the record
+		 * @param line line number of the record
+		 * @param first true if it is the first record
+		 * @return false, so later records are never taken for the header
+		 */
+		private boolean emitCsv(List<String> fields, int line, boolean first) throws InterruptedException {
+			if(first && fields.size() == InsuranceCompanyDAO.FIELD_NAMES.length){
+				boolean header = true;
+				for(int i = 0; i < InsuranceCompanyDAO.FIELD_NAMES.length; i++){
+					header &= fields.get(i).equalsIgnoreCase(InsuranceCompanyDAO.FIELD_NAMES[i]);
+				}
+				if(header){
+					return false;
+				}
+			}
+			emit(fields.toArray(new String[fields.size()]), line);
+			return false;
+		}
+
+		/**
+		 * Reads JSON lines, every non-blank line is an object
+		 *
+		 * @param in the input
+		 */
+		void parseJsonLines(BufferedReader in) throws IOException, InterruptedException {
+			int line = 0;
+			for(String text = in.readLine(); text != null; text = in.readLine()){
+				line++;
+				if(text.trim().length() > 0){
+					emit(parseJson(text), line);
+				}
+			}
+			end();
+		}
+
+		/**
+		 * Parses a JSON object with string, number or literal values.
+		 * Unknown keys are ignored, missing keys are null.
+		 *
+		 * @param text the object
+		 * @return String array with the record, or null if the object is malformed
+		 */
+		static String[] parseJson(String text){
+			String[] record = new String[InsuranceCompanyDAO.FIELD_NAMES.length];
+			int[] position = { 0 };
+			try {
+				expect(text, position, '{');
+				if(peek(text, position) == '}'){
+					position[0]++;
+				} else {
+					while(true){
+						String key = parseString(text, position);
+						expect(text, position, ':');
+						String value = peek(text, position) == '"' ? parseString(text, position) : parseLiteral(text, position);
+						int field = Arrays.asList(InsuranceCompanyDAO.FIELD_NAMES).indexOf(key);
+						if(field != -1){
+							record[field] = value == null ? null : value.trim();
+						}
+						if(peek(text, position) == ','){
+							position[0]++;
+						} else {
+							expect(text, position, '}');
+							break;
+						}
+					}
+				}
+				if(position[0] < text.length() && text.substring(position[0]).trim().length() > 0){
+					return null; // Something follows the object
+				}
+			} catch (IllegalArgumentException e) {
+				return null;
+			} catch (IndexOutOfBoundsException e) {
+				return null;
+			}
+			return record;
+		}
+
+		/**
+		 * Skips white space and gets the next character
+		 *
+		 * @param text JSON text
+		 * @param position current position, which is moved
+		 * @return the next character
+		 */
+		private static char peek(String text, int[] position){
+			while(Character.isWhitespace(text.charAt(position[0]))){
+				position[0]++;
+			}
+			return text.charAt(position[0]);
+		}
+
+		/**
+		 * Skips white space and the given character
+		 *
+		 * @param text JSON text
+		 * @param position current position, which is moved
+		 * @param c expected character
+		 */
+		private static void expect(String text, int[] position, char c){
+			if(peek(text, position) != c){
+				throw new IllegalArgumentException("Expected " + c);
+			}
+			position[0]++;
+		}
+
+		/**
+		 * Parses a JSON string
+		 *
+		 * @param text JSON text
+		 * @param position current position, which is moved
+		 * @return the unescaped string
+		 */
+		private static String parseString(String text, int[] position){
+			expect(text, position, '"');
+			StringBuilder sb = new StringBuilder();
+			for(char c = text.charAt(position[0]++); c != '"'; c = text.charAt(position[0]++)){
+				if(c == '\\'){
+					c = text.charAt(position[0]++);
+					switch(c){
+						case 'b': sb.append('\b'); break;
+						case 'f': sb.append('\f'); break;
+						case 'n': sb.append('\n'); break;
+						case 'r': sb.append('\r'); break;
+						case 't': sb.append('\t'); break;
+						case 'u':
+							sb.append((char)Integer.parseInt(text.substring(position[0], position[0] + 4), 16));
+							position[0] += 4;
+							break;
+						default: sb.append(c); // Quote, backslash and slash
+					}
+				} else {
+					sb.append(c);
+				}
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Parses a JSON number, true, false or null
+		 *
+		 * @param text JSON text
+		 * @param position current position, which is moved
+		 * @return the literal's text, or null for null
+		 */
+		private static String parseLiteral(String text, int[] position){
+			peek(text, position);
+			int start = position[0];
+			while(position[0] < text.length() && "-+.eE0123456789truefalsn".indexOf(text.charAt(position[0])) != -1){
+				position[0]++;
+			}
+			String literal = text.substring(start, position[0]);
+			if(literal.length() == 0){
+				throw new IllegalArgumentException("Expected a value");
+			}
+			return literal.equals("null") ? null : literal;
+		}
+
+		/**
+		 * Adds a record to the current chunk and passes the chunk on once it is full
+		 *
+		 * @param record the record, null if it is malformed
+		 * @param line line number of the record
+		 */
+		private void emit(String[] record, int line) throws InterruptedException {
+			if(chunk == null){
+				chunks.acquire(); // Waits until the writer has caught up
+				chunk = new Chunk(sequence++);
+			}
+			chunk.records[chunk.size] = record;
+			chunk.lines[chunk.size] = line;
+			chunk.size++;
+			if(chunk.size == CHUNK_SIZE){
+				parsed.put(chunk);
+				chunk = null;
+			}
+		}
+
+		/**
+		 * Passes on the last chunk
+		 */
+		private void end() throws InterruptedException {
+			if(chunk != null){
+				parsed.put(chunk);
+				chunk = null;
+			}
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -5,22 +5,45 @@ import org.insurancedb.view.gui.InsuranceCompanyEditPanelObserver;
 import org.insurancedb.view.gui.InsuranceCompanyTableObserver;
 import org.insurancedb.view.gui.InsuranceCompanyErrorObserver;
 import java.util.*;
+import java.io.*;
 
 /**
  * InsuranceCompanyModel represents the main business logic and data.
  * It implements the InsuranceCompanyModelInterface. It uses the Strategy Pattern
  * to hold a sorting strategy and Observer Pattern to notify registered Observers (View).
+ * <p>
+ * If the system property insurancedb.model is set to paged, only the record
+ * identifiers are held in memory. InsuranceCompanies are then loaded on demand
+ * and only a bounded working set of them is kept, which is sized by the system
+ * property insurancedb.workingset. Searches are answered by the database.
+ * <p>
+ * If it is set to offheap, the InsuranceCompanies are kept outside of the Java
+ * heap, so the garbage collector doesn't have to scan them. Like in paged mode,
+ * there are no sort indexes then, as they hold an object per InsuranceCompany.
+ * <p>
+ * Otherwise the model maintains a sort index for every sorting strategy
+ * which was requested once, so sorting the InsuranceCompanies again is never
+ * necessary. Sorting strategies are told apart by their class.
  * 
  * @see InsuranceCompanyModelInterface
  * @see InsuranceCompany
  */
 public class InsuranceCompanyModel implements InsuranceCompanyModelInterface {
+
+	// Paged mode, set by the system property insurancedb.model
+	private static final boolean PAGED_MODE = System.getProperty("insurancedb.model", "").equals("paged");
+	// Off-heap mode, set by the system property insurancedb.model
+	private static final boolean OFF_HEAP_MODE = System.getProperty("insurancedb.model", "").equals("offheap");
+	// InsuranceCompanies kept in paged mode, set by the system property insurancedb.workingset
+	private static final int WORKING_SET_SIZE = Integer.getInteger("insurancedb.workingset", 10000);
 	
 	private InsuranceCompanyDAO dao;
 	private InsuranceCompany currentInsuranceCompany; // InsuranceCompany which is selected
 	private Comparator<InsuranceCompany> sortingStrategy;
 	private Map<Integer, InsuranceCompany> insuranceCompanies;
 	private Map<Integer, InsuranceCompany> searchMap;
+	private InsuranceCompanyWorkingSet workingSet; // Only used in paged mode
+	private Map<Object, InsuranceCompanySortIndex> sortIndexes = new HashMap<Object, InsuranceCompanySortIndex>(); // Sort index by comparator class
 
 	private ArrayList<Object> insuranceCompanyEditPanelObservers = new ArrayList<Object>();
 	private ArrayList<Object> insuranceCompanyTableObservers = new ArrayList<Object>();
@@ -41,22 +64,19 @@ public class InsuranceCompanyModel implements InsuranceCompanyModelInterface {
 	/**
 	 * The initialize method uses the data access object to
 	 * retreive all InsuranceCompany records of the database.
-	 * It then creates InsuranceCompany objects and stores them
-	 * in a map with a unique identifier.
+	 * They are stored in an InsuranceCompanyStore, which keeps
+	 * their data in columns instead of one object per record, or
+	 * in an off-heap arena in off-heap mode. In paged mode only the record identifiers are retreived.
 	 */
 	private void initialize(){
-		TreeMap<Integer, InsuranceCompany> tempInsuranceCompanies = new TreeMap<Integer, InsuranceCompany>();
-		int i = 0;
-		for(String[] bits : dao.readAllRecords()){
-			// Read string arrays, create insurance companies and add them to the treemap
-			if(bits != null){
-				InsuranceCompany ic = InsuranceCompany.createInsuranceCompany(++i,bits[0],bits[1],bits[2],bits[3],Float.parseFloat(bits[4]),bits[5]);
-				tempInsuranceCompanies.put(i, ic);
-			} else {
-				i++;
-			}
+		if(PAGED_MODE){
+			workingSet = new InsuranceCompanyWorkingSet(dao, Math.max(WORKING_SET_SIZE, 1));
+			insuranceCompanies = new InsuranceCompanyPagedMap(workingSet, dao.readRecordNumbers());
+			return;
 		}
-		insuranceCompanies = tempInsuranceCompanies;
+
+		// The store is synchronized, which allows background searches while the companies are edited
+		insuranceCompanies = new InsuranceCompanyStore(dao.readAllRecords(), OFF_HEAP_MODE);
 	}
 
 	/**
@@ -111,7 +131,7 @@ public class InsuranceCompanyModel implements InsuranceCompanyModelInterface {
 	 * Adds an InsuranceCompany record to the database and to
 	 * the InsuranceCompanies map. After adding a new InsuranceCompany
 	 * it automatically becomes currentInsuranceCompany and the method
-	 * notifies all Table observers.
+	 * notifies all Table observers of the insert.
 	 *
 	 * @param data String array containing InsuranceCompany raw data
 	 */
@@ -121,10 +141,15 @@ public class InsuranceCompanyModel implements InsuranceCompanyModelInterface {
 			int i = dao.addRecord(data);
 			// Add it to map with the appropriate id
 			if(i != -1){
-				InsuranceCompany ic = InsuranceCompany.createInsuranceCompany(i,data[0],data[1],data[2],data[3],Float.parseFloat(data[4]),data[5]);
-				insuranceCompanies.put(i, ic);
+				insuranceCompanies.put(i, InsuranceCompany.createInsuranceCompany(i,data[0],data[1],data[2],data[3],Float.parseFloat(data[4]),data[5]));
+				InsuranceCompany ic = insuranceCompanies.get(i); // The stored InsuranceCompany
+				for(InsuranceCompanySortIndex sortIndex : sortIndexes.values()){
+					sortIndex.add(ic);
+				}
 				currentInsuranceCompany = ic;
-				notifyInsuranceCompanyTableObservers();
+				notifyInsuranceCompanyTableObservers(new InsuranceCompanyChangeEvent(InsuranceCompanyChangeEvent.INSERTED, ic, null));
+			} else {
+				notifyInsuranceCompanyErrorObservers(new IOException("InsuranceCompany could not be written to the database"));
 			}
 		} catch (DuplicateIndexException e) {
 			notifyInsuranceCompanyErrorObservers(e);
@@ -135,21 +160,39 @@ public class InsuranceCompanyModel implements InsuranceCompanyModelInterface {
 	 * Updates a record accord to the given arguments i and data.
 	 * It first updates the record in the database and, if successful, then reads
 	 * the updated record from the database in, to create a new InsuranceCompany object.
-	 * Finally all Table observers are notified.
+	 * The sort indexes drop the InsuranceCompany before the map is changed, as the
+	 * stored InsuranceCompany shows the new values afterwards.
+	 * Finally all Table observers are notified of the update.
 	 *
 	 * @param i unique InsuranceCompany identifier
 	 * @param data String array containing InsuranceCompany raw data
 	 */
 	public void updateInsuranceCompany(int i, String[] data){
 		try {
+			InsuranceCompany previousInsuranceCompany = insuranceCompanies.get(i);
+			if(previousInsuranceCompany != null){
+				previousInsuranceCompany = previousInsuranceCompany.copy(); // Keep the previous values
+			}
 			// Update record
 			dao.updateRecord(i, data);
 			// Read record, create new InsuranceCompany instance and overwrite old InsuranceCompany in map
 			String[] bits = readInsuranceCompany(i);
-			InsuranceCompany insuranceCompany = InsuranceCompany.createInsuranceCompany(i,bits[0],bits[1],bits[2],bits[3],Float.parseFloat(bits[4]),bits[5]);
-			insuranceCompanies.put(i, insuranceCompany);
+			for(InsuranceCompanySortIndex sortIndex : sortIndexes.values()){
+				if(previousInsuranceCompany != null){
+					sortIndex.remove(previousInsuranceCompany);
+				}
+			}
+			insuranceCompanies.put(i, InsuranceCompany.createInsuranceCompany(i,bits[0],bits[1],bits[2],bits[3],Float.parseFloat(bits[4]),bits[5]));
+			InsuranceCompany insuranceCompany = insuranceCompanies.get(i); // The stored InsuranceCompany
+			for(InsuranceCompanySortIndex sortIndex : sortIndexes.values()){
+				sortIndex.add(insuranceCompany);
+			}
 			// Notify all table observers
-			notifyInsuranceCompanyTableObservers();
+			if(previousInsuranceCompany != null){
+				notifyInsuranceCompanyTableObservers(new InsuranceCompanyChangeEvent(InsuranceCompanyChangeEvent.UPDATED, insuranceCompany, previousInsuranceCompany));
+			} else {
+				notifyInsuranceCompanyTableObservers();
+			}
 		} catch (RecordNotFoundException e) {
 			notifyInsuranceCompanyErrorObservers(e);
 		}
@@ -157,60 +200,187 @@ public class InsuranceCompanyModel implements InsuranceCompanyModelInterface {
 
 	/**
 	 * Deletes an InsuranceCompany from the database and from the map.
-	 * Notifies all Table observers.
+	 * Notifies all Table observers of the delete.
 	 *
 	 * @param i unique InsuranceCompany identifier
 	 */
 	public void deleteInsuranceCompany(int i){
 		try {
+			InsuranceCompany previousInsuranceCompany = insuranceCompanies.get(i);
+			if(previousInsuranceCompany != null){
+				previousInsuranceCompany = previousInsuranceCompany.copy(); // Keep the previous values
+			}
 			// Remove it from db
 			dao.deleteRecord(i);
-			// Remove it from map
+			// Remove it from the sort indexes and the map
+			if(previousInsuranceCompany != null){
+				for(InsuranceCompanySortIndex sortIndex : sortIndexes.values()){
+					sortIndex.remove(previousInsuranceCompany);
+				}
+			}
 			insuranceCompanies.remove(i);
-			notifyInsuranceCompanyTableObservers();
+			if(previousInsuranceCompany != null){
+				notifyInsuranceCompanyTableObservers(new InsuranceCompanyChangeEvent(InsuranceCompanyChangeEvent.DELETED, null, previousInsuranceCompany));
+			} else {
+				notifyInsuranceCompanyTableObservers();
+			}
+			renumber();
 		} catch (RecordNotFoundException e) {
 			notifyInsuranceCompanyErrorObservers(e);
 		}
 	}
 
 	/**
-	 * Retreives a search query String. It parses the String,
-	 * calls the data access object and passes the parsed search
-	 * critera and boolean search argument (1 for OR, 0 for AND).
-	 * It then populates the models searchMap.
+	 * Applies a batch of adds, updates and deletes to the database and to
+	 * the InsuranceCompanies map. The Table observers are notified once for
+	 * the whole batch. Adds of duplicates which the batch skips get the
+	 * identifier -1. If the batch fails or can't be written, the error observers
+	 * are notified. The column and B+-tree databases might have applied a part
+	 * of it, so all InsuranceCompanies are read again.
+	 * If the database renumbers its records afterwards, the returned identifiers
+	 * of adds and updates are the new ones.
 	 *
-	 * @param query search query String
+	 * @param batch the writes
+	 * @return identifier of every operation in the order of the batch, or null if it failed
 	 */
-	public void searchInsuranceCompanies(String query){
+	public int[] applyBatch(WriteBatch batch){
+		try {
+			int[] ids = dao.applyBatch(batch);
+			if(ids == null){
+				reload();
+				notifyInsuranceCompanyErrorObservers(new IOException("The batch could not be written to the database"));
+				return null;
+			}
+			for(int n = 0; n < batch.size(); n++){
+				int i = ids[n];
+				if(i == -1){
+					continue; // A skipped duplicate
+				}
+				// Drop the previous values from the sort indexes
+				InsuranceCompany previousInsuranceCompany = sortIndexes.isEmpty() ? null : insuranceCompanies.get(i);
+				if(previousInsuranceCompany != null){
+					previousInsuranceCompany = previousInsuranceCompany.copy();
+					for(InsuranceCompanySortIndex sortIndex : sortIndexes.values()){
+						sortIndex.remove(previousInsuranceCompany);
+					}
+				}
+				if(batch.getType(n) == WriteBatch.DELETE){
+					insuranceCompanies.remove(i);
+				} else {
+					String[] data = batch.getData(n);
+					insuranceCompanies.put(i, InsuranceCompany.createInsuranceCompany(i,data[0],data[1],data[2],data[3],Float.parseFloat(data[4]),data[5]));
+					InsuranceCompany insuranceCompany = insuranceCompanies.get(i); // The stored InsuranceCompany
+					for(InsuranceCompanySortIndex sortIndex : sortIndexes.values()){
+						sortIndex.add(insuranceCompany);
+					}
+				}
+			}
+			notifyInsuranceCompanyTableObservers();
+			int[] remap = renumber();
+			if(remap != null){
+				for(int n = 0; n < batch.size(); n++){
+					if(ids[n] > 0 && ids[n] < remap.length && batch.getType(n) != WriteBatch.DELETE){
+						ids[n] = remap[ids[n]];
+					}
+				}
+			}
+			return ids;
+		} catch (RecordNotFoundException e) {
+			reload();
+			notifyInsuranceCompanyErrorObservers(e);
+		} catch (DuplicateIndexException e) {
+			reload();
+			notifyInsuranceCompanyErrorObservers(e);
+		}
+		return null;
+	}
 
-		// Parse the criteria and store them in ArrayList
-		int bool = 1;
-		query = query.trim();
-		query = query.toLowerCase();
-		String[] criteria = query.split(" ");
-		ArrayList<String> slicedCriteria = new ArrayList<String>();
-		for(String s : criteria){
-			if(s.equals("and")){
-				bool = 0;
-			} else if(s.equals("or")){
-				bool = 1;
+	/**
+	 * Lets the database renumber its records once enough of them are
+	 * deleted. All InsuranceCompanies are read again with their new
+	 * identifiers, the selected and the searched ones are moved along.
+	 *
+	 * @return new identifier at the index of every old identifier, 0 for deleted ones, or null if nothing was renumbered
+	 */
+	private int[] renumber(){
+		int[] remap = dao.renumber();
+		if(remap == null){
+			return null;
+		}
+		int currentId = currentInsuranceCompany != null ? currentInsuranceCompany.getId() : 0;
+		sortIndexes.clear();
+		initialize();
+		currentInsuranceCompany = currentId > 0 && currentId < remap.length ? insuranceCompanies.get(remap[currentId]) : null;
+		if(searchMap != null){
+			int[] ids = new int[searchMap.size()];
+			int n = 0;
+			for(int id : searchMap.keySet()){
+				if(id < remap.length && remap[id] > 0){
+					ids[n++] = remap[id]; // Renumbering keeps the order of the records
+				}
+			}
+			ids = Arrays.copyOf(ids, n);
+			if(PAGED_MODE){
+				searchMap = new InsuranceCompanyPagedMap(workingSet, ids);
 			} else {
-				slicedCriteria.add(s);
+				searchMap = new TreeMap<Integer, InsuranceCompany>();
+				for(int id : ids){
+					searchMap.put(id, insuranceCompanies.get(id));
+				}
 			}
 		}
+		notifyInsuranceCompanyTableObservers();
+		notifyInsuranceCompanyEditPanelObservers();
+		return remap;
+	}
 
-		// Create a String array from the ArrayList slicedCriteria
-		String[] newCriteria = new String[slicedCriteria.size()];
-		newCriteria = slicedCriteria.toArray(newCriteria);
+	/**
+	 * Reads all InsuranceCompanies again and rebuilds the table
+	 */
+	private void reload(){
+		sortIndexes.clear();
+		initialize();
+		if(currentInsuranceCompany != null){
+			currentInsuranceCompany = insuranceCompanies.get(currentInsuranceCompany.getId());
+		}
+		notifyInsuranceCompanyTableObservers();
+	}
 
-		// Call the data access obect search method
-		int[] ids = dao.findRecords(newCriteria, bool);
+	/**
+	 * Retreives a search query String. It parses the String
+	 * and populates the models searchMap with all matching
+	 * InsuranceCompanies.
+	 *
+	 * @param query search query String
+	 */
+	public void searchInsuranceCompanies(String query){
+		searchMap = findInsuranceCompanies(InsuranceCompanyQuery.parse(query));
+	}
+
+	/**
+	 * Finds all InsuranceCompanies matching a parsed search query.
+	 * The query is evaluated against the InsuranceCompanies in memory,
+	 * so the database is not touched. In paged mode the database
+	 * finds the matching records instead, which are then loaded on demand.
+	 * Unlike searchInsuranceCompanies, it doesn't change the models searchMap.
+	 *
+	 * @param query parsed search query
+	 * @return map with all matching InsuranceCompanies
+	 */
+	public Map<Integer, InsuranceCompany> findInsuranceCompanies(InsuranceCompanyQuery query){
+
+		if(PAGED_MODE){
+			return new InsuranceCompanyPagedMap(workingSet, dao.findRecords(query.getCriteria(), query.getBool()));
+		}
 
 		// Populate search list
-		searchMap = new TreeMap<Integer, InsuranceCompany>();
-		for(int i : ids){
-			searchMap.put(i, getInsuranceCompany(i));
+		Map<Integer, InsuranceCompany> result = new TreeMap<Integer, InsuranceCompany>();
+		for(InsuranceCompany insuranceCompany : insuranceCompanies.values()){
+			if(query.matches(insuranceCompany)){
+				result.put(insuranceCompany.getId(), insuranceCompany);
+			}
 		}
+		return result;
 
 	}
 
@@ -251,6 +421,28 @@ public class InsuranceCompanyModel implements InsuranceCompanyModelInterface {
 		return sortingStrategy;
 	}
 
+	/**
+	 * Gets the sort index of the InsuranceCompanies for a comparator.
+	 * The index is created by the first call and is then kept up to date
+	 * on every change. It is not available in paged and off-heap mode,
+	 * as it holds every InsuranceCompany.
+	 *
+	 * @param comparator Comparator<InsuranceCompany>, null for the natural order
+	 * @return the sort index, or null in paged and off-heap mode
+	 */
+	public InsuranceCompanySortIndex getSortIndex(Comparator<InsuranceCompany> comparator){
+		if(PAGED_MODE || OFF_HEAP_MODE){
+			return null;
+		}
+		Object key = comparator == null ? InsuranceCompany.class : comparator.getClass();
+		InsuranceCompanySortIndex sortIndex = sortIndexes.get(key);
+		if(sortIndex == null){
+			sortIndex = new InsuranceCompanySortIndex(comparator, insuranceCompanies.values());
+			sortIndexes.put(key, sortIndex);
+		}
+		return sortIndex;
+	}
+
 	/**
 	 * Register a new EditPanel observer
 	 *
@@ -313,6 +505,18 @@ public class InsuranceCompanyModel implements InsuranceCompanyModelInterface {
 		}
 	}
 
+	/**
+	 * Notify all Table observers of a single change
+	 *
+	 * @param event the change
+	 */
+	public void notifyInsuranceCompanyTableObservers(InsuranceCompanyChangeEvent event){
+		for(int i = 0; i < insuranceCompanyTableObservers.size(); i++){
+			InsuranceCompanyTableObserver observer = (InsuranceCompanyTableObserver)insuranceCompanyTableObservers.get(i);
+			observer.updateTable(event);
+		}
+	}
+
 	/**
 	 * Register a new Error observer
 	 *
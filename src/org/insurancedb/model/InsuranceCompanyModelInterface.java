@@ -1,5 +1,6 @@
 package org.insurancedb.model;
 
+import org.insurancedb.data.WriteBatch;
 import org.insurancedb.view.gui.InsuranceCompanyEditPanelObserver;
 import org.insurancedb.view.gui.InsuranceCompanyTableObserver;
 import org.insurancedb.view.gui.InsuranceCompanyErrorObserver;
@@ -27,12 +28,18 @@ public interface InsuranceCompanyModelInterface {
 
 	public void deleteInsuranceCompany(int i);
 
+	public int[] applyBatch(WriteBatch batch);
+
 	public void searchInsuranceCompanies(String query);
 
+	public Map<Integer, InsuranceCompany> findInsuranceCompanies(InsuranceCompanyQuery query);
+
 	public void setSortingStrategy(Comparator<InsuranceCompany> comparator);
 
 	public Comparator<InsuranceCompany> getSortingStrategy();
 
+	public InsuranceCompanySortIndex getSortIndex(Comparator<InsuranceCompany> comparator);
+
 	public Map<Integer, InsuranceCompany> getSearchMap();
 
 	public Map<Integer, InsuranceCompany> getInsuranceCompanies();
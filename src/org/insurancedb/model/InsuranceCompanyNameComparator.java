@@ -6,11 +6,12 @@ import java.util.*;
  * InsuranceCompanyNameComparator implements the Comparator interface
  * and compares to InsuranceCompany objects according to their company
  * name. It implements the compareTo algorithm of String to provide
- * lexicographical ordering.
+ * lexicographical ordering. The company name is its sort key.
  * 
  * @see Comparator
+ * @see InsuranceCompanySortKey
  */
-public class InsuranceCompanyNameComparator implements Comparator<InsuranceCompany> {
+public class InsuranceCompanyNameComparator implements Comparator<InsuranceCompany>, InsuranceCompanySortKey<String> {
 
 	/**
 	 * Compares two InsuranceCompany objects according to their company
@@ -21,9 +22,27 @@ public class InsuranceCompanyNameComparator implements Comparator<InsuranceCompa
 	 * @return returns -1 if the first InsuranceCompany preceeds the other, else -1. 0 if they are equal.
 	 */
 	public int compare(InsuranceCompany ic1, InsuranceCompany ic2){
-		String name1 = ic1.getCompanyName();
-		String name2 = ic2.getCompanyName();
+		return compareSortKeys(getSortKey(ic1), getSortKey(ic2));
+	}
 
+	/**
+	 * Gets the company name of an InsuranceCompany
+	 *
+	 * @param insuranceCompany the InsuranceCompany
+	 * @return its company name
+	 */
+	public String getSortKey(InsuranceCompany insuranceCompany){
+		return insuranceCompany.getCompanyName();
+	}
+
+	/**
+	 * Compares two company names
+	 *
+	 * @param name1 First company name
+	 * @param name2 Second company name
+	 * @return returns -1 if the first name preceeds the other, else 1. 0 if they are equal.
+	 */
+	public int compareSortKeys(String name1, String name2){
 		if(name1.compareTo(name2) > 0){
 			return -1;
 		} else if(name2.compareTo(name1) > 0){
@@ -0,0 +1,183 @@
+package org.insurancedb.model;
+
+import java.util.*;
+
+/**
+ * InsuranceCompanyPagedMap is a map of InsuranceCompanies which only holds
+ * their identifiers. The InsuranceCompanies are loaded on demand through an
+ * InsuranceCompanyWorkingSet, when they are requested by get() or reached
+ * while iterating. Iteration follows the order of the identifiers.
+ * <p>
+ * The memory needed is one bit per record number, so the map works with
+ * databases which don't fit into the heap. put() and remove() keep the
+ * identifiers and the working set up to date. Unlike a regular map, put()
+ * doesn't return the previous value, as that would mean loading it.
+ *
+ * @see InsuranceCompanyWorkingSet
+ * @see InsuranceCompanyModel
+ */
+class InsuranceCompanyPagedMap extends AbstractMap<Integer, InsuranceCompany> {
+
+	private InsuranceCompanyWorkingSet workingSet;
+	private BitSet ids = new BitSet();
+	private int size;
+
+	/**
+	 * Sets up the map with the given identifiers
+	 *
+	 * @param workingSet working set to load InsuranceCompanies from
+	 * @param recNos identifiers of the InsuranceCompanies
+	 */
+	InsuranceCompanyPagedMap(InsuranceCompanyWorkingSet workingSet, int[] recNos) {
+		this.workingSet = workingSet;
+		for(int recNo : recNos){
+			ids.set(recNo);
+		}
+		size = ids.cardinality();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(Object key) {
+		return key instanceof Integer && (Integer)key > 0 && ids.get((Integer)key);
+	}
+
+	public InsuranceCompany get(Object key) {
+		if(!containsKey(key)){
+			return null;
+		}
+		return workingSet.get((Integer)key);
+	}
+
+	public InsuranceCompany put(Integer key, InsuranceCompany value) {
+		if(!ids.get(key)){
+			ids.set(key);
+			size++;
+		}
+		workingSet.put(value);
+		return null;
+	}
+
+	public InsuranceCompany remove(Object key) {
+		if(containsKey(key)){
+			ids.clear((Integer)key);
+			size--;
+			workingSet.remove((Integer)key);
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the identifiers of the map. Unlike the entries,
+	 * iterating them doesn't load any InsuranceCompany.
+	 *
+	 * @return Set view of the identifiers
+	 */
+	public Set<Integer> keySet() {
+		return new AbstractSet<Integer>() {
+			public int size() {
+				return size;
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			public Iterator<Integer> iterator() {
+				return new Iterator<Integer>() {
+					private int next = ids.nextSetBit(0);
+					private int last = -1;
+
+					public boolean hasNext() {
+						return next >= 0;
+					}
+
+					public Integer next() {
+						if(next < 0){
+							throw new NoSuchElementException();
+						}
+						last = next;
+						next = ids.nextSetBit(next + 1);
+						return last;
+					}
+
+					public void remove() {
+						if(last < 0){
+							throw new IllegalStateException();
+						}
+						InsuranceCompanyPagedMap.this.remove(last);
+						last = -1;
+					}
+				};
+			}
+		};
+	}
+
+	public Set<Map.Entry<Integer, InsuranceCompany>> entrySet() {
+		return new AbstractSet<Map.Entry<Integer, InsuranceCompany>>() {
+			public int size() {
+				return size;
+			}
+
+			public Iterator<Map.Entry<Integer, InsuranceCompany>> iterator() {
+				return new EntryIterator();
+			}
+		};
+	}
+
+	/**
+	 * EntryIterator walks the identifiers in ascending order and loads
+	 * each InsuranceCompany when it is reached. Records which were deleted
+	 * from the database in the meantime are skipped.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<Integer, InsuranceCompany>> {
+
+		private int next = ids.nextSetBit(0);
+		private InsuranceCompany nextValue = load();
+		private int last = -1;
+
+		/**
+		 * Loads the InsuranceCompany of the next identifier,
+		 * skipping identifiers without record
+		 *
+		 * @return the next InsuranceCompany, or null at the end
+		 */
+		private InsuranceCompany load() {
+			while(next >= 0){
+				InsuranceCompany insuranceCompany = workingSet.get(next);
+				if(insuranceCompany != null){
+					return insuranceCompany;
+				}
+				next = ids.nextSetBit(next + 1);
+			}
+			return null;
+		}
+
+		public boolean hasNext() {
+			return nextValue != null;
+		}
+
+		public Map.Entry<Integer, InsuranceCompany> next() {
+			if(nextValue == null){
+				throw new NoSuchElementException();
+			}
+			Map.Entry<Integer, InsuranceCompany> entry = new AbstractMap.SimpleImmutableEntry<Integer, InsuranceCompany>(next, nextValue);
+			last = next;
+			next = ids.nextSetBit(next + 1);
+			nextValue = load();
+			return entry;
+		}
+
+		public void remove() {
+			if(last < 0){
+				throw new IllegalStateException();
+			}
+			InsuranceCompanyPagedMap.this.remove(last);
+			last = -1;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -5,11 +5,12 @@ import java.util.*;
 /**
  * InsuranceCompanyNameComparator implements the Comparator interface
  * and compares to InsuranceCompany objects according to their broker
- * percentage.
+ * percentage. The broker percentage is its sort key.
  * 
  * @see Comparator
+ * @see InsuranceCompanySortKey
  */
-public class InsuranceCompanyPercentageComparator implements Comparator<InsuranceCompany> {
+public class InsuranceCompanyPercentageComparator implements Comparator<InsuranceCompany>, InsuranceCompanySortKey<Float> {
 
 	/**
 	 * Compares two InsuranceCompany objects according to their broker
@@ -20,9 +21,38 @@ public class InsuranceCompanyPercentageComparator implements Comparator<Insuranc
 	 * @return returns -1 if the first percentage is higher, else -1. 0 if they are equal.
 	 */
 	public int compare(InsuranceCompany ic1, InsuranceCompany ic2){
-		float percentage1 = ic1.getPercentage();
-		float percentage2 = ic2.getPercentage();
+		return compare(ic1.getPercentage(), ic2.getPercentage());
+	}
+
+	/**
+	 * Gets the broker percentage of an InsuranceCompany
+	 *
+	 * @param insuranceCompany the InsuranceCompany
+	 * @return its broker percentage
+	 */
+	public Float getSortKey(InsuranceCompany insuranceCompany){
+		return insuranceCompany.getPercentage();
+	}
+
+	/**
+	 * Compares two broker percentages
+	 *
+	 * @param percentage1 First broker percentage
+	 * @param percentage2 Second broker percentage
+	 * @return returns 1 if the first percentage is higher, else -1. 0 if they are equal.
+	 */
+	public int compareSortKeys(Float percentage1, Float percentage2){
+		return compare(percentage1.floatValue(), percentage2.floatValue());
+	}
 
+	/**
+	 * Compares two broker percentages without boxing them
+	 *
+	 * @param percentage1 First broker percentage
+	 * @param percentage2 Second broker percentage
+	 * @return returns 1 if the first percentage is higher, else -1. 0 if they are equal.
+	 */
+	private int compare(float percentage1, float percentage2){
 		if(percentage1 > percentage2){
 			return 1;
 		} else if(percentage2 > percentage1){
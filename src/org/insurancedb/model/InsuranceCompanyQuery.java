@@ -0,0 +1,124 @@
+package org.insurancedb.model;
+
+import org.insurancedb.data.DAO;
+import java.util.*;
+
+/**
+ * InsuranceCompanyQuery is a parsed search query on insurance types.
+ * The query String consists of search criteria separated by spaces.
+ * The keywords "and" and "or" set the boolean search argument, OR is the default.
+ * <p>
+ * A criterion matches an InsuranceCompany if one of its insurance types
+ * contains the criterion, ignoring case.
+ *
+ * @see InsuranceCompanyModel
+ */
+public class InsuranceCompanyQuery {
+
+	private String[] criteria;
+	private int bool;
+
+	/**
+	 * Private constructor, can only be invoked from static method parse
+	 *
+	 * @param criteria lower case search criteria
+	 * @param bool int either 0(AND) or 1(OR) as search argument
+	 */
+	private InsuranceCompanyQuery(String[] criteria, int bool){
+		this.criteria = criteria;
+		this.bool = bool;
+	}
+
+	/**
+	 * Parses a search query String
+	 *
+	 * @param query search query String
+	 * @return the parsed InsuranceCompanyQuery
+	 */
+	public static InsuranceCompanyQuery parse(String query){
+
+		// Parse the criteria and store them in ArrayList
+		int bool = DAO.OR;
+		query = query.trim();
+		query = query.toLowerCase();
+		ArrayList<String> slicedCriteria = new ArrayList<String>();
+		for(String s : query.split(" ")){
+			if(s.equals("and")){
+				bool = DAO.AND;
+			} else if(s.equals("or")){
+				bool = DAO.OR;
+			} else {
+				slicedCriteria.add(s);
+			}
+		}
+
+		return new InsuranceCompanyQuery(slicedCriteria.toArray(new String[slicedCriteria.size()]), bool);
+	}
+
+	/**
+	 * Gets the search criteria
+	 *
+	 * @return String array with lower case search criteria
+	 */
+	public String[] getCriteria(){
+		return criteria.clone();
+	}
+
+	/**
+	 * Gets the boolean search argument
+	 *
+	 * @return int either 0(AND) or 1(OR)
+	 */
+	public int getBool(){
+		return bool;
+	}
+
+	/**
+	 * Checks if every result of this query is also a result of a previous query.
+	 * That is the case if the boolean argument is the same and every previous criterion
+	 * got longer, e.g. while typing, or if an AND query got additional criteria.
+	 *
+	 * @param previous previous query
+	 * @return true if the results of this query can be filtered from the previous results
+	 */
+	public boolean refines(InsuranceCompanyQuery previous){
+		if(previous.bool != bool || criteria.length < previous.criteria.length){
+			return false;
+		}
+		if(bool == DAO.OR && criteria.length != previous.criteria.length){
+			return false; // An additional OR criterion widens the result
+		}
+		for(int i = 0; i < previous.criteria.length; i++){
+			if(!criteria[i].contains(previous.criteria[i])){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if an InsuranceCompany matches the query
+	 *
+	 * @param insuranceCompany InsuranceCompany to check
+	 * @return true if the InsuranceCompany matches
+	 */
+	public boolean matches(InsuranceCompany insuranceCompany){
+		String[] tokens = insuranceCompany.getInsuranceTypeTokens();
+		for(String criterion : criteria){
+			boolean contains = false;
+			for(String token : tokens){
+				if(token.contains(criterion)){
+					contains = true;
+					break;
+				}
+			}
+			if(contains && bool == DAO.OR){
+				return true;
+			} else if(!contains && bool == DAO.AND){
+				return false;
+			}
+		}
+		return bool == DAO.AND;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,293 @@
+package org.insurancedb.model;
+
+import java.util.*;
+
+/**
+ * InsuranceCompanySortIndex keeps InsuranceCompanies sorted by a comparator.
+ * It is an order-statistic tree, every node knows the size of its subtree,
+ * so the InsuranceCompany at a position and the position of an InsuranceCompany
+ * are found in O(log n). Adding and removing an InsuranceCompany is O(log n)
+ * as well, so the index never has to be sorted again.
+ * <p>
+ * The tree is a randomized binary search tree. Where a new node ends up and
+ * how two subtrees are joined is decided randomly, weighted by the subtree
+ * sizes, which keeps the tree balanced with high probability.
+ * <p>
+ * InsuranceCompanies which are equal according to the comparator are
+ * ordered by their identifier. Without comparator they are only ordered
+ * by their identifier.
+ *
+ * @see InsuranceCompanyModel
+ */
+public class InsuranceCompanySortIndex {
+
+	private Comparator<InsuranceCompany> comparator;
+	private Node root;
+	private Random random = new Random();
+
+	/**
+	 * Node holds an InsuranceCompany and the size of its subtree
+	 */
+	private static class Node {
+
+		private InsuranceCompany value;
+		private Node left;
+		private Node right;
+		private int size = 1;
+
+		Node(InsuranceCompany value){
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * Creates the index of the given InsuranceCompanies. They are sorted
+	 * once and the tree is built balanced from the sorted array.
+	 *
+	 * @param comparator InsuranceCompany Comparator, null for the natural order
+	 * @param insuranceCompanies InsuranceCompanies to index
+	 */
+	InsuranceCompanySortIndex(Comparator<InsuranceCompany> comparator, Collection<InsuranceCompany> insuranceCompanies){
+		this.comparator = comparator;
+		InsuranceCompany[] sorted = insuranceCompanies.toArray(new InsuranceCompany[0]);
+		Arrays.sort(sorted, new Comparator<InsuranceCompany>() {
+			public int compare(InsuranceCompany ic1, InsuranceCompany ic2){
+				return InsuranceCompanySortIndex.this.compare(ic1, ic2);
+			}
+		});
+		root = build(sorted, 0, sorted.length);
+	}
+
+	/**
+	 * Gets the number of indexed InsuranceCompanies
+	 *
+	 * @return number of InsuranceCompanies
+	 */
+	public int size(){
+		return size(root);
+	}
+
+	/**
+	 * Gets the InsuranceCompany at a position
+	 *
+	 * @param position position in ascending order, starting at 0
+	 * @return the InsuranceCompany
+	 */
+	public InsuranceCompany get(int position){
+		if(position < 0 || position >= size()){
+			throw new IndexOutOfBoundsException(String.valueOf(position));
+		}
+		Node node = root;
+		while(true){
+			int leftSize = size(node.left);
+			if(position < leftSize){
+				node = node.left;
+			} else if(position > leftSize){
+				position -= leftSize + 1;
+				node = node.right;
+			} else {
+				return node.value;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of indexed InsuranceCompanies which are sorted before
+	 * the given one. That is its position if it is indexed, otherwise
+	 * the position it would be inserted at.
+	 *
+	 * @param insuranceCompany InsuranceCompany to find
+	 * @return number of smaller InsuranceCompanies
+	 */
+	public int rank(InsuranceCompany insuranceCompany){
+		int rank = 0;
+		Node node = root;
+		while(node != null){
+			int result = compare(insuranceCompany, node.value);
+			if(result < 0){
+				node = node.left;
+			} else {
+				rank += size(node.left);
+				if(result == 0){
+					break;
+				}
+				rank++;
+				node = node.right;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Compares two InsuranceCompanies by the comparator, companies
+	 * which are equal to it are compared by their identifier
+	 *
+	 * @param ic1 First InsuranceCompany
+	 * @param ic2 Second InsuranceCompany
+	 * @return negative, zero or positive like Comparator.compare
+	 */
+	public int compare(InsuranceCompany ic1, InsuranceCompany ic2){
+		int result = comparator == null ? 0 : comparator.compare(ic1, ic2);
+		return result != 0 ? result : ic1.compareTo(ic2);
+	}
+
+	/**
+	 * Adds an InsuranceCompany
+	 *
+	 * @param insuranceCompany the new InsuranceCompany
+	 */
+	void add(InsuranceCompany insuranceCompany){
+		root = insert(root, insuranceCompany);
+	}
+
+	/**
+	 * Removes an InsuranceCompany. It must be the indexed
+	 * object, or one which is equal to it in every sorted value.
+	 *
+	 * @param insuranceCompany the removed InsuranceCompany
+	 */
+	void remove(InsuranceCompany insuranceCompany){
+		root = remove(root, insuranceCompany);
+	}
+
+	/**
+	 * Builds a balanced subtree of a sorted range
+	 *
+	 * @param sorted sorted InsuranceCompanies
+	 * @param from first index of the range
+	 * @param to index after the range
+	 * @return root of the subtree
+	 */
+	private Node build(InsuranceCompany[] sorted, int from, int to){
+		if(from >= to){
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		Node node = new Node(sorted[middle]);
+		node.left = build(sorted, from, middle);
+		node.right = build(sorted, middle + 1, to);
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Inserts an InsuranceCompany into a subtree. It becomes the root
+	 * of the subtree with probability 1 / (size + 1), like every other node.
+	 *
+	 * @param node root of the subtree
+	 * @param value the new InsuranceCompany
+	 * @return new root of the subtree
+	 */
+	private Node insert(Node node, InsuranceCompany value){
+		if(node == null || random.nextInt(node.size + 1) == 0){
+			Node[] parts = split(node, value);
+			Node newNode = new Node(value);
+			newNode.left = parts[0];
+			newNode.right = parts[1];
+			update(newNode);
+			return newNode;
+		}
+		if(compare(value, node.value) < 0){
+			node.left = insert(node.left, value);
+		} else {
+			node.right = insert(node.right, value);
+		}
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Splits a subtree into the InsuranceCompanies sorted before and after a value
+	 *
+	 * @param node root of the subtree
+	 * @param value value to split at
+	 * @return the roots of both parts
+	 */
+	private Node[] split(Node node, InsuranceCompany value){
+		if(node == null){
+			return new Node[2];
+		}
+		Node[] parts;
+		if(compare(node.value, value) < 0){
+			parts = split(node.right, value);
+			node.right = parts[0];
+			parts[0] = node;
+		} else {
+			parts = split(node.left, value);
+			node.left = parts[1];
+			parts[1] = node;
+		}
+		update(node);
+		return parts;
+	}
+
+	/**
+	 * Removes an InsuranceCompany from a subtree
+	 *
+	 * @param node root of the subtree
+	 * @param value the removed InsuranceCompany
+	 * @return new root of the subtree
+	 */
+	private Node remove(Node node, InsuranceCompany value){
+		if(node == null){
+			return null;
+		}
+		int result = compare(value, node.value);
+		if(result == 0){
+			return join(node.left, node.right);
+		} else if(result < 0){
+			node.left = remove(node.left, value);
+		} else {
+			node.right = remove(node.right, value);
+		}
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Joins two subtrees, every value of the first one is smaller than
+	 * every value of the second one. The root is taken from either subtree
+	 * with a probability according to its size.
+	 *
+	 * @param left root of the first subtree
+	 * @param right root of the second subtree
+	 * @return root of the joined subtree
+	 */
+	private Node join(Node left, Node right){
+		if(left == null){
+			return right;
+		} else if(right == null){
+			return left;
+		}
+		if(random.nextInt(left.size + right.size) < left.size){
+			left.right = join(left.right, right);
+			update(left);
+			return left;
+		} else {
+			right.left = join(left, right.left);
+			update(right);
+			return right;
+		}
+	}
+
+	/**
+	 * Recalculates the size of a node's subtree
+	 *
+	 * @param node the node
+	 */
+	private void update(Node node){
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+
+	/**
+	 * Gets the size of a subtree
+	 *
+	 * @param node root of the subtree, may be null
+	 * @return number of nodes
+	 */
+	private static int size(Node node){
+		return node == null ? 0 : node.size;
+	}
+
+}
\ No newline at end of file
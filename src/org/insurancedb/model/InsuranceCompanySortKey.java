@@ -0,0 +1,32 @@
+package org.insurancedb.model;
+
+/**
+ * InsuranceCompanySortKey is implemented by sorting strategies which
+ * order InsuranceCompanies by a single value. A sort key is much smaller
+ * than its InsuranceCompany, so a table can sort the identifiers with
+ * their keys and doesn't have to keep all InsuranceCompanies, which
+ * the paged mode can't hold in memory.
+ *
+ * @see InsuranceCompanyNameComparator
+ * @see InsuranceCompanyPercentageComparator
+ */
+public interface InsuranceCompanySortKey<K> {
+
+	/**
+	 * Gets the value an InsuranceCompany is sorted by
+	 *
+	 * @param insuranceCompany the InsuranceCompany
+	 * @return its sort key
+	 */
+	public K getSortKey(InsuranceCompany insuranceCompany);
+
+	/**
+	 * Compares two sort keys in the order of the sorting strategy
+	 *
+	 * @param key1 First sort key
+	 * @param key2 Second sort key
+	 * @return negative, zero or positive like Comparator.compare
+	 */
+	public int compareSortKeys(K key1, K key2);
+
+}
\ No newline at end of file
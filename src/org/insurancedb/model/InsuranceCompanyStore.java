@@ -0,0 +1,547 @@
+package org.insurancedb.model;
+
+import java.util.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * InsuranceCompanyStore holds the data of all InsuranceCompanies in columns
+ * instead of one object per company. Every company has a slot, which is its
+ * position in the columns:
+ * <ul>
+ * <li>ids, an int per slot, 0 for unused slots
+ * <li>percentages, a float per slot
+ * <li>insurance types, an int code per slot. Every distinct insurance types
+ * value is kept only once, together with its search tokens
+ * <li>texts, one byte array per slot with the UTF-8 encoded name,
+ * telephone, website and description
+ * </ul>
+ * An IntSlotMap finds the slot of an identifier and the slots of deleted
+ * companies are reused.
+ * <p>
+ * Off the heap, the texts and insurance types are kept in an
+ * InsuranceCompanyArena instead, in the row format of the text database,
+ * and a column holds the offset of every company's row. Fields are then
+ * decoded whenever they are read, only the percentages stay in their column
+ * for sorting. The columns are primitive arrays,
+ * so the garbage collector has no objects per company to trace. The arena
+ * is compacted once more than half of it is taken by old rows.
+ * <p>
+ * The store is a Map of InsuranceCompanies ordered by their identifier.
+ * get() and iterating return flyweight InsuranceCompanies, which only know
+ * their slot and read their values from the store. Like the paged map, put()
+ * and remove() don't return the previous value. A flyweight shows the changes
+ * of its company, once the company is deleted its values are empty.
+ * <p>
+ * All methods are synchronized, so background searches can read the store
+ * while it is changed.
+ *
+ * @see InsuranceCompany
+ * @see InsuranceCompanyArena
+ * @see IntSlotMap
+ * @see InsuranceCompanyModel
+ */
+class InsuranceCompanyStore extends AbstractMap<Integer, InsuranceCompany> {
+
+	static final int NAME		 = 0;
+	static final int TELEPHONE	 = 1;
+	static final int URL		 = 2;
+	static final int DESCRIPTION = 3;
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final String[] NO_TOKENS = new String[0];
+	private static final int[] ARENA_FIELDS = { InsuranceCompanyArena.NAME, InsuranceCompanyArena.TELEPHONE,
+												InsuranceCompanyArena.URL, InsuranceCompanyArena.DESCRIPTION };
+	private static final int MIN_GARBAGE = 1024 * 1024; // Bytes of old rows before the arena is compacted
+
+	// Pool to encode the records on startup in parallel
+	private static final ForkJoinPool LOADER_POOL = new ForkJoinPool();
+
+	private IntSlotMap slots = new IntSlotMap(); // Identifier to slot
+	private BitSet liveIds = new BitSet(); // Identifiers in ascending order, for iterating
+	private int[] ids = new int[16];
+	private float[] percentages = new float[16];
+	private int[] types; // Only used on the heap
+	private byte[][] texts; // Only used on the heap
+	private int[] offsets; // Only used off the heap
+	private InsuranceCompanyArena arena; // Rows off the heap, null on the heap
+	private int slotCount; // Slots used so far, including free ones
+	private int[] freeSlots = new int[16];
+	private int freeCount;
+
+	// Interned insurance types values, unused values are kept
+	private ArrayList<String> typeValues = new ArrayList<String>();
+	private HashMap<String, Integer> typeCodes = new HashMap<String, Integer>();
+	private ArrayList<String[]> typeTokens = new ArrayList<String[]>(); // Created on first search
+
+	/**
+	 * Creates a store with the given records. The record at index n
+	 * gets identifier n + 1 and slot n, null records are skipped.
+	 * On the heap the records are encoded in parallel, off the heap
+	 * they are appended to the arena one after the other.
+	 *
+	 * @param records List of String arrays with all records
+	 * @param offHeap true to keep the records in an off-heap arena
+	 */
+	InsuranceCompanyStore(List<String[]> records, boolean offHeap) {
+		if(offHeap){
+			arena = new InsuranceCompanyArena(0);
+			offsets = new int[16];
+		} else {
+			types = new int[16];
+			texts = new byte[16][];
+		}
+		int n = records.size();
+		grow(n);
+		if(arena == null){
+			LOADER_POOL.invoke(new EncodeTask(records, 0, n));
+		}
+		for(int slot = 0; slot < n; slot++){
+			String[] bits = records.get(slot);
+			if(bits != null){
+				if(arena != null){
+					ids[slot] = slot + 1;
+					percentages[slot] = Float.parseFloat(bits[4]);
+					offsets[slot] = arena.append(bits);
+				} else {
+					types[slot] = intern(bits[3]);
+				}
+				slots.put(slot + 1, slot);
+				liveIds.set(slot + 1);
+			} else {
+				pushFreeSlot(slot); // Deleted records leave a free slot
+			}
+		}
+		slotCount = n;
+	}
+
+	/**
+	 * EncodeTask encodes the records of a range of slots. Big ranges are
+	 * split in two halves, which are encoded in parallel. Only the columns
+	 * of the task's own slots are written.
+	 */
+	private class EncodeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final int THRESHOLD = 8192; // Records encoded by a single task
+
+		private List<String[]> records;
+		private int from;
+		private int to;
+
+		EncodeTask(List<String[]> records, int from, int to){
+			this.records = records;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute(){
+			if(to - from > THRESHOLD){
+				int middle = (from + to) >>> 1;
+				invokeAll(new EncodeTask(records, from, middle),
+						  new EncodeTask(records, middle, to));
+				return;
+			}
+			for(int slot = from; slot < to; slot++){
+				String[] bits = records.get(slot);
+				if(bits != null){
+					ids[slot] = slot + 1;
+					percentages[slot] = Float.parseFloat(bits[4]);
+					texts[slot] = encode(bits[0], bits[1], bits[2], bits[5]);
+				}
+			}
+		}
+
+	}
+
+	public synchronized int size() {
+		return slots.size();
+	}
+
+	public synchronized boolean containsKey(Object key) {
+		return key instanceof Integer && (Integer)key > 0 && slots.get((Integer)key) != -1;
+	}
+
+	public synchronized InsuranceCompany get(Object key) {
+		if(!containsKey(key)){
+			return null;
+		}
+		int id = (Integer)key;
+		return new InsuranceCompany(this, slots.get(id), id);
+	}
+
+	public synchronized InsuranceCompany put(Integer key, InsuranceCompany value) {
+		// Read all values first, the value might be a flyweight of the same slot
+		String name = value.getCompanyName();
+		String telephone = value.getTelephone();
+		String url = value.getUrl();
+		String insuranceTypes = value.getInsuranceTypes();
+		float percentage = value.getPercentage();
+		String description = value.getGeneralDescription();
+
+		int id = key;
+		int slot = slots.get(id);
+		if(slot == -1){
+			slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+			grow(slotCount);
+			slots.put(id, slot);
+			liveIds.set(id);
+		} else if(arena != null){
+			arena.free(offsets[slot]);
+		}
+		ids[slot] = id;
+		percentages[slot] = percentage;
+		if(arena != null){
+			offsets[slot] = arena.append(new String[] { name, telephone, url, insuranceTypes, String.valueOf(percentage), description });
+			compact();
+		} else {
+			types[slot] = intern(insuranceTypes);
+			texts[slot] = encode(name, telephone, url, description);
+		}
+		return null;
+	}
+
+	public synchronized InsuranceCompany remove(Object key) {
+		if(!containsKey(key)){
+			return null;
+		}
+		int id = (Integer)key;
+		int slot = slots.remove(id);
+		liveIds.clear(id);
+		ids[slot] = 0;
+		if(arena != null){
+			arena.free(offsets[slot]);
+			compact();
+		} else {
+			texts[slot] = null;
+		}
+		pushFreeSlot(slot);
+		return null;
+	}
+
+	/**
+	 * Gets the identifiers of the store, without creating InsuranceCompanies
+	 *
+	 * @return Set view of the identifiers
+	 */
+	public Set<Integer> keySet() {
+		return new AbstractSet<Integer>() {
+			public int size() {
+				return InsuranceCompanyStore.this.size();
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			public Iterator<Integer> iterator() {
+				return new IdIterator<Integer>() {
+					Integer value(int id) {
+						return id;
+					}
+				};
+			}
+		};
+	}
+
+	public Set<Map.Entry<Integer, InsuranceCompany>> entrySet() {
+		return new AbstractSet<Map.Entry<Integer, InsuranceCompany>>() {
+			public int size() {
+				return InsuranceCompanyStore.this.size();
+			}
+
+			public Iterator<Map.Entry<Integer, InsuranceCompany>> iterator() {
+				return new IdIterator<Map.Entry<Integer, InsuranceCompany>>() {
+					Map.Entry<Integer, InsuranceCompany> value(int id) {
+						InsuranceCompany insuranceCompany = get(id);
+						return insuranceCompany == null ? null : new AbstractMap.SimpleImmutableEntry<Integer, InsuranceCompany>(id, insuranceCompany);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * IdIterator walks the identifiers in ascending order. The element of
+	 * the next identifier is created in advance while the store is locked,
+	 * so identifiers which are deleted while iterating are skipped and
+	 * next() never returns an element of a deleted identifier.
+	 */
+	private abstract class IdIterator<T> implements Iterator<T> {
+
+		private int next;
+		private T nextValue = load(0);
+		private int last = -1;
+
+		/**
+		 * Creates the element of an identifier. It is called
+		 * while the store is locked.
+		 *
+		 * @param id unique InsuranceCompany identifier
+		 * @return the element, or null if there is none
+		 */
+		abstract T value(int id);
+
+		/**
+		 * Creates the element of the next identifier
+		 *
+		 * @param from smallest identifier to return
+		 * @return the element, or null at the end
+		 */
+		private T load(int from) {
+			synchronized(InsuranceCompanyStore.this){
+				for(next = liveIds.nextSetBit(from); next >= 0; next = liveIds.nextSetBit(next + 1)){
+					T value = value(next);
+					if(value != null){
+						return value;
+					}
+				}
+				return null;
+			}
+		}
+
+		public boolean hasNext() {
+			return nextValue != null;
+		}
+
+		public T next() {
+			if(nextValue == null){
+				throw new NoSuchElementException();
+			}
+			T value = nextValue;
+			last = next;
+			nextValue = load(next + 1);
+			return value;
+		}
+
+		public void remove() {
+			if(last < 0){
+				throw new IllegalStateException();
+			}
+			InsuranceCompanyStore.this.remove(last);
+			last = -1;
+		}
+
+	}
+
+	/**
+	 * Gets a text field of a flyweight
+	 *
+	 * @param slot slot of the InsuranceCompany
+	 * @param id identifier of the InsuranceCompany
+	 * @param field NAME, TELEPHONE, URL or DESCRIPTION
+	 * @return the field's value, empty if the InsuranceCompany was deleted
+	 */
+	synchronized String getText(int slot, int id, int field) {
+		if(ids[slot] != id){
+			return "";
+		}
+		if(arena != null){
+			return arena.getString(offsets[slot], ARENA_FIELDS[field]);
+		}
+		byte[] text = texts[slot];
+		int position = 0;
+		for(int i = 0; i < field; i++){
+			int length = readLength(text, position);
+			position += lengthSize(length) + length;
+		}
+		int length = readLength(text, position);
+		return new String(text, position + lengthSize(length), length, CHARSET);
+	}
+
+	/**
+	 * Gets the percentage of a flyweight
+	 *
+	 * @param slot slot of the InsuranceCompany
+	 * @param id identifier of the InsuranceCompany
+	 * @return broker percentage, 0 if the InsuranceCompany was deleted
+	 */
+	synchronized float getPercentage(int slot, int id) {
+		return ids[slot] == id ? percentages[slot] : 0;
+	}
+
+	/**
+	 * Gets the insurance types of a flyweight
+	 *
+	 * @param slot slot of the InsuranceCompany
+	 * @param id identifier of the InsuranceCompany
+	 * @return insurance types String, empty if the InsuranceCompany was deleted
+	 */
+	synchronized String getInsuranceTypes(int slot, int id) {
+		if(ids[slot] != id){
+			return "";
+		}
+		return arena != null ? arena.getString(offsets[slot], InsuranceCompanyArena.INSURANCE_TYPES) : typeValues.get(types[slot]);
+	}
+
+	/**
+	 * Gets the search tokens of a flyweight. On the heap the tokens are
+	 * created once for every distinct insurance types value, off the heap
+	 * they are created on every call.
+	 *
+	 * @param slot slot of the InsuranceCompany
+	 * @param id identifier of the InsuranceCompany
+	 * @return lower case insurance type tokens
+	 */
+	synchronized String[] getInsuranceTypeTokens(int slot, int id) {
+		if(ids[slot] != id){
+			return NO_TOKENS;
+		}
+		if(arena != null){
+			return InsuranceCompany.tokenize(arena.getString(offsets[slot], InsuranceCompanyArena.INSURANCE_TYPES));
+		}
+		int code = types[slot];
+		String[] tokens = typeTokens.get(code);
+		if(tokens == null){
+			tokens = InsuranceCompany.tokenize(typeValues.get(code));
+			typeTokens.set(code, tokens);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Gets the code of an insurance types value, it is added if it's new
+	 *
+	 * @param insuranceTypes insurance types String
+	 * @return code of the value
+	 */
+	private int intern(String insuranceTypes) {
+		Integer code = typeCodes.get(insuranceTypes);
+		if(code == null){
+			code = typeValues.size();
+			typeValues.add(insuranceTypes);
+			typeTokens.add(null);
+			typeCodes.put(insuranceTypes, code);
+		}
+		return code;
+	}
+
+	/**
+	 * Makes the columns big enough for a number of slots
+	 *
+	 * @param capacity number of slots
+	 */
+	private void grow(int capacity) {
+		if(capacity > ids.length){
+			int newCapacity = Math.max(capacity, ids.length * 2);
+			ids = Arrays.copyOf(ids, newCapacity);
+			percentages = Arrays.copyOf(percentages, newCapacity);
+			if(arena != null){
+				offsets = Arrays.copyOf(offsets, newCapacity);
+			} else {
+				types = Arrays.copyOf(types, newCapacity);
+				texts = Arrays.copyOf(texts, newCapacity);
+			}
+		}
+	}
+
+	/**
+	 * Compacts the arena if more than half of it are old rows.
+	 * The rows of all companies are copied into a new arena.
+	 */
+	private void compact() {
+		int garbage = arena.getGarbage();
+		if(garbage >= MIN_GARBAGE && garbage * 2L > arena.getSize()){
+			InsuranceCompanyArena compacted = new InsuranceCompanyArena(arena.getSize() - garbage);
+			for(int slot = 0; slot < slotCount; slot++){
+				if(ids[slot] != 0){
+					offsets[slot] = compacted.copy(arena, offsets[slot]);
+				}
+			}
+			arena = compacted;
+		}
+	}
+
+	/**
+	 * Marks a slot as free, so it can be reused
+	 *
+	 * @param slot the free slot
+	 */
+	private void pushFreeSlot(int slot) {
+		if(freeCount == freeSlots.length){
+			freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+		}
+		freeSlots[freeCount++] = slot;
+	}
+
+	/**
+	 * Encodes the text fields of a company into one byte array.
+	 * Every field is prefixed with its length.
+	 *
+	 * @param name company name
+	 * @param telephone telephone number
+	 * @param url website
+	 * @param description general description
+	 * @return the encoded fields
+	 */
+	private static byte[] encode(String name, String telephone, String url, String description) {
+		byte[][] fields = { name.getBytes(CHARSET), telephone.getBytes(CHARSET), url.getBytes(CHARSET), description.getBytes(CHARSET) };
+		int size = 0;
+		for(byte[] field : fields){
+			size += lengthSize(field.length) + field.length;
+		}
+		byte[] text = new byte[size];
+		int position = 0;
+		for(byte[] field : fields){
+			position = writeLength(text, position, field.length);
+			System.arraycopy(field, 0, text, position, field.length);
+			position += field.length;
+		}
+		return text;
+	}
+
+	/**
+	 * Gets the number of bytes of an encoded length. Lengths are
+	 * encoded with 7 bits per byte, the high bit marks another byte.
+	 *
+	 * @param length the length
+	 * @return number of bytes
+	 */
+	private static int lengthSize(int length) {
+		int size = 1;
+		while(length >= 0x80){
+			length >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes an encoded length
+	 *
+	 * @param text array to write to
+	 * @param position position of the length
+	 * @param length the length
+	 * @return position after the length
+	 */
+	private static int writeLength(byte[] text, int position, int length) {
+		while(length >= 0x80){
+			text[position++] = (byte)(length | 0x80);
+			length >>>= 7;
+		}
+		text[position++] = (byte)length;
+		return position;
+	}
+
+	/**
+	 * Reads an encoded length
+	 *
+	 * @param text array to read from
+	 * @param position position of the length
+	 * @return the length
+	 */
+	private static int readLength(byte[] text, int position) {
+		int length = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = text[position++];
+			length |= (b & 0x7f) << shift;
+			shift += 7;
+		} while(b < 0);
+		return length;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package org.insurancedb.model;
+
+import java.util.regex.Pattern;
+
+/**
+ * InsuranceCompanyValidator checks the raw data of an InsuranceCompany
+ * before it is written to the database. The view checks edited companies
+ * with it and the importer checks every imported record, so both follow
+ * the same rules:
+ * <ul>
+ * <li>all six fields are given and none of them is blank
+ * <li>no field contains ":", which separates the fields in the database,
+ * or a line break, which separates the records
+ * <li>the broker percentage is a decimal number
+ * </ul>
+ *
+ * @see InsuranceCompanyImporter
+ */
+public class InsuranceCompanyValidator {
+
+	public static final int FIELDS = 6; // Fields of a record
+
+	private static final Pattern PERCENTAGE = Pattern.compile("(-|\\+)?[0-9]+(\\.[0-9]+)?");
+
+	/**
+	 * Checks the raw data of an InsuranceCompany
+	 *
+	 * @param data String array containing InsuranceCompany raw data
+	 * @return true if the data can be saved
+	 */
+	public static boolean isValid(String[] data) {
+		if(data == null || data.length != FIELDS){
+			return false;
+		}
+		for(String field : data){
+			if(field == null || field.equals("") || field.indexOf(':') != -1 || field.indexOf('\n') != -1 || field.indexOf('\r') != -1){
+				return false;
+			}
+		}
+		return PERCENTAGE.matcher(data[4]).matches();
+	}
+
+}
\ No newline at end of file
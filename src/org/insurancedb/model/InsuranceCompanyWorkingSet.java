@@ -0,0 +1,89 @@
+package org.insurancedb.model;
+
+import org.insurancedb.data.*;
+import java.util.*;
+
+/**
+ * InsuranceCompanyWorkingSet loads InsuranceCompany objects on demand
+ * through the data access object and keeps the recently used ones.
+ * The working set is bounded, the least recently used InsuranceCompany
+ * is dropped once it is full.
+ * <p>
+ * It is shared by the paged maps of the model and may be used by the
+ * background search, so all methods are synchronized.
+ *
+ * @see InsuranceCompanyPagedMap
+ * @see InsuranceCompanyModel
+ */
+class InsuranceCompanyWorkingSet {
+
+	private InsuranceCompanyDAO dao;
+	private int capacity;
+	private LinkedHashMap<Integer, InsuranceCompany> insuranceCompanies;
+
+	/**
+	 * Sets up an empty working set
+	 *
+	 * @param dao data access object to load InsuranceCompanies from
+	 * @param capacity maximum number of kept InsuranceCompanies
+	 */
+	InsuranceCompanyWorkingSet(InsuranceCompanyDAO dao, int capacity) {
+		this.dao = dao;
+		this.capacity = capacity;
+		// Access order, so the eldest entry is the least recently used one
+		insuranceCompanies = new LinkedHashMap<Integer, InsuranceCompany>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Integer, InsuranceCompany> eldest) {
+				return size() > InsuranceCompanyWorkingSet.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets an InsuranceCompany, it is read from the database if
+	 * it isn't part of the working set
+	 *
+	 * @param i unique InsuranceCompany identifier
+	 * @return the InsuranceCompany, or null if the record doesn't exist
+	 */
+	synchronized InsuranceCompany get(int i) {
+		InsuranceCompany insuranceCompany = insuranceCompanies.get(i);
+		if(insuranceCompany == null){
+			try {
+				String[] bits = dao.readRecord(i);
+				insuranceCompany = InsuranceCompany.createInsuranceCompany(i,bits[0],bits[1],bits[2],bits[3],Float.parseFloat(bits[4]),bits[5]);
+				insuranceCompanies.put(i, insuranceCompany);
+			} catch (RecordNotFoundException e) {
+				return null; // Deleted in the meantime
+			}
+		}
+		return insuranceCompany;
+	}
+
+	/**
+	 * Adds a new or changed InsuranceCompany to the working set
+	 *
+	 * @param insuranceCompany the InsuranceCompany
+	 */
+	synchronized void put(InsuranceCompany insuranceCompany) {
+		insuranceCompanies.put(insuranceCompany.getId(), insuranceCompany);
+	}
+
+	/**
+	 * Removes an InsuranceCompany from the working set
+	 *
+	 * @param i unique InsuranceCompany identifier
+	 */
+	synchronized void remove(int i) {
+		insuranceCompanies.remove(i);
+	}
+
+	/**
+	 * Gets the number of InsuranceCompanies in the working set
+	 *
+	 * @return number of kept InsuranceCompanies
+	 */
+	synchronized int size() {
+		return insuranceCompanies.size();
+	}
+
+}
\ No newline at end of file
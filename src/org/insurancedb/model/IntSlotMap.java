@@ -0,0 +1,73 @@
+package org.insurancedb.model;
+
+import org.insurancedb.util.LongIntHashTable;
+
+/**
+ * IntSlotMap maps positive int keys to int slots without boxing.
+ * The entries are kept in a LongIntHashTable, which only holds
+ * positive values, so every slot is stored incremented by one.
+ *
+ * @see InsuranceCompanyStore
+ * @see LongIntHashTable
+ */
+class IntSlotMap {
+
+	private LongIntHashTable table = new LongIntHashTable();
+
+	/**
+	 * Gets the number of keys
+	 *
+	 * @return number of keys
+	 */
+	int size() {
+		return table.size();
+	}
+
+	/**
+	 * Gets the value of a key
+	 *
+	 * @param key positive key
+	 * @return the value, or -1 if the key is not in the map
+	 */
+	int get(int key) {
+		int value = table.get(key);
+		return value != -1 ? value - 1 : -1;
+	}
+
+	/**
+	 * Sets the value of a key
+	 *
+	 * @param key positive key
+	 * @param value new value, not negative
+	 */
+	void put(int key, int value) {
+		if(key <= 0){
+			throw new IllegalArgumentException("Key must be positive: " + key);
+		}
+		remove(key);
+		table.add(key, value + 1);
+	}
+
+	/**
+	 * Removes a key
+	 *
+	 * @param key positive key
+	 * @return the removed value, or -1 if the key was not in the map
+	 */
+	int remove(int key) {
+		int value = table.get(key);
+		if(value == -1){
+			return -1;
+		}
+		table.remove(key, value);
+		return value - 1;
+	}
+
+	/**
+	 * Removes all keys
+	 */
+	void clear() {
+		table.clear();
+	}
+
+}
\ No newline at end of file
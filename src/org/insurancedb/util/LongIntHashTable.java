@@ -0,0 +1,214 @@
+package org.insurancedb.util;
+
+import java.util.Arrays;
+
+/**
+ * LongIntHashTable holds pairs of a long key and an int value without boxing.
+ * A key can have several values, but every pair is kept only once. Keys and
+ * values are stored in two arrays with open addressing and linear probing.
+ * Removed pairs are not marked, the following entries of the probe sequence
+ * are shifted back instead, so lookups never have to skip deleted entries.
+ * <p>
+ * Values must be positive, as 0 marks an unused entry.
+ *
+ * @see org.insurancedb.data.InsuranceCompanyColumnDAO
+ * @see org.insurancedb.data.InsuranceCompanyDuplicateIndex
+ */
+public class LongIntHashTable {
+
+	private static final int FREE = 0; // Value of an unused entry, so values must be positive
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys = new long[MIN_CAPACITY];
+	private int[] values = new int[MIN_CAPACITY];
+	private int size;
+
+	/**
+	 * Gets the number of pairs
+	 *
+	 * @return number of pairs
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the first value of a key
+	 *
+	 * @param key the key
+	 * @return the value, or -1 if the key is not in the table
+	 */
+	public int get(long key) {
+		int mask = keys.length - 1;
+		for(int i = slot(key, mask); values[i] != FREE; i = (i + 1) & mask){
+			if(keys[i] == key){
+				return values[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets all values of a key
+	 *
+	 * @param key the key
+	 * @return the values in no particular order
+	 */
+	public int[] find(long key) {
+		int[] found = new int[0];
+		int mask = keys.length - 1;
+		for(int i = slot(key, mask); values[i] != FREE; i = (i + 1) & mask){
+			if(keys[i] == key){
+				found = Arrays.copyOf(found, found.length + 1);
+				found[found.length - 1] = values[i];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Adds a pair, unless it is already in the table
+	 *
+	 * @param key the key
+	 * @param value positive value
+	 */
+	public void add(long key, int value) {
+		if(value <= FREE){
+			throw new IllegalArgumentException("Value must be positive: " + value);
+		}
+		if((size + 1) * 2 > keys.length){
+			resize(keys.length * 2); // Keep the table at most half full
+		}
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while(values[i] != FREE){
+			if(keys[i] == key && values[i] == value){
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+	}
+
+	/**
+	 * Removes a pair
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @return true if the pair was in the table
+	 */
+	public boolean remove(long key, int value) {
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while(keys[i] != key || values[i] != value){
+			if(values[i] == FREE){
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		size--;
+
+		// Shift back the following entries which can't be found anymore otherwise
+		int gap = i;
+		for(int j = (i + 1) & mask; values[j] != FREE; j = (j + 1) & mask){
+			int home = slot(keys[j], mask);
+			// Move the entry if its home isn't between the gap and its position
+			if(((j - home) & mask) >= ((j - gap) & mask)){
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		values[gap] = FREE;
+		return true;
+	}
+
+	/**
+	 * Removes all pairs
+	 */
+	public void clear() {
+		keys = new long[MIN_CAPACITY];
+		values = new int[MIN_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Gets the number of entries, used or not. Entries are
+	 * iterated from 0 to capacity() - 1 with isUsed(), getKey()
+	 * and getValue().
+	 *
+	 * @return number of entries
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Checks if an entry holds a pair
+	 *
+	 * @param entry position of the entry
+	 * @return true if the entry is used
+	 */
+	public boolean isUsed(int entry) {
+		return values[entry] != FREE;
+	}
+
+	/**
+	 * Gets the key of an entry
+	 *
+	 * @param entry position of a used entry
+	 * @return the key
+	 */
+	public long getKey(int entry) {
+		return keys[entry];
+	}
+
+	/**
+	 * Gets the value of an entry
+	 *
+	 * @param entry position of a used entry
+	 * @return the value
+	 */
+	public int getValue(int entry) {
+		return values[entry];
+	}
+
+	/**
+	 * Rehashes all entries into new arrays
+	 *
+	 * @param capacity new capacity, a power of two
+	 */
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		int mask = capacity - 1;
+		for(int k = 0; k < oldKeys.length; k++){
+			if(oldValues[k] != FREE){
+				int i = slot(oldKeys[k], mask);
+				while(values[i] != FREE){
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[k];
+				values[i] = oldValues[k];
+			}
+		}
+	}
+
+	/**
+	 * Gets the home slot of a key. The bits of the key are spread
+	 * first, as keys like record numbers are consecutive.
+	 *
+	 * @param key the key
+	 * @param mask capacity - 1
+	 * @return position of the slot
+	 */
+	private static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+package org.insurancedb.view.gui;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.awt.event.*;
+import javax.swing.*;
+import javax.swing.Timer;
+import org.insurancedb.model.*;
+import org.insurancedb.controller.*;
+
+/**
+ * InsuranceCompanySearch runs the view's incremental search in the background.
+ * Keystrokes are coalesced within a debounce window, the query then runs on a
+ * worker thread through the controller and only the result of the latest query
+ * is published back to the event dispatch thread.
+ * <p>
+ * If a query only narrows the previous query, e.g. because another letter was
+ * typed, the previous result is filtered instead of searching all companies again.
+ *
+ * @see InsuranceCompanyView
+ */
+class InsuranceCompanySearch {
+
+	private static final int DEBOUNCE_DELAY = 200; // Milliseconds without keystroke before a search starts
+
+	private ControllerInterface controller;
+	private InsuranceCompanyView view;
+	private Timer debounceTimer;
+	private ExecutorService worker;
+	private Future<?> running;
+	private String pendingQuery;
+	private volatile int generation; // Incremented for every query, so stale queries can be detected
+
+	// Last completed query and its result, only used for refining queries
+	private InsuranceCompanyQuery lastQuery;
+	private Map<Integer, InsuranceCompany> lastResult;
+
+	/**
+	 * Sets up the search for the given controller and view
+	 *
+	 * @param controller ControllerInterface which runs the queries
+	 * @param view InsuranceCompanyView to publish results to
+	 */
+	InsuranceCompanySearch(ControllerInterface controller, InsuranceCompanyView view) {
+		this.controller = controller;
+		this.view = view;
+
+		worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "InsuranceDB search");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		debounceTimer = new Timer(DEBOUNCE_DELAY, new ActionListener() {
+			public void actionPerformed(ActionEvent e){
+				start(pendingQuery);
+			}
+		});
+		debounceTimer.setRepeats(false);
+	}
+
+	/**
+	 * Schedules a search. Must be called on the event dispatch thread.
+	 *
+	 * @param query search query String
+	 */
+	void search(String query) {
+		pendingQuery = query;
+		debounceTimer.restart();
+	}
+
+	/**
+	 * Forgets the last result, so the next query searches all companies again.
+	 * Must be called whenever the model's companies change.
+	 */
+	synchronized void invalidate() {
+		generation++; // Results of running queries are outdated as well
+		lastQuery = null;
+		lastResult = null;
+	}
+
+	/**
+	 * Cancels the running query and starts a new one on the worker thread
+	 *
+	 * @param query search query String
+	 */
+	private void start(String query) {
+		final int queryGeneration = ++generation;
+		final InsuranceCompanyQuery parsedQuery = InsuranceCompanyQuery.parse(query);
+		if(running != null){
+			running.cancel(true);
+		}
+		running = worker.submit(new Runnable() {
+			public void run() {
+				final Map<Integer, InsuranceCompany> result = find(parsedQuery, queryGeneration);
+				if(result == null){
+					return; // A newer query was started
+				}
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if(queryGeneration == generation){
+							view.showSearchResult(result);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Finds all companies matching a query, by refining the last result if possible
+	 *
+	 * @param query parsed search query
+	 * @param queryGeneration generation of the query
+	 * @return map with all matching companies, or null if the query became stale
+	 */
+	private Map<Integer, InsuranceCompany> find(InsuranceCompanyQuery query, int queryGeneration) {
+		InsuranceCompanyQuery previousQuery;
+		Map<Integer, InsuranceCompany> previousResult;
+		synchronized(this){
+			previousQuery = lastQuery;
+			previousResult = lastResult;
+		}
+
+		Map<Integer, InsuranceCompany> result;
+		if(previousQuery != null && query.refines(previousQuery)){
+			result = new TreeMap<Integer, InsuranceCompany>();
+			int checked = 0;
+			for(Map.Entry<Integer, InsuranceCompany> entry : previousResult.entrySet()){
+				if(++checked % 1024 == 0 && queryGeneration != generation){
+					return null; // Give up early on stale queries
+				}
+				if(query.matches(entry.getValue())){
+					result.put(entry.getKey(), entry.getValue());
+				}
+			}
+		} else {
+			result = controller.searchInsuranceCompanies(query);
+		}
+
+		if(queryGeneration != generation){
+			return null;
+		}
+		synchronized(this){
+			lastQuery = query;
+			lastResult = result;
+		}
+		return result;
+	}
+
+}
\ No newline at end of file
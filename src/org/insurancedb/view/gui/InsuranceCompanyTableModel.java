@@ -7,14 +7,39 @@ import org.insurancedb.model.*;
 /**
  * InsuranceCompanyTableModel is the custom AbstractTableModel
  * for the InsuranceCompanyView. It implements the possibility of sorting.
+ * <p>
+ * The table model is virtual. It only keeps the sorted record identifiers,
+ * the cells of a row are formatted when the table asks for them. Only the
+ * recently shown rows are kept formatted, so the memory needed doesn't
+ * grow with the number of InsuranceCompanies.
+ * <p>
+ * If the model provides a sort index for the shown data, the rows are read
+ * from it by position and the table model keeps no order of its own.
+ * <p>
+ * Single changes are applied in place. The row of an InsuranceCompany is
+ * found in the sort index, or by a binary search in the sorted order, and
+ * only that row is inserted, deleted or moved.
  * 
  * @see AbstractTableModel
  * @see InsuranceCompanyView
  */
 class InsuranceCompanyTableModel extends AbstractTableModel {
+
+	private static final int VIEWPORT_ROWS = 256; // Formatted rows which are kept, a few screens full
 	
 	private String[] columnNames = {"ID","Company","Telephone","Website","Insurance Types","Broker Percentage"};
-	private ArrayList<String[]> insuranceCompanies;
+	private Map<Integer, InsuranceCompany> data;
+	private Comparator<InsuranceCompany> comparator;
+	private InsuranceCompanySortIndex sortIndex; // Sorted rows kept by the model, or null
+	private int[] order = new int[0]; // Record identifiers in the order of the rows
+	private int rows; // Used length of order
+
+	// Formatted rows by record identifier, the least recently shown row is dropped first
+	private LinkedHashMap<Integer, String[]> viewport = new LinkedHashMap<Integer, String[]>(16, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+			return size() > VIEWPORT_ROWS;
+		}
+	};
 	
 	/**
 	 * The constructor calls the table model's
@@ -41,7 +66,7 @@ class InsuranceCompanyTableModel extends AbstractTableModel {
 	 * @return int table rows
 	 */
 	public int getRowCount() {
-		return this.insuranceCompanies.size();
+		return sortIndex != null ? sortIndex.size() : this.rows;
 	}
 
 	/**
@@ -54,17 +79,57 @@ class InsuranceCompanyTableModel extends AbstractTableModel {
 	}
 
 	/**
-	 * Gets the value at a specific location
+	 * Gets the value at a specific location. The row
+	 * is formatted when it is shown for the first time.
 	 * 
 	 * @param int row number
 	 * @param int column number
 	 * @return Object table Object
 	 */
 	public Object getValueAt(int row, int column) {
-		String[] rowData = insuranceCompanies.get(row);
+		if(sortIndex != null){
+			InsuranceCompany company = sortIndex.get(sortIndex.size() - 1 - row); // The index is ascending
+			String[] rowData = viewport.get(company.getId());
+			if(rowData == null){
+				rowData = formatRow(company.getId(), company);
+				viewport.put(company.getId(), rowData);
+			}
+			return rowData[column];
+		}
+		String[] rowData = viewport.get(order[row]);
+		if(rowData == null){
+			rowData = formatRow(order[row], data.get(order[row]));
+			viewport.put(order[row], rowData);
+		}
 		return rowData[column];
 	}
 
+	/**
+	 * Gets the row of an InsuranceCompany
+	 *
+	 * @param id unique InsuranceCompany identifier
+	 * @return row number, or -1 if the InsuranceCompany is not shown
+	 */
+	public int getRow(int id) {
+		if(sortIndex != null){
+			InsuranceCompany company = data.get(id);
+			if(company == null){
+				return -1;
+			}
+			int position = sortIndex.rank(company);
+			if(position >= sortIndex.size() || sortIndex.get(position).getId() != id){
+				return -1;
+			}
+			return sortIndex.size() - 1 - position;
+		}
+		for(int row = 0; row < rows; row++){
+			if(order[row] == id){
+				return row;
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * Update the table models data
 	 * 
@@ -72,47 +137,338 @@ class InsuranceCompanyTableModel extends AbstractTableModel {
 	 * @param comparator InsuranceCompany Comparator
 	 */
 	public void update(Map<Integer, InsuranceCompany> data, Comparator<InsuranceCompany> comparator){
-		insuranceCompanies = convertInsuranceCompanies(data, comparator); // Set the tables data
-		Collections.reverse(insuranceCompanies); // Show highest values always on top
-		this.fireTableDataChanged(); // Notify the table that the data has changed
+		update(data, comparator, null);
 	}
 
 	/**
-	 * Converts a Map to an ArrayList suited for the table model.
-	 * That way sorting can be enabled.
+	 * Update the table models data, which is already sorted by a sort index.
+	 * Without sort index the data is sorted by the table model.
 	 * 
 	 * @param data InsuranceCompany Map
 	 * @param comparator InsuranceCompany Comparator
-	 * @return returns an ArrayList which can be sorted
+	 * @param sortIndex sort index of the data for the comparator, or null
 	 */
-	private ArrayList<String[]> convertInsuranceCompanies(Map<Integer, InsuranceCompany> data, Comparator<InsuranceCompany> comparator){
+	public void update(Map<Integer, InsuranceCompany> data, Comparator<InsuranceCompany> comparator, InsuranceCompanySortIndex sortIndex){
+		this.data = data;
+		this.comparator = comparator;
+		this.sortIndex = sortIndex;
+		order = sortIndex != null ? new int[0] : sortInsuranceCompanies(data); // Set the tables data
+		rows = order.length;
+		viewport.clear();
+		this.fireTableDataChanged(); // Notify the table that the data has changed
+	}
 
-		ArrayList<String[]> tempInsuranceCompanies = new ArrayList<String[]>();
-		List<InsuranceCompany> list = new ArrayList<InsuranceCompany>(data.values()); // Convert the Map to an ArrayList
+	/**
+	 * Checks if the table shows the given data in the given order,
+	 * only then single changes of the data can be applied
+	 *
+	 * @param data InsuranceCompany Map
+	 * @param comparator InsuranceCompany Comparator
+	 * @return true if the table was last updated with the same data and comparator
+	 */
+	public boolean isShowing(Map<Integer, InsuranceCompany> data, Comparator<InsuranceCompany> comparator){
+		return this.data == data && this.comparator == comparator;
+	}
+
+	/**
+	 * Applies a single change of the shown data. Only the affected
+	 * rows are reported to the table.
+	 *
+	 * @param event the change
+	 * @return row of the changed InsuranceCompany, or -1 if it was deleted or isn't shown
+	 */
+	public int update(InsuranceCompanyChangeEvent event){
+		int id = event.getId();
+		viewport.remove(id);
+		if(sortIndex != null){
+			return updateSortIndexRow(event);
+		}
 
-		if(comparator == null){
-			Collections.sort(list);
+		int from = -1;
+		if(event.getPreviousInsuranceCompany() != null){
+			from = findRow(event.getPreviousInsuranceCompany());
+			if(from >= 0){
+				remove(from);
+			}
+		}
+		if(event.getInsuranceCompany() == null){
+			if(from >= 0){
+				fireTableRowsDeleted(from, from);
+			}
+			return -1;
+		}
+
+		int to = findRow(event.getInsuranceCompany());
+		if(to >= 0){
+			return to; // Already shown
+		}
+		to = -(to + 1);
+		insert(to, id);
+		if(from < 0){
+			fireTableRowsInserted(to, to);
 		} else {
-			Collections.sort(list, comparator);
+			fireTableRowsUpdated(Math.min(from, to), Math.max(from, to)); // The rows in between moved by one
+		}
+		return to;
+	}
+
+	/**
+	 * Reports a single change to the table, after the model applied it to the
+	 * sort index. The row the InsuranceCompany had before is the number of
+	 * InsuranceCompanies sorted after its previous state.
+	 *
+	 * @param event the change
+	 * @return row of the changed InsuranceCompany, or -1 if it was deleted
+	 */
+	private int updateSortIndexRow(InsuranceCompanyChangeEvent event){
+		int size = sortIndex.size();
+		InsuranceCompany insuranceCompany = event.getInsuranceCompany();
+		InsuranceCompany previousInsuranceCompany = event.getPreviousInsuranceCompany();
+
+		if(event.getType() == InsuranceCompanyChangeEvent.INSERTED){
+			int row = size - 1 - sortIndex.rank(insuranceCompany);
+			fireTableRowsInserted(row, row);
+			return row;
+		} else if(event.getType() == InsuranceCompanyChangeEvent.DELETED){
+			int row = size - sortIndex.rank(previousInsuranceCompany); // The table had one row more
+			fireTableRowsDeleted(row, row);
+			return -1;
+		}
+
+		int oldPosition = sortIndex.rank(previousInsuranceCompany);
+		if(sortIndex.compare(insuranceCompany, previousInsuranceCompany) < 0){
+			oldPosition--; // The new state is counted as smaller
+		}
+		int from = size - 1 - oldPosition;
+		int to = size - 1 - sortIndex.rank(insuranceCompany);
+		fireTableRowsUpdated(Math.min(from, to), Math.max(from, to)); // The rows in between moved by one
+		return to;
+	}
+
+	/**
+	 * Finds the row of an InsuranceCompany by a binary search. The rows are
+	 * compared with their current InsuranceCompany, the searched one may be
+	 * a previous state, so its own row is recognized by the identifier.
+	 *
+	 * @param insuranceCompany InsuranceCompany to find
+	 * @return its row, or -(insertion row + 1) if it isn't shown
+	 */
+	private int findRow(InsuranceCompany insuranceCompany){
+		int low = 0;
+		int high = rows;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(order[middle] == insuranceCompany.getId()){
+				return middle;
+			}
+			InsuranceCompany company = data.get(order[middle]);
+			int result = company == null ? 0 : compare(company, insuranceCompany);
+			if(result > 0){
+				low = middle + 1; // Rows are in descending order
+			} else if(result < 0){
+				high = middle;
+			} else {
+				return getRow(insuranceCompany.getId()); // Only possible if a shown company vanished
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Compares two InsuranceCompanies by the comparator, companies
+	 * which are equal to it are compared by their identifier
+	 *
+	 * @param ic1 First InsuranceCompany
+	 * @param ic2 Second InsuranceCompany
+	 * @return negative, zero or positive like Comparator.compare
+	 */
+	private int compare(InsuranceCompany ic1, InsuranceCompany ic2){
+		int result = comparator == null ? 0 : comparator.compare(ic1, ic2);
+		return result != 0 ? result : ic1.compareTo(ic2);
+	}
+
+	/**
+	 * Inserts a row
+	 *
+	 * @param row row number
+	 * @param id unique InsuranceCompany identifier
+	 */
+	private void insert(int row, int id){
+		if(rows == order.length){
+			order = Arrays.copyOf(order, rows * 2 + 16);
 		}
+		System.arraycopy(order, row, order, row + 1, rows - row);
+		order[row] = id;
+		rows++;
+	}
 
-		// Choose the needed values and populate the temporary list
-		for(InsuranceCompany company : list){
+	/**
+	 * Removes a row
+	 *
+	 * @param row row number
+	 */
+	private void remove(int row){
+		System.arraycopy(order, row + 1, order, row, rows - row - 1);
+		rows--;
+	}
 
-			String[] columns = {
-				String.valueOf(company.getId()),
-				company.getCompanyName(),
-				company.getTelephone(),
-				company.getUrl(),
-				company.getInsuranceTypes(),
-				String.valueOf(company.getPercentage())
-			};
+	/**
+	 * Sorts the identifiers of the InsuranceCompanies. A comparator with
+	 * sort keys reads every InsuranceCompany once and sorts the identifiers
+	 * by their keys, so only the identifiers and keys are held, even in the
+	 * paged mode. Otherwise the identifiers are merge sorted and the
+	 * InsuranceCompanies are looked up to compare them.
+	 * 
+	 * @param data InsuranceCompany Map
+	 * @return identifiers in descending order, so highest values are always on top
+	 */
+	private int[] sortInsuranceCompanies(final Map<Integer, InsuranceCompany> data){
 
-			tempInsuranceCompanies.add(columns);
+		if(comparator instanceof InsuranceCompanySortKey){
+			return sortBySortKeys(data, (InsuranceCompanySortKey<?>)comparator);
 		}
 
-		return tempInsuranceCompanies;
+		int[] ids = new int[data.size()];
+		int n = 0;
+		for(Integer id : data.keySet()){
+			if(n == ids.length){
+				ids = Arrays.copyOf(ids, n * 2 + 1);
+			}
+			ids[n++] = id;
+		}
+		Arrays.sort(ids, 0, n);
+		if(comparator != null){
+			mergeSort(ids, Arrays.copyOf(ids, n), 0, n, new RowOrder() {
+				public int compare(int id1, int id2){
+					InsuranceCompany ic1 = data.get(id1);
+					InsuranceCompany ic2 = data.get(id2);
+					return ic1 == null || ic2 == null ? id1 - id2 : InsuranceCompanyTableModel.this.compare(ic1, ic2); // Deleted in the meantime
+				}
+			});
+		}
+		return reverse(ids, n);
+
+	}
 
+	/**
+	 * Sorts the identifiers of the InsuranceCompanies by their sort keys.
+	 * Companies with equal keys are sorted by their identifiers.
+	 *
+	 * @param data InsuranceCompany Map
+	 * @param sortKey sorting strategy providing the keys
+	 * @return identifiers in descending order, so highest values are always on top
+	 */
+	private <K> int[] sortBySortKeys(Map<Integer, InsuranceCompany> data, final InsuranceCompanySortKey<K> sortKey){
+		final int[] ids = new int[data.size()];
+		final List<K> keys = new ArrayList<K>(ids.length);
+		int n = 0;
+		for(Map.Entry<Integer, InsuranceCompany> entry : data.entrySet()){
+			InsuranceCompany company = entry.getValue();
+			if(company == null){
+				continue; // Deleted in the meantime
+			} else if(n == ids.length){
+				break; // Added in the meantime, the next update shows it
+			}
+			ids[n++] = company.getId();
+			keys.add(sortKey.getSortKey(company));
+		}
+
+		int[] positions = new int[n];
+		for(int i = 0; i < n; i++){
+			positions[i] = i;
+		}
+		mergeSort(positions, positions.clone(), 0, n, new RowOrder() {
+			public int compare(int position1, int position2){
+				int result = sortKey.compareSortKeys(keys.get(position1), keys.get(position2));
+				return result != 0 ? result : ids[position1] - ids[position2]; // Identifiers are positive
+			}
+		});
+		for(int i = 0; i < n; i++){
+			positions[i] = ids[positions[i]];
+		}
+		return reverse(positions, n);
+	}
+
+	/**
+	 * Order of the values sorted by mergeSort()
+	 */
+	private interface RowOrder {
+
+		/**
+		 * Compares two values
+		 *
+		 * @param value1 First value
+		 * @param value2 Second value
+		 * @return negative, zero or positive like Comparator.compare
+		 */
+		int compare(int value1, int value2);
+
+	}
+
+	/**
+	 * Sorts a range of values with a stable merge sort. The
+	 * buffer holds the same values as the array to sort.
+	 *
+	 * @param values values to sort
+	 * @param buffer copy of the values
+	 * @param from first position of the range
+	 * @param to position after the range
+	 * @param order order of the values
+	 */
+	private void mergeSort(int[] values, int[] buffer, int from, int to, RowOrder order){
+		if(to - from < 2){
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(buffer, values, from, middle, order); // Sort the halves into the buffer
+		mergeSort(buffer, values, middle, to, order);
+		int left = from;
+		int right = middle;
+		for(int i = from; i < to; i++){
+			if(right == to || (left < middle && order.compare(buffer[left], buffer[right]) <= 0)){
+				values[i] = buffer[left++];
+			} else {
+				values[i] = buffer[right++];
+			}
+		}
+	}
+
+	/**
+	 * Reverses the first n values of an array
+	 *
+	 * @param values array to reverse
+	 * @param n number of values
+	 * @return new array with the first n values in reverse order
+	 */
+	private int[] reverse(int[] values, int n){
+		int[] reversed = new int[n];
+		for(int i = 0; i < n; i++){
+			reversed[i] = values[n - 1 - i];
+		}
+		return reversed;
+	}
+
+	/**
+	 * Formats the cells of a row
+	 *
+	 * @param id unique InsuranceCompany identifier
+	 * @param company the InsuranceCompany, may be null
+	 * @return the values of all columns
+	 */
+	private String[] formatRow(int id, InsuranceCompany company){
+		if(company == null){
+			// Deleted in the meantime, the next update removes the row
+			return new String[] { String.valueOf(id), "", "", "", "", "" };
+		}
+		String[] columns = {
+			String.valueOf(company.getId()),
+			company.getCompanyName(),
+			company.getTelephone(),
+			company.getUrl(),
+			company.getInsuranceTypes(),
+			String.valueOf(company.getPercentage())
+		};
+		return columns;
 	}
 
 }
\ No newline at end of file
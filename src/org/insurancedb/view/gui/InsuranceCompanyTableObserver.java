@@ -1,5 +1,7 @@
 package org.insurancedb.view.gui;
 
+import org.insurancedb.model.InsuranceCompanyChangeEvent;
+
 /**
  * InsuranceCompanyTableObserver manages the view's table
  */
@@ -8,4 +10,11 @@ public interface InsuranceCompanyTableObserver {
 	 * Updates the view's table
 	 */
 	void updateTable();
+
+	/**
+	 * Updates the view's table after a single InsuranceCompany changed
+	 *
+	 * @param event the change
+	 */
+	void updateTable(InsuranceCompanyChangeEvent event);
 }
\ No newline at end of file
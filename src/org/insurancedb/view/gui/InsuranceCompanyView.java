@@ -61,6 +61,7 @@ public class InsuranceCompanyView extends JFrame implements InsuranceCompanyEdit
 	private JScrollPane insuranceCompanyScrollPane;
 	private JTable insuranceCompaniesTable;
 	private InsuranceCompanyTableModel tableData;
+	private InsuranceCompanySearch search;
 
 	Image img = new ImageIcon(System.getProperty("user.dir") + File.separator + "resources" + File.separator + "icon_128.png").getImage();
 
@@ -141,6 +142,7 @@ public class InsuranceCompanyView extends JFrame implements InsuranceCompanyEdit
 
 		tableData = new InsuranceCompanyTableModel(model.getInsuranceCompanies());
 		insuranceCompaniesTable = new JTable();
+		search = new InsuranceCompanySearch(controller, this);
 
 		insuranceCompanyScrollPane = new JScrollPane(insuranceCompaniesTable);
 
@@ -234,19 +236,8 @@ public class InsuranceCompanyView extends JFrame implements InsuranceCompanyEdit
 						generalDescriptionTextField.getText()
 					};
 
-					// Input validation
-					boolean checkInput = true;
-					for(String input : newData){
-						if((input.equals("")) || (input.equals(":"))){
-							checkInput = false;
-						}
-					}
-					// Use regex pattern to check double values
-					if(!percentageTextField.getText().matches("(-|\\+)?[0-9]+(\\.[0-9]+)?")){
-						checkInput = false;
-					}
-
-					if(checkInput){
+					// Input validation, the importer uses the same rules
+					if(InsuranceCompanyValidator.isValid(newData)){
 						recordEdited = insuranceCompaniesTable.getSelectedRow();
 						controller.updateInsuranceCompany(selectedCompanyId, newData);
 					} else {
@@ -279,14 +270,14 @@ public class InsuranceCompanyView extends JFrame implements InsuranceCompanyEdit
 			}
 		});
 
-		// Enable dynamic searching, by just typing into the searchTextField
+		// Enable dynamic searching, by just typing into the searchTextField (searches run in the background)
 		searchTextField.getDocument().addDocumentListener(new DocumentListener() {
 			public void changedUpdate(DocumentEvent e) {}
 			public void removeUpdate(DocumentEvent e) {
-				searchInsuranceCompany();
+				search.search(searchTextField.getText());
 			}
 			public void insertUpdate(DocumentEvent e) {
-				searchInsuranceCompany();
+				search.search(searchTextField.getText());
 			}
 		});
 
@@ -318,13 +309,13 @@ public class InsuranceCompanyView extends JFrame implements InsuranceCompanyEdit
 	}
 
 	/**
-	 * Searches for InsuranceCompanies. Calls the controller and updates
-	 * the tableData to the searchMap.
+	 * Shows the result of a background search. Updates the tableData
+	 * to the found InsuranceCompanies.
+	 *
+	 * @param result map with the found InsuranceCompanies
 	 */
-	private void searchInsuranceCompany(){
-		String query = searchTextField.getText();
-		controller.searchInsuranceCompanies(query);
-		tableData.update(model.getSearchMap(), model.getSortingStrategy()); // Updates tableData and sortingStrategy
+	void showSearchResult(Map<Integer, InsuranceCompany> result){
+		tableData.update(result, model.getSortingStrategy()); // Updates tableData and sortingStrategy
 		// Enable automatic selection while searching
 		if(tableData.getRowCount() > 0){
 			selectRow();
@@ -339,18 +330,16 @@ public class InsuranceCompanyView extends JFrame implements InsuranceCompanyEdit
 	 */
 	private void selectRow(){
 
-		int tableRows = tableData.getRowCount();
-		int tabelCols = tableData.getColumnCount();
 		int rowToSelect = 0;
 
 		if(recordEdited != -1){
 			rowToSelect = recordEdited; // Select the edited record
 		} else {
-			for(int i = 0 ; i < tableRows ; i++){
-				String companyName = (String)tableData.getValueAt(i,1);
-				if(companyName.equals("-")){
-					rowToSelect = i; // Select the new record
-				}
+			// A new record is the current InsuranceCompany, it is looked up by its ID
+			// so the rows don't have to be formatted
+			InsuranceCompany insuranceCompany = model.getCurrentInsuranceCompany();
+			if(insuranceCompany != null && insuranceCompany.getCompanyName().equals("-")){
+				rowToSelect = Math.max(tableData.getRow(insuranceCompany.getId()), 0); // Select the new record
 			}
 		}
 
@@ -407,7 +396,42 @@ public class InsuranceCompanyView extends JFrame implements InsuranceCompanyEdit
 	 */
 	public void updateTable(){
 
-		tableData.update(model.getInsuranceCompanies(), model.getSortingStrategy()); // Populate the table
+		search.invalidate(); // Cached search results are outdated
+		Comparator<InsuranceCompany> sortingStrategy = model.getSortingStrategy();
+		tableData.update(model.getInsuranceCompanies(), sortingStrategy, model.getSortIndex(sortingStrategy)); // Populate the table
+		updateSelection();
+
+	}
+
+	/**
+	 * Observer method to update the insuranceCompanyTable after a single
+	 * change. Only the changed row is updated, if the table shows all
+	 * InsuranceCompanies in the current sorting. Otherwise the whole
+	 * table is populated again.
+	 *
+	 * @param event the change
+	 */
+	public void updateTable(InsuranceCompanyChangeEvent event){
+
+		if(!tableData.isShowing(model.getInsuranceCompanies(), model.getSortingStrategy())){
+			updateTable(); // The table shows a search result
+			return;
+		}
+
+		search.invalidate(); // Cached search results are outdated
+		int row = tableData.update(event);
+		if(event.getType() == InsuranceCompanyChangeEvent.UPDATED && recordEdited != -1 && row != -1){
+			recordEdited = row; // The edited record may have moved
+		}
+		updateSelection();
+
+	}
+
+	/**
+	 * Selects a row after the table was updated and shows its
+	 * InsuranceCompany, or clears the edit panel if the table is empty
+	 */
+	private void updateSelection(){
 
 		// Check if InsuranceCompany map is empty
 		if(model.getInsuranceCompanies().size() > 0){
@@ -66,6 +66,9 @@ public class InsuranceCompanyTextView {
 			case 4:
 				chooseDeleteInsuranceCompany();
 				break;
+			case 5:
+				chooseImportInsuranceCompanies();
+				break;
 			default:
 				printAllInsuranceCompanies();
 				break;
@@ -129,12 +132,31 @@ public class InsuranceCompanyTextView {
 		}
 	}
 
+	private void chooseImportInsuranceCompanies(){
+		System.out.print("CSV or JSON lines file: ");
+		s = new Scanner(System.in);
+		InsuranceCompanyImporter importer = new InsuranceCompanyImporter(model);
+		try {
+			importer.importFile(new File(s.nextLine().trim()));
+		} catch(IOException e){
+			System.out.println("Error: " + e.getMessage());
+		} finally {
+			input = -1;
+			s = new Scanner(System.in);
+		}
+		System.out.println(importer.getImported() + " companies imported, " + importer.getDuplicates() + " skipped, " + importer.getRejected() + " rejected");
+		if(importer.getRejected() > 0){
+			System.out.println("Rejected lines: " + importer.getRejectedLines());
+		}
+	}
+
 	private void printMainOptions() {
 		System.out.println(	"\n------- Main Menu -------\n" + 
 							"[1] List all companies  | \n" +
 							"[2] Select a company    | \n" +
 							"[3] Add a company       | \n" +
 							"[4] Delete a company    | \n" +
+							"[5] Import companies    | \n" +
 							"[0] Close application   |");
 	}
 